@@ -26,6 +26,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.cloudera.utils.hive.config.HiveStrictManagedMigrationIncludeListConfig;
 import com.cloudera.utils.hive.reporting.ReportingConf;
 import com.cloudera.utils.hive.sre.DbSetProcess;
+import com.cloudera.utils.hive.sre.MetastoreCleanupProcess;
 import com.cloudera.utils.hive.sre.ProcessContainer;
 import com.cloudera.utils.hive.sre.SreProcessBase;
 import org.apache.commons.cli.*;
@@ -33,9 +34,11 @@ import org.apache.commons.io.IOUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
@@ -100,6 +103,10 @@ public class HiveFrameworkCheck implements SreSubApp {
 
     public void start() {
         if (!getProcessContainer().getConfig().hasErrors()) {
+            for (String warning : getProcessContainer().getConfig().getWarnings().getMessages()) {
+                LOG.warn(warning);
+                System.err.println(warning);
+            }
             getProcessContainer().run();
             // Check the Hsmm object for content.  Save to file.
             if (!getProcessContainer().isTestSQL()) {
@@ -107,14 +114,10 @@ public class HiveFrameworkCheck implements SreSubApp {
                 ObjectMapper mapper;
                 mapper = new ObjectMapper(new YAMLFactory());
                 mapper.enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-                String hsmmStr = null;
-                File hsmmFile = null;
-                FileWriter hsmmFileWriter = null;
-                try {
-                    hsmmStr = mapper.writeValueAsString(hsmm);
-                    hsmmFile = new File(outputDirectory + System.getProperty("file.separator") + "hsmm_includelist.yaml");
-                    hsmmFileWriter = new FileWriter(hsmmFile);
-                    hsmmFileWriter.write(hsmmStr);
+                File hsmmFile = new File(outputDirectory + System.getProperty("file.separator") + "hsmm_includelist.yaml");
+                // Serialize straight to the file, the include list can be too big to hold as one String.
+                try (Writer hsmmFileWriter = new BufferedWriter(new FileWriter(hsmmFile))) {
+                    mapper.writeValue(hsmmFileWriter, hsmm);
                     System.out.println("HSMM IncludeList File 'saved' to: " + hsmmFile.getPath());
                 } catch (JsonProcessingException jpe) {
                     jpe.printStackTrace();
@@ -122,12 +125,6 @@ public class HiveFrameworkCheck implements SreSubApp {
                 } catch (IOException ioe) {
                     ioe.printStackTrace();
                     System.err.println("Problem 'writing' HSMM IncludeList File");
-                } finally {
-                    try {
-                        hsmmFileWriter.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
                 }
             }
             System.out.println("\nCleaning up threads.... this will take a few seconds(maybe a minute), please wait...");
@@ -233,6 +230,15 @@ public class HiveFrameworkCheck implements SreSubApp {
             procContainer.setTestSQL(Boolean.TRUE);
         }
 
+        // Cleanups only report what they would delete, unless asked to.
+        if (cmd.hasOption("ec")) {
+            for (SreProcessBase processBase : procContainer.getProcesses()) {
+                if (processBase instanceof MetastoreCleanupProcess) {
+                    ((MetastoreCleanupProcess) processBase).setExecuteDeletes(Boolean.TRUE);
+                }
+            }
+        }
+
         // If specified, skip command checks.
         if (cmd.hasOption("scc") && !cmd.hasOption("cdh")) {
             for (SreProcessBase processBase : procContainer.getProcesses()) {
@@ -497,6 +503,11 @@ public class HiveFrameworkCheck implements SreSubApp {
         testSqlOption.setRequired(false);
         options.addOption(testSqlOption);
 
+        Option executeCleanupOption = new Option("ec", "execute-cleanup", false,
+                "Delete the rows found by the metastore cleanup processes.  Without it, they only report what they would delete.");
+        executeCleanupOption.setRequired(false);
+        options.addOption(executeCleanupOption);
+
 //        OptionGroup pwOptGroup = new OptionGroup();
 //        pwOptGroup.setRequired(false);
 
@@ -45,11 +45,11 @@ public class Sre {
         // cust
         // tc - transaction cleanup
         String subApp = null;
-        if (args.length > 0 && args[0].matches("perf|sre|u3|cust")) {
+        if (args.length > 0 && args[0].matches("perf|sre|u3|cust|tc")) {
             System.err.println("Launching: " + args[0]);
             subApp = args[0];
         } else {
-            System.out.println("First element must be one of: perf,sre,u3,cust");
+            System.out.println("First element must be one of: perf,sre,u3,cust,tc");
             System.exit(-1);
         }
 
@@ -20,6 +20,8 @@ public class ConnectionPool {
     private int min = 1;
     private int max = 3;
     private int timeout = 120;
+    // Prepared statements cached on each connection.  0 turns the cache off.
+    private int maxOpenPreparedStatements = 25;
 
     public int getMin() {
         return min;
@@ -44,4 +46,12 @@ public class ConnectionPool {
     public void setTimeout(int timeout) {
         this.timeout = timeout;
     }
+
+    public int getMaxOpenPreparedStatements() {
+        return maxOpenPreparedStatements;
+    }
+
+    public void setMaxOpenPreparedStatements(int maxOpenPreparedStatements) {
+        this.maxOpenPreparedStatements = maxOpenPreparedStatements;
+    }
 }
@@ -16,41 +16,58 @@
 
 package com.cloudera.utils.hive.config;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
+/*
+The tables to include in the HiveStrictManagedMigration run, by database.  Tables are added from
+many DbPaths and MetastoreReportProcess threads at once and each table is only listed once, no
+matter how many partitions it has.
+ */
 public class HiveStrictManagedMigrationIncludeListConfig {
 
-    private static HiveStrictManagedMigrationIncludeListConfig single_instance = null;
-
     private HiveStrictManagedMigrationIncludeListConfig() {
 
     }
 
-    public static HiveStrictManagedMigrationIncludeListConfig getInstance()
-    {
-        if (single_instance == null)
-            single_instance = new HiveStrictManagedMigrationIncludeListConfig();
-        return single_instance;
+    private static class InstanceHolder {
+        private static final HiveStrictManagedMigrationIncludeListConfig INSTANCE =
+                new HiveStrictManagedMigrationIncludeListConfig();
     }
 
-    private Map<String, List<String>> databaseIncludeLists = new TreeMap<String, List<String>>();
+    public static HiveStrictManagedMigrationIncludeListConfig getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    // Sorted, so the include list comes out in the same order on every run.
+    private final ConcurrentMap<String, Set<String>> databaseIncludeLists =
+            new ConcurrentSkipListMap<String, Set<String>>();
 
-    public Map<String, List<String>> getDatabaseIncludeLists() {
+    public Map<String, Set<String>> getDatabaseIncludeLists() {
         return databaseIncludeLists;
     }
 
-    public void setDatabaseIncludeLists(Map<String, List<String>> databaseIncludeLists) {
-        this.databaseIncludeLists = databaseIncludeLists;
+    public void setDatabaseIncludeLists(Map<String, Set<String>> databaseIncludeLists) {
+        this.databaseIncludeLists.clear();
+        if (databaseIncludeLists != null) {
+            for (Map.Entry<String, Set<String>> entry : databaseIncludeLists.entrySet()) {
+                for (String table : entry.getValue()) {
+                    addTable(entry.getKey(), table);
+                }
+            }
+        }
     }
 
     public void addTable(String database, String table) {
-        List<String> tables = databaseIncludeLists.get(database);
+        Set<String> tables = databaseIncludeLists.get(database);
         if (tables == null) {
-            tables = new ArrayList<String>();
-            databaseIncludeLists.put(database, tables);
+            tables = new ConcurrentSkipListSet<String>();
+            Set<String> current = databaseIncludeLists.putIfAbsent(database, tables);
+            if (current != null)
+                tables = current;
         }
         tables.add(table);
     }
@@ -18,6 +18,8 @@ package com.cloudera.utils.hive.config;
 
 
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class Metastore {
@@ -26,6 +28,8 @@ public class Metastore {
     };
     @NotNull(message = "Missing Metastore JDBC URI")
     private String uri;
+    // Read replicas of the 'uri' database.  Queries are spread over these when set.
+    private List<String> replicaUris = new ArrayList<String>();
     @NotNull(message = "Need to specify one of: MYSQL, ORACLE, POSTGRES, MSSQL")
     private DB_TYPE type = DB_TYPE.MYSQL; // Default
     // Run for each fetch connection.  Mainly used to help set the DB/Schema for Oracle
@@ -43,6 +47,14 @@ public class Metastore {
         this.uri = uri;
     }
 
+    public List<String> getReplicaUris() {
+        return replicaUris;
+    }
+
+    public void setReplicaUris(List<String> replicaUris) {
+        this.replicaUris = replicaUris;
+    }
+
     public DB_TYPE getType() {
         return type;
     }
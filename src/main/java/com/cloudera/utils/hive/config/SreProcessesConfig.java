@@ -34,6 +34,10 @@ public class SreProcessesConfig {
     private Metastore hs2;
     private int parallelism = 2;
     private int reportingInterval = 500;
+    // Seconds, for the metastore queries that don't set a 'timeout'.  0 for none.
+    private int queryTimeout = 600;
+    // Milliseconds.  Metastore queries that take longer are written to the slow query log.  -1 to turn off.
+    private long slowQueryThreshold = 10000;
 
     @JsonProperty("queries")
     private Map<String, QueryDefinition> queries = new LinkedHashMap<String, QueryDefinition>();
@@ -79,6 +83,22 @@ public class SreProcessesConfig {
         this.reportingInterval = reportingInterval;
     }
 
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    public long getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public void setSlowQueryThreshold(long slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
     public Messages getErrors() {
         return errors;
     }
@@ -20,13 +20,17 @@ import com.cloudera.utils.hive.reporting.ReportingConf;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class CollectStatistics implements Runnable {
 
-    private JDBCRecordIterator jri;
+    // The most columns shown in the status.
+    private static final int COLUMN_LIMIT = 15;
+
+    // One iterator per session (connection).
+    private List<JDBCRecordIterator> jris;
 //    private String header = null;
     private String comment = null;
     private Boolean tiktok = Boolean.FALSE;
@@ -34,10 +38,71 @@ public class CollectStatistics implements Runnable {
     private DateFormat dtf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
     private Long[] windows = {10000l, 30000l, 60000l, 180000l, 300000l};
+    // Across all the sessions.
     private Map<Long, PerfWindow> perfWindows = new TreeMap<Long, PerfWindow>();
 
+    // When set, each session's (and the total) statistics are written out every interval.
+    private SampleWriter sampleWriter = null;
+    private Map<Integer, Statistic> lastStats = new HashMap<Integer, Statistic>();
+    private Statistic lastTotal = null;
+
     public JDBCRecordIterator getJri() {
-        return jri;
+        return jris.get(0);
+    }
+
+    public List<JDBCRecordIterator> getJris() {
+        return jris;
+    }
+
+    public SampleWriter getSampleWriter() {
+        return sampleWriter;
+    }
+
+    public void setSampleWriter(SampleWriter sampleWriter) {
+        this.sampleWriter = sampleWriter;
+    }
+
+    /*
+    When the first session started.
+     */
+    public Date getStart() {
+        Date rtn = null;
+        for (JDBCRecordIterator jri : jris) {
+            if (jri.getStart() != null && (rtn == null || jri.getStart().before(rtn))) {
+                rtn = jri.getStart();
+            }
+        }
+        return rtn;
+    }
+
+    public Boolean getCompleted() {
+        for (JDBCRecordIterator jri : jris) {
+            if (!jri.getCompleted()) {
+                return Boolean.FALSE;
+            }
+        }
+        return Boolean.TRUE;
+    }
+
+    public long getCount() {
+        long rtn = 0;
+        for (JDBCRecordIterator jri : jris) {
+            rtn += jri.getCount().get();
+        }
+        return rtn;
+    }
+
+    public long getSize() {
+        long rtn = 0;
+        for (JDBCRecordIterator jri : jris) {
+            rtn += jri.getSize().get();
+        }
+        return rtn;
+    }
+
+    protected long getRunningTime() {
+        Date start = getStart();
+        return start != null ? System.currentTimeMillis() - start.getTime() : 0;
     }
 
     public Long[] getWindows() {
@@ -56,6 +121,9 @@ public class CollectStatistics implements Runnable {
                     .append("(").append(getJri().getLastBatchSize()).append(")").append("\n");
             sb.append("SQL        : " + getJri().getQuery()).append("\n");
             sb.append("Lite       : " + getJri().getLite());
+            if (jris.size() > 1) {
+                sb.append("\n").append("Sessions   : " + jris.size());
+            }
 //            header = sb.toString();
 //        }
         return sb.toString();
@@ -74,7 +142,11 @@ public class CollectStatistics implements Runnable {
     }
 
     public CollectStatistics(JDBCRecordIterator jri) {
-        this.jri = jri;
+        this(Collections.singletonList(jri));
+    }
+
+    public CollectStatistics(List<JDBCRecordIterator> jris) {
+        this.jris = jris;
     }
 
     private void setUpWindows() {
@@ -92,7 +164,295 @@ public class CollectStatistics implements Runnable {
     }
 
     private void updateStatus() {
-        addToPerfWindows(getJri().getStat());
+        LatencyHistogram fetchLatencies = new LatencyHistogram(JDBCRecordIterator.MAX_FETCH_DELAY);
+        long count = 0;
+        long size = 0;
+        long delay = 0;
+        for (JDBCRecordIterator jri : jris) {
+            Statistic statistic = jri.getStat();
+            count += statistic.getRecordCount();
+            size += statistic.getSize();
+            delay += statistic.getDelay();
+            fetchLatencies.add(statistic.getFetchLatencies());
+            if (sampleWriter != null) {
+                String state = jri.getStart() == null ? "WAITING" :
+                        jri.getCompleted() ? "DONE" : jri.getProcessingState().toString();
+                sampleWriter.write(sample(jri.getSession().toString(), state, statistic,
+                        lastStats.get(jri.getSession())));
+                lastStats.put(jri.getSession(), statistic);
+            }
+        }
+        Statistic total = Statistic.build(count, size, delay);
+        total.setFetchLatencies(fetchLatencies);
+        addToPerfWindows(total);
+        if (sampleWriter != null) {
+            sampleWriter.write(sample("all", getCompleted() ? "DONE" : "RUNNING", total, lastTotal));
+            lastTotal = total;
+        }
+    }
+
+    /*
+    The 'statistic' of a session, with the rates and fetches since the 'previous' one.
+     */
+    protected Map<String, Object> sample(String session, String state, Statistic statistic, Statistic previous) {
+        Map<String, Object> rtn = new LinkedHashMap<String, Object>();
+        rtn.put("timestamp", statistic.getTimestamp().getTime());
+        rtn.put("elapsed_ms", getRunningTime());
+        rtn.put("session", session);
+        rtn.put("state", state);
+        rtn.put("records", statistic.getRecordCount());
+        rtn.put("bytes", statistic.getSize());
+        long intervalMs = previous != null ?
+                statistic.getTimestamp().getTime() - previous.getTimestamp().getTime() : 0;
+        rtn.put("records_per_sec", intervalMs > 0 ?
+                (statistic.getRecordCount() - previous.getRecordCount()) * 1000 / intervalMs : 0);
+        rtn.put("bytes_per_sec", intervalMs > 0 ?
+                (statistic.getSize() - previous.getSize()) * 1000 / intervalMs : 0);
+        LatencyHistogram fetches = statistic.getFetchLatencies().since(
+                previous != null ? previous.getFetchLatencies() : null);
+        rtn.put("fetches", fetches.getTotalCount());
+        rtn.put("fetch_ms", fetches.getTotal());
+        rtn.put("fetch_p50_ms", fetches.getValueAtPercentile(50));
+        rtn.put("fetch_p90_ms", fetches.getValueAtPercentile(90));
+        rtn.put("fetch_p99_ms", fetches.getValueAtPercentile(99));
+        rtn.put("fetch_max_ms", fetches.getMax());
+        return rtn;
+    }
+
+    protected static Map<String, Object> summarize(LatencyHistogram histogram) {
+        Map<String, Object> rtn = new LinkedHashMap<String, Object>();
+        rtn.put("count", histogram.getTotalCount());
+        rtn.put("total_ms", histogram.getTotal());
+        rtn.put("p50_ms", histogram.getValueAtPercentile(50));
+        rtn.put("p90_ms", histogram.getValueAtPercentile(90));
+        rtn.put("p99_ms", histogram.getValueAtPercentile(99));
+        rtn.put("max_ms", histogram.getMax());
+        return rtn;
+    }
+
+    /*
+    The whole run, for comparing runs over time.
+     */
+    public Map<String, Object> getSummary() {
+        Map<String, Object> rtn = new LinkedHashMap<String, Object>();
+        rtn.put("url", getJri().getJdbcUrl());
+        rtn.put("query", getJri().getQuery());
+        rtn.put("comment", getComment());
+        rtn.put("batch_size", getJri().getBatchSize());
+        rtn.put("last_batch_size", getJri().getLastBatchSize());
+        rtn.put("lite", getJri().getLite());
+        rtn.put("sizing", getJri().getSizing().toString());
+        rtn.put("pipeline", getJri().getPipeline());
+        rtn.put("sessions", jris.size());
+        rtn.put("start", getStart() != null ? dtf.format(getStart()) : null);
+        rtn.put("running_ms", getRunningTime());
+        rtn.put("records", getCount());
+        rtn.put("bytes", getSize());
+        long runningSecs = Math.max(1, getRunningTime() / 1000);
+        rtn.put("records_per_sec", getCount() / runningSecs);
+        rtn.put("bytes_per_sec", getSize() / runningSecs);
+        rtn.put("fetch_latency", summarize(getFetchLatencies()));
+        ConnectionPath path = getJri().getConnectionPath();
+        if (path != null) {
+            Map<String, Object> connection = new LinkedHashMap<String, Object>();
+            connection.put("server", path.getServer());
+            connection.put("discovery_ms", path.getDiscoveryTime());
+            connection.put("dns_ms", path.getDnsTime());
+            connection.put("tcp_connect_ms", path.getTcpTime());
+            connection.put("tls_handshake_ms", path.getTlsTime());
+            connection.put("connect_ms", getJri().getConnectTime());
+            rtn.put("connection_path", connection);
+        }
+        List<Map<String, Object>> windowList = new ArrayList<Map<String, Object>>();
+        for (Long window : windows) {
+            PerfWindow pw = perfWindows.get(window);
+            if (pw != null && pw.isFilled() && window < getRunningTime()) {
+                Map<String, Object> lclWindow = new LinkedHashMap<String, Object>();
+                lclWindow.put("window_ms", window);
+                lclWindow.put("records", pw.getAverage());
+                lclWindow.put("records_per_sec", pw.getPerSec());
+                lclWindow.put("bytes_per_sec", pw.getSizePerSec());
+                lclWindow.put("fetch_ms", pw.getFetchTime());
+                windowList.add(lclWindow);
+            }
+        }
+        rtn.put("windows", windowList);
+        List<Map<String, Object>> sessionList = new ArrayList<Map<String, Object>>();
+        for (JDBCRecordIterator jri : jris) {
+            Map<String, Object> session = new LinkedHashMap<String, Object>();
+            session.put("session", jri.getSession());
+            session.put("records", jri.getCount().get());
+            session.put("bytes", jri.getSize().get());
+            session.put("connect_ms", jri.getConnectTime());
+            session.put("query_ms", jri.getQueryTime());
+            session.put("iterate_ms", jri.getIterateTime());
+            RowRing ring = jri.getRing();
+            if (ring != null) {
+                session.put("fetch_only_ms", jri.getFetchTime());
+                session.put("fetch_wait_ms", ring.getFetchWait());
+                session.put("consumer_busy_ms", ring.getConsumerBusy());
+                session.put("consumer_wait_ms", ring.getConsumerWait());
+            }
+            session.put("fetch_latency", summarize(jri.getFetchLatencies()));
+            session.put("issue", jri.getIssue());
+            sessionList.add(session);
+        }
+        rtn.put("session_details", sessionList);
+        String[] names = getJri().getColumnNames();
+        if (names != null) {
+            List<Map<String, Object>> columnList = new ArrayList<Map<String, Object>>();
+            for (int i = 0; i < names.length; i++) {
+                long bytes = 0;
+                for (JDBCRecordIterator jri : jris) {
+                    AtomicLongArray columnSizes = jri.getColumnSizes();
+                    if (columnSizes != null && columnSizes.length() == names.length) {
+                        bytes += columnSizes.get(i);
+                    }
+                }
+                Map<String, Object> column = new LinkedHashMap<String, Object>();
+                column.put("name", names[i]);
+                column.put("type", getJri().getColumnTypeNames()[i]);
+                column.put("bytes", bytes);
+                column.put("bytes_per_sec", bytes / runningSecs);
+                columnList.add(column);
+            }
+            rtn.put("columns", columnList);
+        }
+        return rtn;
+    }
+
+    /*
+    Write the summary and close the samples, when they're being written.
+     */
+    public void writeSummary() {
+        if (sampleWriter != null) {
+            sampleWriter.writeSummary(getSummary());
+            sampleWriter.close();
+        }
+    }
+
+    /*
+    The value at 'pct' percent of the 'sorted' values, or -1 when there aren't any.
+     */
+    protected static long percentile(long[] sorted, double pct) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(pct / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    protected static String printPercentiles(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        StringBuilder sb = new StringBuilder();
+        sb.append("p50 ").append(percentile(sorted, 50));
+        sb.append(" | p90 ").append(percentile(sorted, 90));
+        sb.append(" | p99 ").append(percentile(sorted, 99));
+        sb.append(" | max ").append(percentile(sorted, 100));
+        sb.append(" (").append(sorted.length).append(" samples)");
+        return sb.toString();
+    }
+
+    /*
+    The remote fetches of all the sessions, for the whole run.
+     */
+    protected LatencyHistogram getFetchLatencies() {
+        LatencyHistogram rtn = new LatencyHistogram(JDBCRecordIterator.MAX_FETCH_DELAY);
+        for (JDBCRecordIterator jri : jris) {
+            rtn.add(jri.getFetchLatencies());
+        }
+        return rtn;
+    }
+
+    protected long[] getQueryLatencies() {
+        List<Long> times = new ArrayList<Long>();
+        for (JDBCRecordIterator jri : jris) {
+            if (jri.getQueryTime() >= 0) {
+                times.add(jri.getQueryTime());
+            }
+        }
+        long[] rtn = new long[times.size()];
+        for (int i = 0; i < rtn.length; i++) {
+            rtn[i] = times.get(i);
+        }
+        return rtn;
+    }
+
+    protected String printSessions() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ReportingConf.ANSI_GREEN + "Session | State | Record Count | Records per/sec | Connect(ms) | Query(ms)" +
+                ReportingConf.ANSI_RESET).append("\n");
+        for (JDBCRecordIterator jri : jris) {
+            sb.append(jri.getSession()).append("\t");
+            if (jri.getStart() == null) {
+                sb.append("waiting to start\n");
+                continue;
+            }
+            sb.append(jri.getCompleted() ? "DONE" : jri.getProcessingState()).append("\t");
+            sb.append(jri.getCount().get()).append("\t\t");
+            long elapsedSecs = (System.currentTimeMillis() - jri.getStart().getTime()) / 1000;
+            sb.append(elapsedSecs > 0 ? jri.getCount().get() / elapsedSecs : 0).append("\t\t");
+            sb.append(jri.getConnectTime()).append("\t\t");
+            sb.append(jri.getQueryTime()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /*
+    The bytes (all sessions) of each column, largest first, with their share of the total.
+     */
+    protected String printColumns(int limit) {
+        StringBuilder sb = new StringBuilder();
+        String[] names = getJri().getColumnNames();
+        String[] typeNames = getJri().getColumnTypeNames();
+        if (names == null) {
+            return sb.toString();
+        }
+        final long[] totals = new long[names.length];
+        long total = 0;
+        for (JDBCRecordIterator jri : jris) {
+            AtomicLongArray columnSizes = jri.getColumnSizes();
+            if (columnSizes != null && columnSizes.length() == totals.length) {
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += columnSizes.get(i);
+                    total += columnSizes.get(i);
+                }
+            }
+        }
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(totals[o2], totals[o1]);
+            }
+        });
+        long runningSecs = Math.max(1, getRunningTime() / 1000);
+        sb.append(ReportingConf.ANSI_GREEN + "Column | Type | Data Size | Data Size per/sec | % of Data Size" +
+                ReportingConf.ANSI_RESET).append("\n");
+        for (int i = 0; i < order.length && i < limit; i++) {
+            int column = order[i];
+            sb.append(names[column]).append("\t").append(typeNames[column]).append("\t");
+            sb.append(totals[column]).append("\t\t").append(totals[column] / runningSecs).append("\t\t");
+            sb.append(total > 0 ? (totals[column] * 100) / total : 0).append("\n");
+        }
+        if (order.length > limit) {
+            sb.append("... ").append(order.length - limit).append(" more columns\n");
+        }
+        return sb.toString();
+    }
+
+    protected String printLatencies() {
+        StringBuilder sb = new StringBuilder();
+        long runningSecs = getRunningTime() / 1000;
+        sb.append("Records per/sec (all sessions): ").append(runningSecs > 0 ? getCount() / runningSecs : 0);
+        sb.append("\t\tData Size per/sec: ").append(runningSecs > 0 ? getSize() / runningSecs : 0).append("\n");
+        sb.append("Fetch latency(ms): ").append(getFetchLatencies()).append("\n");
+        sb.append("Query latency(ms): ").append(printPercentiles(getQueryLatencies()));
+        return sb.toString();
     }
 
     public void printStatus(Boolean finalIteration) {
@@ -108,24 +468,37 @@ public class CollectStatistics implements Runnable {
                 sb.append("*\n");
             else
                 sb.append("\n");
-            sb.append("Window Length(ms) | Record Average | Records per/sec | Data Size per/sec | Fetch Time " + ReportingConf.ANSI_RESET).append("\n");
+            sb.append("Window Length(ms) | Record Average | Records per/sec | Data Size per/sec | Fetch Time | Fetch p50/p99/max(ms) " + ReportingConf.ANSI_RESET).append("\n");
             for (Long window : windows) {
 
                 sb.append(window);
-                if (window < System.currentTimeMillis() -
-                        getJri().getStart().getTime()) {
+                if (window < getRunningTime()) {
                     PerfWindow pw = this.perfWindows.get(window);
                     sb.append("\t\t" + pw.toString()).append("\n");
                 } else {
                     sb.append("\t\t waiting for window to fill\n");
                 }
             }
+            if (jris.size() > 1) {
+                sb.append(ReportingConf.ANSI_YELLOW + "----------------------------").append("\n");
+                sb.append(printSessions());
+                sb.append(printLatencies()).append("\n");
+            } else {
+                sb.append("Fetch latency(ms): ").append(getFetchLatencies()).append("\n");
+            }
+            if (!getJri().getLite()) {
+                sb.append(ReportingConf.ANSI_YELLOW + "----------------------------").append("\n");
+                sb.append(printColumns(COLUMN_LIMIT));
+            }
             sb.append(getJri().printLastFetchDelay()).append("\n");
+            if (getJri().getRing() != null) {
+                sb.append(getJri().printPipeline()).append("\n");
+            }
             sb.append(getJri().printExcessiveFetchDelays()).append("\n");
             sb.append(ReportingConf.ANSI_BLUE + "===========================").append("\n");
-            sb.append(ReportingConf.ANSI_YELLOW + "Running for: " + (System.currentTimeMillis() -
-                    getJri().getStart().getTime()) + "ms\t\tStarted: " + dtf.format(getJri().getStart()) +
-                    "\t\tRecord Count: " + getJri().getCount() + "\t\tData Size: " + getJri().getSize().get() + ReportingConf.ANSI_RESET).append("\n");
+            sb.append(ReportingConf.ANSI_YELLOW + "Running for: " + getRunningTime() + "ms\t\tStarted: " +
+                    (getStart() != null ? dtf.format(getStart()) : "-") +
+                    "\t\tRecord Count: " + getCount() + "\t\tData Size: " + getSize() + ReportingConf.ANSI_RESET).append("\n");
 
             String output = ReportingConf.substituteVariables(sb.toString());
             System.err.println(output);
@@ -133,8 +506,7 @@ public class CollectStatistics implements Runnable {
         } else {
             for (Long window : windows) {
                 // Only print windows that have a full contingent of data
-                if (window < System.currentTimeMillis() -
-                        getJri().getStart().getTime()) {
+                if (window < getRunningTime()) {
 
                     StringBuilder sb = new StringBuilder();
                     String[] cparts = getComment().split(",");
@@ -149,6 +521,15 @@ public class CollectStatistics implements Runnable {
                     System.out.println(sb.toString());
                 }
             }
+            if (jris.size() > 1) {
+                System.err.println(ReportingConf.substituteVariables(printSessions() + printLatencies()));
+            }
+            if (!getJri().getLite()) {
+                System.err.println(printColumns(Integer.MAX_VALUE));
+            }
+            if (getJri().getRing() != null) {
+                System.err.println(getJri().printPipeline() + ReportingConf.ANSI_RESET);
+            }
 
 
         }
@@ -168,7 +549,7 @@ public class CollectStatistics implements Runnable {
                 TimeUnit.SECONDS.sleep(JDBCPerfTest.STATUS_INTERVAL_SECS);
 //                Thread.sleep(JDBCPerfTest.STATUS_INTERVAL);
                 updateStatus();
-                if (getJri().getCompleted()) {
+                if (getCompleted()) {
                     break;
                 }
             }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+Estimates the bytes of one column in the current row.
+ */
+public interface ColumnSizer {
+
+    long size(ResultSet rs, int column) throws SQLException;
+
+    /*
+    The bytes of a value already read from the row (with getObject), for the pipelined mode where
+    the values are sized off the fetch thread.  Sizers that leave this out are called with 'size' on
+    the fetch thread instead.
+     */
+    default long sizeOf(Object value) {
+        throw new UnsupportedOperationException(getClass().getName() + " can't size the pipelined values.");
+    }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+Times each step on the way to the server of a JDBC url, in the JVM, before the driver connects:
+resolving the host, the TCP connect to its port, the TLS handshake (with 'ssl=true') and, for a
+'serviceDiscoveryMode=zooKeeper' url, finding the server in ZooKeeper.
+
+The driver's own connect follows, so its DNS lookup will usually come from the JVM's cache.
+ */
+public class ConnectionPath {
+
+    public static final int CONNECT_TIMEOUT = 10000;
+    public static final String DEFAULT_ZOOKEEPER_NAMESPACE = "hiveserver2";
+    public static final int DEFAULT_ZOOKEEPER_PORT = 2181;
+
+    private String scheme;
+    private List<String> hosts = new ArrayList<String>();
+    // The ';' separated url settings, by their lower case key.
+    private Map<String, String> sessionVars = new HashMap<String, String>();
+
+    // Milliseconds for each step, -1 when not run (or it failed).
+    private long dnsTime = -1;
+    private long tcpTime = -1;
+    private long tlsTime = -1;
+    private long discoveryTime = -1;
+    private String server = null;
+
+    public static ConnectionPath parse(String jdbcUrl) {
+        ConnectionPath rtn = new ConnectionPath();
+        int schemeEnd = jdbcUrl.indexOf("://");
+        if (schemeEnd < 0) {
+            throw new RuntimeException("Can't find the host in the url: " + jdbcUrl);
+        }
+        rtn.scheme = jdbcUrl.substring(0, schemeEnd).toLowerCase();
+        String rest = jdbcUrl.substring(schemeEnd + 3);
+        int authorityEnd = rest.length();
+        for (char c : new char[]{'/', ';', '?', '#'}) {
+            int at = rest.indexOf(c);
+            if (at >= 0 && at < authorityEnd) {
+                authorityEnd = at;
+            }
+        }
+        for (String host : rest.substring(0, authorityEnd).split(",")) {
+            if (host.trim().length() > 0) {
+                rtn.hosts.add(host.trim());
+            }
+        }
+        String settings = rest.substring(authorityEnd);
+        for (char c : new char[]{'?', '#'}) {
+            int at = settings.indexOf(c);
+            if (at >= 0) {
+                settings = settings.substring(0, at);
+            }
+        }
+        for (String setting : settings.split(";")) {
+            int eq = setting.indexOf('=');
+            if (eq > 0 && !setting.startsWith("/")) {
+                rtn.sessionVars.put(setting.substring(0, eq).trim().toLowerCase(), setting.substring(eq + 1).trim());
+            }
+        }
+        return rtn;
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public String getSessionVar(String name) {
+        return sessionVars.get(name.toLowerCase());
+    }
+
+    public Boolean isSsl() {
+        String ssl = getSessionVar("ssl");
+        return ssl != null && (ssl.equalsIgnoreCase("true") || ssl.equals("1"));
+    }
+
+    public Boolean isZooKeeper() {
+        return "zookeeper".equalsIgnoreCase(getSessionVar("serviceDiscoveryMode"));
+    }
+
+    public String getZooKeeperNamespace() {
+        String namespace = getSessionVar("zooKeeperNamespace");
+        return namespace != null ? namespace : DEFAULT_ZOOKEEPER_NAMESPACE;
+    }
+
+    /*
+    The server's port when the url doesn't give one, or -1 when we don't know it.
+     */
+    public int getDefaultPort() {
+        if (scheme.endsWith("hive2")) {
+            return "http".equalsIgnoreCase(getSessionVar("transportMode")) ? 10001 : 10000;
+        } else if (scheme.endsWith("impala")) {
+            return 21050;
+        }
+        return -1;
+    }
+
+    public long getDnsTime() {
+        return dnsTime;
+    }
+
+    public long getTcpTime() {
+        return tcpTime;
+    }
+
+    public long getTlsTime() {
+        return tlsTime;
+    }
+
+    public long getDiscoveryTime() {
+        return discoveryTime;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    /*
+    Run the steps.  Each is a line in the report, and a step that fails reports why and ends it.
+     */
+    public String diagnose() {
+        StringBuilder sb = new StringBuilder();
+        if (hosts.isEmpty()) {
+            sb.append("No host in the url to check.\n");
+            return sb.toString();
+        }
+        try {
+            String target = hosts.get(0);
+            if (isZooKeeper()) {
+                String quorum = join(hosts);
+                // The ZooKeeper host first, as its own step.
+                check(hosts.get(0), DEFAULT_ZOOKEEPER_PORT, Boolean.FALSE, "ZooKeeper ", sb);
+                long start = System.nanoTime();
+                target = discover(quorum, sb);
+                discoveryTime = (System.nanoTime() - start) / 1000000;
+                sb.append("ZooKeeper Discovery   : ").append(discoveryTime).append("ms (")
+                        .append(target).append(" in /").append(getZooKeeperNamespace()).append(")\n");
+            }
+            server = target;
+            long[] times = check(target, getDefaultPort(), isSsl(), "", sb);
+            dnsTime = times[0];
+            tcpTime = times[1];
+            tlsTime = times[2];
+        } catch (Exception e) {
+            sb.append("   Failed: ").append(e.getClass().getSimpleName()).append(" ").append(e.getMessage()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /*
+    The DNS resolve, and TCP connect when there's a port, of a 'host[:port]' ('-h').
+     */
+    public static String checkHost(String hostAndPort) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            new ConnectionPath().check(hostAndPort, -1, Boolean.FALSE, "Host Check ", sb);
+        } catch (Exception e) {
+            sb.append("   Failed: ").append(e.getClass().getSimpleName()).append(" ").append(e.getMessage()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /*
+    Resolve 'hostAndPort' (or 'host' with 'defaultPort') and, when there's a port, connect to it and,
+    with 'ssl', shake hands.  The times are in 'dns, tcp, tls' order, -1 for a step not run.
+     */
+    protected long[] check(String hostAndPort, int defaultPort, Boolean ssl, String label, StringBuilder sb)
+            throws IOException {
+        long[] rtn = new long[]{-1, -1, -1};
+        String host = hostAndPort;
+        int port = defaultPort;
+        int colon = hostAndPort.lastIndexOf(':');
+        if (colon > 0 && hostAndPort.indexOf(']') < colon) {
+            host = hostAndPort.substring(0, colon);
+            port = Integer.parseInt(hostAndPort.substring(colon + 1));
+        }
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        long start = System.nanoTime();
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        rtn[0] = (System.nanoTime() - start) / 1000000;
+        sb.append(String.format("%-22s: ", label + "DNS Resolve")).append(rtn[0]).append("ms (").append(host)
+                .append(" -> ").append(addresses[0].getHostAddress());
+        if (addresses.length > 1) {
+            sb.append(" +").append(addresses.length - 1).append(" more");
+        }
+        sb.append(")\n");
+        if (port < 0) {
+            return rtn;
+        }
+        Socket socket = new Socket();
+        try {
+            start = System.nanoTime();
+            socket.connect(new InetSocketAddress(addresses[0], port), CONNECT_TIMEOUT);
+            rtn[1] = (System.nanoTime() - start) / 1000000;
+            sb.append(String.format("%-22s: ", label + "TCP Connect")).append(rtn[1]).append("ms (")
+                    .append(addresses[0].getHostAddress()).append(":").append(port).append(")\n");
+            if (ssl) {
+                SSLSocket sslSocket = (SSLSocket) sslContext().getSocketFactory()
+                        .createSocket(socket, host, port, true);
+                socket = sslSocket;
+                start = System.nanoTime();
+                sslSocket.startHandshake();
+                rtn[2] = (System.nanoTime() - start) / 1000000;
+                sb.append(String.format("%-22s: ", label + "TLS Handshake")).append(rtn[2]).append("ms (")
+                        .append(sslSocket.getSession().getProtocol()).append(" ")
+                        .append(sslSocket.getSession().getCipherSuite()).append(")\n");
+            }
+        } finally {
+            socket.close();
+        }
+        return rtn;
+    }
+
+    /*
+    The url's trust store ('sslTrustStore' and 'trustStorePassword') when it has one, like the driver,
+    else the JVM's.
+     */
+    protected SSLContext sslContext() throws IOException {
+        try {
+            String trustStore = getSessionVar("sslTrustStore");
+            if (trustStore == null) {
+                return SSLContext.getDefault();
+            }
+            String password = getSessionVar("trustStorePassword");
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            InputStream in = new FileInputStream(trustStore);
+            try {
+                keyStore.load(in, password != null ? password.toCharArray() : null);
+            } finally {
+                in.close();
+            }
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(keyStore);
+            SSLContext rtn = SSLContext.getInstance("TLS");
+            rtn.init(null, tmf.getTrustManagers(), null);
+            return rtn;
+        } catch (java.security.GeneralSecurityException e) {
+            throw new IOException("Can't set up TLS: " + e.getMessage(), e);
+        }
+    }
+
+    /*
+    Connect to the ZooKeeper 'quorum' and pick the first server registered under the namespace, as
+    'host:port'.
+     */
+    protected String discover(String quorum, StringBuilder sb) throws Exception {
+        final CountDownLatch connected = new CountDownLatch(1);
+        long start = System.nanoTime();
+        ZooKeeper zooKeeper = new ZooKeeper(quorum, CONNECT_TIMEOUT, new Watcher() {
+            @Override
+            public void process(WatchedEvent event) {
+                if (event.getState() == Event.KeeperState.SyncConnected) {
+                    connected.countDown();
+                }
+            }
+        });
+        try {
+            if (!connected.await(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No ZooKeeper session after " + CONNECT_TIMEOUT + "ms");
+            }
+            sb.append("ZooKeeper Session     : ").append((System.nanoTime() - start) / 1000000).append("ms\n");
+            String path = "/" + getZooKeeperNamespace();
+            List<String> children = zooKeeper.getChildren(path, false);
+            if (children == null || children.isEmpty()) {
+                throw new IOException("No servers registered in " + path);
+            }
+            Collections.sort(children);
+            String child = children.get(0);
+            byte[] data = zooKeeper.getData(path + "/" + child, false, null);
+            return serverOf(child, data != null ? new String(data, StandardCharsets.UTF_8) : null,
+                    "http".equalsIgnoreCase(getSessionVar("transportMode")));
+        } finally {
+            zooKeeper.close();
+        }
+    }
+
+    /*
+    The 'host:port' of a server registered in ZooKeeper.  The data is either the server's settings
+    ('hive.server2.thrift.bind.host=...;hive.server2.thrift.port=...') or just 'host:port', and older
+    servers only name the znode 'serverUri=host:port;version=...;sequence=...'.
+     */
+    protected static String serverOf(String child, String data, Boolean http) {
+        if (data != null && data.contains("=")) {
+            Map<String, String> settings = new HashMap<String, String>();
+            for (String setting : data.split(";")) {
+                int eq = setting.indexOf('=');
+                if (eq > 0) {
+                    settings.put(setting.substring(0, eq).trim(), setting.substring(eq + 1).trim());
+                }
+            }
+            String host = settings.get("hive.server2.thrift.bind.host");
+            String port = settings.get(http ? "hive.server2.thrift.http.port" : "hive.server2.thrift.port");
+            if (host != null && port != null) {
+                return host + ":" + port;
+            }
+        } else if (data != null && data.trim().length() > 0) {
+            return data.trim();
+        }
+        if (child.startsWith("serverUri=")) {
+            int end = child.indexOf(';');
+            return child.substring("serverUri=".length(), end > 0 ? end : child.length());
+        }
+        throw new RuntimeException("Can't find the server in the ZooKeeper entry: " + child);
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+Runs the query for each batch (fetch) size and compares the records/sec.  Each size gets a warm-up
+run that's thrown away and then 'repetitions' runs, and is rated on their median, so a cold cache or
+a noisy neighbour on one run doesn't pick the size.  For a range, the sizes double from the low end,
+and then the sizes half way (geometrically) between the best and its neighbours are tried.  A size
+whose batches would take more than the 'memoryBudget' (the average record size seen so far x the
+batch size) isn't run, nor is any size above it.
+ */
+public class FetchSizeSweep {
+
+    private final JDBCRecordIterator template;
+    private final List<Integer> batchSizes;
+    private final boolean refine;
+    // Bytes, 0 for no limit.
+    private long memoryBudget = 0;
+    // The measured runs for each size, after the warm-up.
+    private int repetitions = 3;
+    private final List<Result> results = new ArrayList<Result>();
+
+    public FetchSizeSweep(JDBCRecordIterator template, String spec) {
+        this.template = template;
+        this.refine = spec.contains("-");
+        this.batchSizes = parse(spec);
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public void setRepetitions(int repetitions) {
+        this.repetitions = repetitions;
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /*
+    Either a list of sizes '1000,5000,20000' or a range 'min-max' that doubles from 'min'.
+     */
+    protected static List<Integer> parse(String spec) {
+        List<Integer> rtn = new ArrayList<Integer>();
+        try {
+            if (spec.contains("-")) {
+                String[] range = spec.split("-");
+                int low = Integer.parseInt(range[0].trim());
+                int high = Integer.parseInt(range[1].trim());
+                if (low < 1 || high < low) {
+                    throw new RuntimeException("The sweep range must be 'min-max', with 0 < min <= max: " + spec);
+                }
+                for (long size = low; size < high; size *= 2) {
+                    rtn.add((int) size);
+                }
+                rtn.add(high);
+            } else {
+                for (String size : spec.split(",")) {
+                    int value = Integer.parseInt(size.trim());
+                    if (value < 1) {
+                        throw new RuntimeException("The sweep batch sizes must be at least 1: " + spec);
+                    }
+                    if (!rtn.contains(value)) {
+                        rtn.add(value);
+                    }
+                }
+                Collections.sort(rtn);
+            }
+        } catch (NumberFormatException nfe) {
+            throw new RuntimeException("Can't read the sweep batch sizes: " + spec, nfe);
+        }
+        return rtn;
+    }
+
+    public void run() {
+        for (Integer batchSize : batchSizes) {
+            if (!runIfWithinBudget(batchSize)) {
+                break;
+            }
+        }
+        if (refine) {
+            Result best = getRecommended();
+            if (best != null) {
+                int index = batchSizes.indexOf(best.getBatchSize());
+                if (index > 0) {
+                    runIfWithinBudget(midpoint(batchSizes.get(index - 1), best.getBatchSize()));
+                }
+                if (index >= 0 && index < batchSizes.size() - 1) {
+                    runIfWithinBudget(midpoint(best.getBatchSize(), batchSizes.get(index + 1)));
+                }
+            }
+        }
+    }
+
+    protected static int midpoint(int low, int high) {
+        return (int) Math.round(Math.sqrt((double) low * high));
+    }
+
+    /*
+    Run 'batchSize' unless it's already been run or is over the budget.  Returns false when over.
+     */
+    protected boolean runIfWithinBudget(int batchSize) {
+        for (Result result : results) {
+            if (result.getBatchSize() == batchSize) {
+                return true;
+            }
+        }
+        long recordBytes = getAverageRecordSize();
+        if (memoryBudget > 0 && recordBytes > 0 && recordBytes * batchSize > memoryBudget) {
+            System.err.println("Skipping batch size " + batchSize + ", about " + (recordBytes * batchSize) +
+                    " bytes per batch is over the memory budget of " + memoryBudget);
+            return false;
+        }
+        System.err.println("Running with batch size " + batchSize + " (warm-up) ...");
+        Run warmUp = run(batchSize);
+        List<Run> runs = new ArrayList<Run>(repetitions);
+        if (warmUp.getIssue() != null) {
+            // It won't go any better on the next run.
+            runs.add(warmUp);
+        } else {
+            for (int i = 1; i <= repetitions; i++) {
+                System.err.println("Running with batch size " + batchSize + " (" + i + " of " + repetitions + ") ...");
+                Run run = run(batchSize);
+                runs.add(run);
+                if (run.getIssue() != null) {
+                    break;
+                }
+            }
+        }
+        Result result = new Result(batchSize, runs);
+        results.add(result);
+        System.err.println(result);
+        return true;
+    }
+
+    protected Run run(int batchSize) {
+        JDBCRecordIterator jri = template.copy(0);
+        jri.setBatchSize(batchSize);
+        jri.run();
+        return new Run(jri);
+    }
+
+    protected long getAverageRecordSize() {
+        long records = 0;
+        long bytes = 0;
+        for (Result result : results) {
+            records += result.getRecords();
+            bytes += result.getBytes();
+        }
+        return records > 0 ? bytes / records : 0;
+    }
+
+    /*
+    The size with the fastest median that ran without issue.
+     */
+    public Result getRecommended() {
+        Result rtn = null;
+        for (Result result : results) {
+            if (result.getIssue() == null && (rtn == null || result.getRecordsPerSec() > rtn.getRecordsPerSec())) {
+                rtn = result;
+            }
+        }
+        return rtn;
+    }
+
+    public void printResults(String comment) {
+        List<Result> sorted = new ArrayList<Result>(results);
+        Collections.sort(sorted);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Batch Size | Records | Records per/sec (median) | Records per/sec (min-max) | Data Size per/sec | Query(ms) | Iterate(ms) | Fetch p50/p99/max(ms) | Batch Size(bytes)\n");
+        for (Result result : sorted) {
+            sb.append(result).append("\n");
+        }
+        Result recommended = getRecommended();
+        if (recommended != null) {
+            sb.append("Recommended fetchSize: ").append(recommended.getBatchSize());
+        } else {
+            sb.append("No batch size ran without issue.");
+        }
+        System.err.println(sb.toString());
+
+        for (Result result : sorted) {
+            StringBuilder line = new StringBuilder();
+            if (comment != null) {
+                for (String cpart : comment.split(",")) {
+                    line.append(cpart).append(",");
+                }
+            }
+            line.append(result.getBatchSize()).append(",").append(result.getRecords()).append(",");
+            line.append(result.getRecordsPerSec()).append(",").append(result.getBytesPerSec()).append(",");
+            line.append(result.getFetchLatencies().getValueAtPercentile(50)).append(",");
+            line.append(result.getFetchLatencies().getValueAtPercentile(99)).append(",");
+            line.append(recommended == result).append(",");
+            line.append(result.getRuns()).append(",");
+            line.append(result.getMinRecordsPerSec()).append(",").append(result.getMaxRecordsPerSec());
+            System.out.println(line.toString());
+        }
+    }
+
+    /*
+    One run of the query at a batch size.
+     */
+    public static class Run {
+        private final long records;
+        private final long bytes;
+        private final long queryTime;
+        private final long iterateTime;
+        private final LatencyHistogram fetchLatencies;
+        private final String issue;
+
+        Run(JDBCRecordIterator jri) {
+            this(jri.getCount().get(), jri.getSize().get(), jri.getQueryTime(), jri.getIterateTime(),
+                    jri.getFetchLatencies(), jri.getIssue());
+        }
+
+        Run(long records, long bytes, long queryTime, long iterateTime, LatencyHistogram fetchLatencies,
+            String issue) {
+            this.records = records;
+            this.bytes = bytes;
+            this.queryTime = queryTime;
+            this.iterateTime = iterateTime;
+            this.fetchLatencies = fetchLatencies;
+            this.issue = issue;
+        }
+
+        public String getIssue() {
+            return issue;
+        }
+
+        public long getRecordsPerSec() {
+            return iterateTime > 0 ? records * 1000 / iterateTime : 0;
+        }
+    }
+
+    /*
+    The runs of a batch size, reported by the median run (by records/sec, the lower of the middle two
+    for an even count).
+     */
+    public static class Result implements Comparable<Result> {
+        private final int batchSize;
+        private final int runs;
+        private final Run median;
+        private final long minRecordsPerSec;
+        private final long maxRecordsPerSec;
+        private final String issue;
+
+        Result(int batchSize, List<Run> runs) {
+            List<Run> sorted = new ArrayList<Run>(runs);
+            Collections.sort(sorted, new Comparator<Run>() {
+                @Override
+                public int compare(Run o1, Run o2) {
+                    return Long.compare(o1.getRecordsPerSec(), o2.getRecordsPerSec());
+                }
+            });
+            String lclIssue = null;
+            for (Run run : runs) {
+                if (run.getIssue() != null) {
+                    lclIssue = run.getIssue();
+                    break;
+                }
+            }
+            this.batchSize = batchSize;
+            this.runs = runs.size();
+            this.median = sorted.get((sorted.size() - 1) / 2);
+            this.minRecordsPerSec = sorted.get(0).getRecordsPerSec();
+            this.maxRecordsPerSec = sorted.get(sorted.size() - 1).getRecordsPerSec();
+            this.issue = lclIssue;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public long getRecords() {
+            return median.records;
+        }
+
+        public long getBytes() {
+            return median.bytes;
+        }
+
+        public String getIssue() {
+            return issue;
+        }
+
+        public LatencyHistogram getFetchLatencies() {
+            return median.fetchLatencies;
+        }
+
+        public long getRecordsPerSec() {
+            return median.getRecordsPerSec();
+        }
+
+        public long getMinRecordsPerSec() {
+            return minRecordsPerSec;
+        }
+
+        public long getMaxRecordsPerSec() {
+            return maxRecordsPerSec;
+        }
+
+        public long getBytesPerSec() {
+            return median.iterateTime > 0 ? median.bytes * 1000 / median.iterateTime : 0;
+        }
+
+        public long getBatchBytes() {
+            return median.records > 0 ? median.bytes / median.records * batchSize : 0;
+        }
+
+        @Override
+        public int compareTo(Result o) {
+            return Integer.compare(batchSize, o.batchSize);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(batchSize).append("\t\t").append(getRecords()).append("\t\t");
+            sb.append(getRecordsPerSec()).append("\t\t").append(minRecordsPerSec).append("-").append(maxRecordsPerSec);
+            sb.append("\t\t").append(getBytesPerSec()).append("\t\t");
+            sb.append(median.queryTime).append("\t\t").append(median.iterateTime).append("\t\t");
+            sb.append(getFetchLatencies().getValueAtPercentile(50)).append("/");
+            sb.append(getFetchLatencies().getValueAtPercentile(99)).append("/");
+            sb.append(getFetchLatencies().getMax()).append("\t\t").append(getBatchBytes());
+            if (issue != null) {
+                sb.append("\t\tIssue: ").append(issue);
+            }
+            return sb.toString();
+        }
+    }
+}
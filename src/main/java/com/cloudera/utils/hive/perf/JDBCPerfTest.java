@@ -31,7 +31,19 @@ public class JDBCPerfTest implements SreSubApp {
     public static final Integer DISPLAY_REFRESH_SECS = 1;
 
     private JDBCRecordIterator jri = new JDBCRecordIterator();
+    // One per session, the first is 'jri'.
+    private List<JDBCRecordIterator> jris = new ArrayList<JDBCRecordIterator>();
     private CollectStatistics stats = null;
+    // Replaces the single '-e' query when set.
+    private WorkloadRunner workloadRunner = null;
+    // Runs the query over a range of batch sizes when set.
+    private FetchSizeSweep sweep = null;
+    private PreparedQueryBench prepared = null;
+    private String comment = null;
+
+    private Integer concurrency = 1;
+    // Seconds over which the sessions are started.
+    private Integer rampUp = 0;
 
     private String name;
 
@@ -53,7 +65,7 @@ public class JDBCPerfTest implements SreSubApp {
 
     public ScheduledExecutorService getThreadPool() {
         if (threadPool == null) {
-            threadPool = Executors.newScheduledThreadPool(2);
+            threadPool = Executors.newScheduledThreadPool(getConcurrency() + 1);
         }
         return threadPool;
     }
@@ -69,6 +81,48 @@ public class JDBCPerfTest implements SreSubApp {
         return jri;
     }
 
+    public List<JDBCRecordIterator> getJris() {
+        return jris;
+    }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Integer getRampUp() {
+        return rampUp;
+    }
+
+    public void setRampUp(Integer rampUp) {
+        this.rampUp = rampUp;
+    }
+
+    /*
+    When (ms after the start) to start 'session', spread evenly over the ramp-up.
+     */
+    protected long getStartDelay(int session) {
+        if (getConcurrency() <= 1) {
+            return 1;
+        }
+        return 1 + (getRampUp() * 1000l * session) / getConcurrency();
+    }
+
+    public FetchSizeSweep getSweep() {
+        return sweep;
+    }
+
+    public PreparedQueryBench getPrepared() {
+        return prepared;
+    }
+
+    public WorkloadRunner getWorkloadRunner() {
+        return workloadRunner;
+    }
+
     public CollectStatistics getStats() {
         return stats;
     }
@@ -90,13 +144,62 @@ public class JDBCPerfTest implements SreSubApp {
         options.addOption(password);
 
         Option query = new Option("e", "query", true, "Query");
-        query.setRequired(true);
+        query.setRequired(false);
         options.addOption(query);
 
+        Option workload = new Option("w", "workload", true,
+                "Workload file (yaml) of weighted queries to replay, instead of a single query");
+        workload.setArgs(1);
+        workload.setRequired(false);
+        options.addOption(workload);
+
         Option lite = new Option("l", "lite", false, "Don't open record.  Reduce client overhead (loose some stats)");
         lite.setRequired(false);
         options.addOption(lite);
 
+        Option sizing = new Option("s", "sizing", true,
+                "How record sizes are estimated: WIRE (default), FIXED (as before) or a SizingStrategy class name");
+        sizing.setArgs(1);
+        sizing.setRequired(false);
+        options.addOption(sizing);
+
+        Option pipeline = new Option("k", "pipeline", true,
+                "Fetch on one thread and size the records on this many others, to see the fetch apart from the decode");
+        pipeline.setArgs(1);
+        pipeline.setRequired(false);
+        options.addOption(pipeline);
+
+        Option sweepOption = new Option("x", "sweep", true,
+                "Run the query for each batch size, a list '1000,5000,20000' or a range '1000-64000', and recommend one");
+        sweepOption.setArgs(1);
+        sweepOption.setRequired(false);
+        options.addOption(sweepOption);
+
+        Option parameters = new Option("f", "parameters", true,
+                "Run the query as a PreparedStatement, once for each line (a CSV of the '?' values) of this file");
+        parameters.setArgs(1);
+        parameters.setRequired(false);
+        options.addOption(parameters);
+
+        Option iterations = new Option("i", "iterations", true,
+                "Run the PreparedStatement (and all the 'parameters') this many times on the same connection.  " +
+                        "With 'sweep', the measured runs for each batch size (default 3)");
+        iterations.setArgs(1);
+        iterations.setRequired(false);
+        options.addOption(iterations);
+
+        Option memoryBudget = new Option("m", "memory-budget", true,
+                "With 'sweep', the most memory (MB) a batch of records should take");
+        memoryBudget.setArgs(1);
+        memoryBudget.setRequired(false);
+        options.addOption(memoryBudget);
+
+        Option output = new Option("o", "output", true,
+                "Write the per second samples to this file (JSON lines, or CSV for a '.csv' file) and a summary to '<file>.summary.json'");
+        output.setArgs(1);
+        output.setRequired(false);
+        options.addOption(output);
+
         Option commment = new Option("c", "comment", true, "Comment");
         commment.setRequired(false);
         options.addOption(commment);
@@ -106,7 +209,8 @@ public class JDBCPerfTest implements SreSubApp {
         batchsize.setRequired(false);
         options.addOption(batchsize);
 
-        Option hostCheck = new Option("h", "host-check", true, "Ping a target host");
+        Option hostCheck = new Option("h", "host-check", true,
+                "Check a target host: resolve it, and connect to it when given as 'host:port'");
         hostCheck.setArgs(1);
         hostCheck.setRequired(false);
         options.addOption(hostCheck);
@@ -117,6 +221,18 @@ public class JDBCPerfTest implements SreSubApp {
         delayWarning.setRequired(false);
         options.addOption(delayWarning);
 
+        Option concurrencyOption = new Option("t", "concurrency", true,
+                "Number of sessions to run the query on at once, each with its own connection");
+        concurrencyOption.setArgs(1);
+        concurrencyOption.setRequired(false);
+        options.addOption(concurrencyOption);
+
+        Option rampUpOption = new Option("r", "ramp-up", true,
+                "Seconds over which to start the sessions (with 'concurrency')");
+        rampUpOption.setArgs(1);
+        rampUpOption.setRequired(false);
+        options.addOption(rampUpOption);
+
         // TBD WIP
 //        Option execFile = Option.builder("f").required(false)
 //                .argName("exec file").desc("Execute File")
@@ -165,6 +281,21 @@ public class JDBCPerfTest implements SreSubApp {
 
         if (cmd.hasOption("e")) {
             getJri().setQuery(cmd.getOptionValue("e"));
+        } else if (!cmd.hasOption("w")) {
+            System.err.println("Either a query (-e) or a workload file (-w) is required.");
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp(this.getClass().getName(), options);
+            System.exit(-1);
+        }
+
+        if (cmd.hasOption("w")) {
+            // The workload sets its own queries and sessions, and runs plain fetches without the record sizing.
+            for (String opt : new String[]{"e", "t", "r", "l", "s", "k", "x", "h"}) {
+                if (cmd.hasOption(opt)) {
+                    throw new RuntimeException("A 'workload' (-w) can't be used with -" + opt + ".  It can't be " +
+                            "combined with -e, -t, -r, -l, -s, -k, -x or -h.");
+                }
+            }
         }
 
         if (cmd.hasOption("l")) {
@@ -176,6 +307,20 @@ public class JDBCPerfTest implements SreSubApp {
             getJri().setBatchSize(Integer.valueOf(value));
         }
 
+        if (cmd.hasOption("s")) {
+            getJri().setSizing(Sizing.forName(cmd.getOptionValue("s")));
+        }
+
+        if (cmd.hasOption("k")) {
+            if (cmd.hasOption("l")) {
+                throw new RuntimeException("A 'pipeline' (-k) sizes the records, it can't be used with 'lite' (-l).");
+            }
+            getJri().setPipeline(Integer.valueOf(cmd.getOptionValue("k")));
+            if (getJri().getPipeline() < 1) {
+                throw new RuntimeException("The 'pipeline' needs at least 1 consumer.");
+            }
+        }
+
         if (cmd.hasOption("h")) {
             String value = cmd.getOptionValue("h");
             getJri().setPingHost(value);
@@ -186,9 +331,84 @@ public class JDBCPerfTest implements SreSubApp {
             getJri().setDelayWarning(Integer.valueOf(value));
         }
 
-        stats = new CollectStatistics(getJri());
+        if (cmd.hasOption("t")) {
+            String value = cmd.getOptionValue("t");
+            setConcurrency(Integer.valueOf(value));
+            if (getConcurrency() < 1) {
+                throw new RuntimeException("The 'concurrency' must be at least 1.");
+            }
+        }
+
+        if (cmd.hasOption("r")) {
+            String value = cmd.getOptionValue("r");
+            setRampUp(Integer.valueOf(value));
+        }
+
+        getJris().add(getJri());
+        for (int i = 1; i < getConcurrency(); i++) {
+            getJris().add(getJri().copy(i));
+        }
+
+        stats = new CollectStatistics(getJris());
         if (cmd.hasOption("c")) {
-            stats.setComment(cmd.getOptionValue("c"));
+            comment = cmd.getOptionValue("c");
+            stats.setComment(comment);
+        }
+
+        if (cmd.hasOption("o")) {
+            // The other modes print their own results and never sample the sessions.
+            if (cmd.hasOption("w") || cmd.hasOption("x") || cmd.hasOption("f") || cmd.hasOption("i")) {
+                throw new RuntimeException("The 'output' (-o) is only written for a query run, it can't be used " +
+                        "with a 'workload' (-w), 'sweep' (-x) or prepared run (-f/-i).");
+            }
+            stats.setSampleWriter(new SampleWriter(cmd.getOptionValue("o")));
+        }
+
+        if (cmd.hasOption("x")) {
+            if (!cmd.hasOption("e")) {
+                throw new RuntimeException("A 'sweep' (-x) needs a query (-e).");
+            }
+            sweep = new FetchSizeSweep(getJri(), cmd.getOptionValue("x"));
+            if (cmd.hasOption("m")) {
+                if (cmd.hasOption("l")) {
+                    throw new RuntimeException("The 'memory-budget' (-m) needs the record sizes, which 'lite' (-l) " +
+                            "doesn't collect.");
+                }
+                sweep.setMemoryBudget(Long.valueOf(cmd.getOptionValue("m")) * 1024 * 1024);
+            }
+            if (cmd.hasOption("i")) {
+                sweep.setRepetitions(Integer.valueOf(cmd.getOptionValue("i")));
+                if (sweep.getRepetitions() < 1) {
+                    throw new RuntimeException("The 'sweep' needs at least 1 run for each batch size.");
+                }
+            }
+        }
+
+        if (cmd.hasOption("f") || (cmd.hasOption("i") && !cmd.hasOption("x"))) {
+            if (!cmd.hasOption("e") || cmd.hasOption("x") || cmd.hasOption("t")) {
+                throw new RuntimeException("A prepared run (-f/-i) needs a query (-e), and can't be combined with " +
+                        "a 'sweep' (-x) or 'concurrency' (-t).");
+            }
+            prepared = new PreparedQueryBench();
+            prepared.setJdbcUrl(getJri().getJdbcUrl());
+            prepared.setUsername(getJri().getUsername());
+            prepared.setPassword(getJri().getPassword());
+            prepared.setQuery(getJri().getQuery());
+            prepared.setBatchSize(getJri().getBatchSize());
+            if (cmd.hasOption("f")) {
+                prepared.setParameterSets(ParameterSets.load(cmd.getOptionValue("f")));
+            }
+            if (cmd.hasOption("i")) {
+                prepared.setIterations(Integer.valueOf(cmd.getOptionValue("i")));
+            }
+        }
+
+        if (cmd.hasOption("w")) {
+            workloadRunner = new WorkloadRunner(Workload.load(cmd.getOptionValue("w")));
+            workloadRunner.setJdbcUrl(getJri().getJdbcUrl());
+            workloadRunner.setUsername(getJri().getUsername());
+            workloadRunner.setPassword(getJri().getPassword());
+            workloadRunner.setBatchSize(getJri().getBatchSize());
         }
     }
 
@@ -204,7 +424,24 @@ public class JDBCPerfTest implements SreSubApp {
     }
 
     public void start() {
-        getProcessThreads().add(getThreadPool().schedule(this.getJri(), 1, MILLISECONDS));
+        if (getWorkloadRunner() != null) {
+            runWorkload();
+            return;
+        }
+        if (getPrepared() != null) {
+            getPrepared().run();
+            getPrepared().printResults(comment);
+            return;
+        }
+        if (getSweep() != null) {
+            getSweep().run();
+            getSweep().printResults(comment);
+            return;
+        }
+        for (JDBCRecordIterator lclJri : getJris()) {
+            getProcessThreads().add(getThreadPool().schedule(lclJri,
+                    getStartDelay(lclJri.getSession()), MILLISECONDS));
+        }
         getProcessThreads().add(getThreadPool().schedule(this.getStats(), 1000, MILLISECONDS));
 //        getStats().start();
 
@@ -226,11 +463,26 @@ public class JDBCPerfTest implements SreSubApp {
             getStats().printStatus(Boolean.FALSE);
         }
         getStats().printStatus(Boolean.TRUE);
+        getStats().writeSummary();
         getThreadPool().shutdown();
 //        getStats().interrupt();
 
     }
 
+    protected void runWorkload() {
+        ScheduledFuture sf = getThreadPool().schedule(getWorkloadRunner(), 1, MILLISECONDS);
+        while (!sf.isDone()) {
+            try {
+                TimeUnit.SECONDS.sleep(DISPLAY_REFRESH_SECS);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            getWorkloadRunner().printStatus(Boolean.FALSE, comment);
+        }
+        getWorkloadRunner().printStatus(Boolean.TRUE, comment);
+        getThreadPool().shutdown();
+    }
+
     public static void main(String[] args) {
         JDBCPerfTest test = new JDBCPerfTest("perf");
         test.init(args);
@@ -19,44 +19,115 @@ package com.cloudera.utils.hive.perf;
 import com.cloudera.utils.hive.reporting.ReportingConf;
 import org.apache.commons.lang3.time.StopWatch;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-
-import static java.sql.Types.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class JDBCRecordIterator implements Runnable {
 
+    // Fetch delays (ms) over this are counted as this in the histogram.
+    public static final long MAX_FETCH_DELAY = 3600000l;
+    // The counts are published every 4096 records.
+    private static final long PUBLISH_MASK = 4095;
+
     public enum ProcessingState {
         FETCHING, PROCESSING;
     }
+    private Integer session = 0;
     private String jdbcUrl;
     private String username;
     private String password;
     private String query;
     private String pingHost;
+    // Time the steps to the server before connecting.  Only the first session does.
+    private Boolean checkPath = Boolean.TRUE;
+    private ConnectionPath connectionPath = null;
     private Integer batchSize = 5000;
     private Integer lastBatchSize = 0;
     private ProcessingState processingState = ProcessingState.FETCHING;
     private Integer delayWarning = 2000;
     private Boolean lite = Boolean.FALSE;
+    private SizingStrategy sizing = Sizing.WIRE;
+    // When more than 0, the records are sized by this many threads off the fetch thread.
+    private Integer pipeline = 0;
+    private volatile RowRing ring = null;
+    // The fetch thread's time, less the time it waited on the pipeline, -1 until known.
+    private volatile long fetchTime = -1;
+    // Once the query returns (and not 'lite'), the columns and their bytes so far.
+    private volatile String[] columnNames = null;
+    private volatile String[] columnTypeNames = null;
+    private volatile AtomicLongArray columnSizes = null;
     private StringBuilder connectionDetails = new StringBuilder();
     private AtomicLong count = new AtomicLong(0);
     private AtomicLong size = new AtomicLong(0);
     private Date start;
     private Boolean completed = Boolean.FALSE;
+    // Milliseconds to get the connection and for the query to return, -1 until known.
+    private volatile long connectTime = -1;
+    private volatile long queryTime = -1;
+    private volatile long iterateTime = -1;
+    // Why the run stopped early, when it did.
+    private volatile String issue = null;
 
     private Statistic lastStat;
     private FetchDelay lastDelay;
 
-    private Deque<FetchDelay> fetchDelays = new ConcurrentLinkedDeque<FetchDelay>();
+    // Every remote fetch, for the run.
+    private final LatencyHistogram fetchLatencies = new LatencyHistogram(MAX_FETCH_DELAY);
+    private volatile long lastFetchDelay = -1;
+    private volatile long lastFetchEnd = 0;
     private Deque<FetchDelay> excessDelays = new ConcurrentLinkedDeque<FetchDelay>();
 
+    /*
+    A new iterator, for another session, with the same connection and query settings.
+     */
+    public JDBCRecordIterator copy(Integer session) {
+        JDBCRecordIterator rtn = new JDBCRecordIterator();
+        rtn.session = session;
+        rtn.jdbcUrl = jdbcUrl;
+        rtn.username = username;
+        rtn.password = password;
+        rtn.query = query;
+        rtn.batchSize = batchSize;
+        rtn.delayWarning = delayWarning;
+        rtn.lite = lite;
+        rtn.sizing = sizing;
+        rtn.pipeline = pipeline;
+        // The host and connection path checks are only run by the first session.
+        rtn.checkPath = Boolean.FALSE;
+        return rtn;
+    }
+
+    public Integer getSession() {
+        return session;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public long getQueryTime() {
+        return queryTime;
+    }
+
+    public long getIterateTime() {
+        return iterateTime;
+    }
+
+    public String getIssue() {
+        return issue;
+    }
+
+    public ProcessingState getProcessingState() {
+        return processingState;
+    }
+
     public AtomicLong getCount() {
         return count;
     }
@@ -89,6 +160,18 @@ public class JDBCRecordIterator implements Runnable {
         this.pingHost = pingHost;
     }
 
+    public Boolean getCheckPath() {
+        return checkPath;
+    }
+
+    public void setCheckPath(Boolean checkPath) {
+        this.checkPath = checkPath;
+    }
+
+    public ConnectionPath getConnectionPath() {
+        return connectionPath;
+    }
+
     public String getPassword() {
         return password;
     }
@@ -133,6 +216,42 @@ public class JDBCRecordIterator implements Runnable {
         this.lite = lite;
     }
 
+    public SizingStrategy getSizing() {
+        return sizing;
+    }
+
+    public void setSizing(SizingStrategy sizing) {
+        this.sizing = sizing;
+    }
+
+    public Integer getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(Integer pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public RowRing getRing() {
+        return ring;
+    }
+
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public String[] getColumnTypeNames() {
+        return columnTypeNames;
+    }
+
+    public AtomicLongArray getColumnSizes() {
+        return columnSizes;
+    }
+
     public Boolean getCompleted() {
         return completed;
     }
@@ -145,32 +264,20 @@ public class JDBCRecordIterator implements Runnable {
         return start;
     }
 
-    protected Long delaySinceLastStat() {
-        Long rtn = 0l;
-        if (lastStat != null) {
-            Iterator<FetchDelay> delayIterator = fetchDelays.descendingIterator();
-            while (delayIterator.hasNext()) {
-                FetchDelay ldelay = delayIterator.next();
-                if (ldelay.getTimestamp() > lastStat.getTimestamp().getTime()) {
-                    rtn += ldelay.getDelay();
-                }
-            }
-        }
-        return rtn;
-    }
-
     public Statistic getStat() {
-        Long delay = delaySinceLastStat();
+        LatencyHistogram snapshot = fetchLatencies.snapshot();
+        // The fetch time since the last stat.
+        Long delay = snapshot.getTotal() - (lastStat != null ? lastStat.getFetchLatencies().getTotal() : 0l);
         Statistic stat = Statistic.build(count.get(), size.get(), delay);
+        stat.setFetchLatencies(snapshot);
         lastStat = stat;
         return stat;
     }
 
-    public void pushFetchDelay(FetchDelay delay) {
-//        lastDelay = delay;
-        fetchDelays.add(delay);
-        if (fetchDelays.size() > 500)
-            fetchDelays.removeFirst();
+    public void recordFetchDelay(long delay) {
+        fetchLatencies.record(delay);
+        lastFetchDelay = delay;
+        lastFetchEnd = System.currentTimeMillis();
     }
 
     public void pushExcessiveDelay(FetchDelay delay) {
@@ -180,25 +287,38 @@ public class JDBCRecordIterator implements Runnable {
             excessDelays.removeFirst();
     }
 
-    public Deque<FetchDelay> getFetchDelays() {
-        return fetchDelays;
+    public LatencyHistogram getFetchLatencies() {
+        return fetchLatencies;
     }
 
     public String printLastFetchDelay() {
         StringBuilder sb = new StringBuilder();
-        try {
-            FetchDelay fetchDelay = getFetchDelays().getLast();
-            if (fetchDelay != null) {
-                sb.append(ReportingConf.ANSI_GREEN + "-----------------------------------" + ReportingConf.ANSI_YELLOW).append("\n");
-                sb.append("\tLast fetch took ").append(fetchDelay.getDelay()).append("ms");
-                sb.append(", ").append(System.currentTimeMillis() - (fetchDelay.getTimestamp() + fetchDelay.getDelay())).append("ms ago\n");
-                sb.append("\tProcessing State: ").append(this.processingState.toString());
+        if (lastFetchDelay >= 0) {
+            sb.append(ReportingConf.ANSI_GREEN + "-----------------------------------" + ReportingConf.ANSI_YELLOW).append("\n");
+            sb.append("\tLast fetch took ").append(lastFetchDelay).append("ms");
+            sb.append(", ").append(System.currentTimeMillis() - lastFetchEnd).append("ms ago\n");
+            sb.append("\tProcessing State: ").append(this.processingState.toString());
+        }
+        return sb.toString();
+    }
+    public String printPipeline() {
+        StringBuilder sb = new StringBuilder();
+        RowRing lclRing = ring;
+        if (lclRing != null) {
+            sb.append(ReportingConf.ANSI_GREEN + "-----------------------------------" + ReportingConf.ANSI_YELLOW).append("\n");
+            sb.append("\tPipeline: ").append(lclRing.getConsumers()).append(" consumers, ");
+            sb.append(lclRing.getCapacity()).append(" records\n");
+            sb.append("\tFetch thread waited for consumers: ").append(lclRing.getFetchWait()).append("ms");
+            sb.append(", Consumers busy: ").append(lclRing.getConsumerBusy()).append("ms");
+            sb.append(", Consumers waited for records: ").append(lclRing.getConsumerWait()).append("ms");
+            if (fetchTime > 0) {
+                sb.append("\n\tFetch only: ").append(fetchTime).append("ms, ");
+                sb.append(count.get() * 1000 / fetchTime).append(" records per/sec");
             }
-        } catch (Throwable t) {
-            // nothing found;
         }
         return sb.toString();
     }
+
     public String printExcessiveFetchDelays() {
         StringBuilder sb = new StringBuilder();
         if (excessDelays.size() > 0) {
@@ -212,39 +332,234 @@ public class JDBCRecordIterator implements Runnable {
         return sb.toString();
     }
 
-    public String ping(String host)
-            throws IOException {
-        String s = null;
-
-        List<String> commands = new ArrayList<String>();
-        commands.add("ping");
-        commands.add("-c");
-        commands.add("5");
-        commands.add(host);
-
-        ProcessBuilder pb = new ProcessBuilder(commands);
-        Process process = pb.start();
-
-        BufferedReader stdInput = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        BufferedReader stdError = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+    /*
+    Read all of 'rs', counting the records and (unless 'lite') sizing each column with the 'sizing'
+    strategy.  The counts are kept in locals and published every 4096 records.  The clock is only
+    read around the 'next' that starts a batch, which is where the driver goes back to the server.
+     */
+    protected long iterate(ResultSet rs) throws SQLException {
+        ColumnSizer[] sizers = null;
+        long[] columnBytes = null;
+        if (!lite) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            sizers = new ColumnSizer[metaData.getColumnCount()];
+            String[] names = new String[sizers.length];
+            String[] typeNames = new String[sizers.length];
+            for (int i = 0; i < sizers.length; i++) {
+                int columnType = metaData.getColumnType(i + 1);
+                sizers[i] = sizing.sizerFor(columnType);
+                names[i] = metaData.getColumnName(i + 1);
+                typeNames[i] = metaData.getColumnTypeName(i + 1);
+            }
+            columnBytes = new long[sizers.length];
+            columnSizes = new AtomicLongArray(sizers.length);
+            columnNames = names;
+            columnTypeNames = typeNames;
+        }
+        final int lclBatchSize = this.batchSize;
+        long rows = 0;
+        long bytes = 0;
+        int batchRow = 0;
+        processingState = ProcessingState.FETCHING;
+        while (true) {
+            long before = batchRow == 0 ? System.nanoTime() : 0;
+            if (!rs.next()) {
+                break;
+            }
+            if (batchRow == 0) {
+                long delay = (System.nanoTime() - before) / 1000000;
+                if (delay > 10) { // 10 ms should mark a remote fetch
+                    recordFetchDelay(delay);
+                    if (delay > delayWarning) {
+                        pushExcessiveDelay(new FetchDelay(delay, rows));
+                    }
+                }
+                processingState = ProcessingState.PROCESSING;
+            }
+            rows++;
+            if (sizers != null) {
+                for (int i = 0; i < sizers.length; i++) {
+                    long columnSize = sizers[i].size(rs, i + 1);
+                    columnBytes[i] += columnSize;
+                    bytes += columnSize;
+                }
+            }
+            if ((rows & PUBLISH_MASK) == 0) {
+                count.lazySet(rows);
+                size.lazySet(bytes);
+                publishColumnSizes(columnBytes);
+            }
+            if (++batchRow == lclBatchSize) {
+                batchRow = 0;
+                processingState = ProcessingState.FETCHING;
+            }
+        }
+        count.set(rows);
+        size.set(bytes);
+        publishColumnSizes(columnBytes);
+        // The size of the last fetch.  Used to compare against the configured batch size to validate.
+        this.lastBatchSize = rows > 0 && rows % lclBatchSize == 0 ? lclBatchSize : (int) (rows % lclBatchSize);
+        return rows;
+    }
+
+    /*
+    Like 'iterate', but this thread only fetches.  Each record's values are copied (getObject) into a
+    @link RowRing, and 'pipeline' threads size them.  The fetch thread's time, less what it waited for
+    the consumers, is the fetch alone.  When it's close to the iterate time, the consumers are keeping
+    up and the decode is hidden behind the fetch.
+
+    Columns whose sizer can only read from the ResultSet (no 'sizeOf') are sized on the fetch thread,
+    and their size is handed over in place of the value.
+     */
+    protected long iteratePipelined(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        final ColumnSizer[] sizers = new ColumnSizer[metaData.getColumnCount()];
+        final boolean[] presized = new boolean[sizers.length];
+        String[] names = new String[sizers.length];
+        String[] typeNames = new String[sizers.length];
+        for (int i = 0; i < sizers.length; i++) {
+            sizers[i] = sizing.sizerFor(metaData.getColumnType(i + 1));
+            presized[i] = !sizesValues(sizers[i]);
+            names[i] = metaData.getColumnName(i + 1);
+            typeNames[i] = metaData.getColumnTypeName(i + 1);
+        }
+        columnSizes = new AtomicLongArray(sizers.length);
+        columnNames = names;
+        columnTypeNames = typeNames;
+
+        final int lclBatchSize = this.batchSize;
+        // Enough room for a fetch's worth of records.
+        final RowRing lclRing = new RowRing(sizers.length, lclBatchSize, pipeline);
+        ring = lclRing;
+        ExecutorService consumers = Executors.newFixedThreadPool(pipeline);
+        for (int c = 0; c < pipeline; c++) {
+            consumers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    consume(lclRing, sizers, presized);
+                }
+            });
+        }
+        long rows = 0;
+        int batchRow = 0;
+        long started = System.nanoTime();
+        processingState = ProcessingState.FETCHING;
+        try {
+            RowRing.Chunk chunk = lclRing.claim();
+            while (true) {
+                long before = batchRow == 0 ? System.nanoTime() : 0;
+                if (!rs.next()) {
+                    break;
+                }
+                if (batchRow == 0) {
+                    long delay = (System.nanoTime() - before) / 1000000;
+                    if (delay > 10) { // 10 ms should mark a remote fetch
+                        recordFetchDelay(delay);
+                        if (delay > delayWarning) {
+                            pushExcessiveDelay(new FetchDelay(delay, rows));
+                        }
+                    }
+                    processingState = ProcessingState.PROCESSING;
+                }
+                Object[] row = chunk.getRow(chunk.getCount());
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = presized[i] ? (Object) sizers[i].size(rs, i + 1) : rs.getObject(i + 1);
+                }
+                chunk.setCount(chunk.getCount() + 1);
+                rows++;
+                if (chunk.isFull()) {
+                    lclRing.publish(chunk);
+                    if (lclRing.getError() != null) {
+                        break;
+                    }
+                    chunk = lclRing.claim();
+                }
+                if ((rows & PUBLISH_MASK) == 0) {
+                    count.lazySet(rows);
+                }
+                if (++batchRow == lclBatchSize) {
+                    batchRow = 0;
+                    processingState = ProcessingState.FETCHING;
+                }
+            }
+            if (chunk.getCount() > 0 && !chunk.isFull()) {
+                lclRing.publish(chunk);
+            }
+            fetchTime = (System.nanoTime() - started) / 1000000 - lclRing.getFetchWait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching the records", e);
+        } finally {
+            lclRing.finish();
+            consumers.shutdown();
+            try {
+                consumers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (lclRing.getError() != null) {
+            throw new RuntimeException("Issue sizing the records: " + lclRing.getError().getMessage(),
+                    lclRing.getError());
+        }
+        count.set(rows);
+        this.lastBatchSize = rows > 0 && rows % lclBatchSize == 0 ? lclBatchSize : (int) (rows % lclBatchSize);
+        return rows;
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append(commands.toString()).append("\n");
-        // read the output from the command
-//        System.out.println("Here is the standard output of the command:\n");
-        while ((s = stdInput.readLine()) != null) {
-            sb.append(s).append("\n");
-//            System.out.println(s);
+    /*
+    Whether 'sizer' implements 'sizeOf', rather than leaving the default.
+     */
+    protected static boolean sizesValues(ColumnSizer sizer) {
+        try {
+            return !sizer.getClass().getMethod("sizeOf", Object.class).isDefault();
+        } catch (NoSuchMethodException e) {
+            return false;
         }
+    }
 
-        // read any errors from the attempted command
-//        System.out.println("Here is the standard error of the command (if any):\n");
-        while ((s = stdError.readLine()) != null) {
-            sb.append(s).append("\n");
-//            System.out.println(s);
+    /*
+    A pipeline consumer.  Sizes the chunks until the fetch is done, adding to the totals once a chunk.
+     */
+    private void consume(RowRing lclRing, ColumnSizer[] sizers, boolean[] presized) {
+        long[] columnBytes = new long[sizers.length];
+        try {
+            RowRing.Chunk chunk;
+            while ((chunk = lclRing.take()) != null) {
+                long before = System.nanoTime();
+                if (lclRing.getError() == null) {
+                    try {
+                        long bytes = 0;
+                        for (int r = 0; r < chunk.getCount(); r++) {
+                            Object[] row = chunk.getRow(r);
+                            for (int i = 0; i < sizers.length; i++) {
+                                long columnSize = presized[i] ? (Long) row[i] : sizers[i].sizeOf(row[i]);
+                                columnBytes[i] += columnSize;
+                                bytes += columnSize;
+                            }
+                        }
+                        size.addAndGet(bytes);
+                        for (int i = 0; i < columnBytes.length; i++) {
+                            columnSizes.addAndGet(i, columnBytes[i]);
+                            columnBytes[i] = 0;
+                        }
+                    } catch (RuntimeException e) {
+                        lclRing.setError(e);
+                    }
+                }
+                lclRing.release(chunk, System.nanoTime() - before);
+            }
+        } catch (InterruptedException e) {
+            lclRing.setError(e);
         }
+    }
 
-        return sb.toString();
+    private void publishColumnSizes(long[] columnBytes) {
+        if (columnBytes != null) {
+            for (int i = 0; i < columnBytes.length; i++) {
+                columnSizes.lazySet(i, columnBytes[i]);
+            }
+        }
     }
 
     @Override
@@ -253,11 +568,14 @@ public class JDBCRecordIterator implements Runnable {
         StopWatch stopWatch = new StopWatch();
         Connection conn = null;
         if (getPingHost() != null) {
+            connectionDetails.append(ConnectionPath.checkHost(getPingHost()));
+        }
+        if (checkPath) {
             try {
-                connectionDetails.append(ping(getPingHost())).append("\n");
-            } catch (IOException e) {
-                connectionDetails.append("Host doesn't support ping");
-                e.printStackTrace();
+                connectionPath = ConnectionPath.parse(this.jdbcUrl);
+                connectionDetails.append(connectionPath.diagnose());
+            } catch (RuntimeException rt) {
+                connectionDetails.append("Connection Path Issue: ").append(rt.getMessage()).append("\n");
             }
         }
         try {
@@ -267,6 +585,7 @@ public class JDBCRecordIterator implements Runnable {
             connectionDetails.append("Connect Attempt  : " + stopWatch.getSplitTime()).append("ms\n");
             conn = DriverManager.getConnection(this.jdbcUrl, this.username, this.password);
             stopWatch.split();
+            connectTime = stopWatch.getSplitTime();
             connectionDetails.append("Connected        : " + stopWatch.getSplitTime()).append("ms\n");
             Statement stmt = conn.createStatement();
             stopWatch.split();
@@ -274,92 +593,25 @@ public class JDBCRecordIterator implements Runnable {
             stmt.setFetchSize(this.batchSize);
             stopWatch.split();
             connectionDetails.append("Before Query     : " + stopWatch.getSplitTime()).append("ms\n");
+            long beforeQuery = stopWatch.getSplitTime();
             ResultSet rs = stmt.executeQuery(this.query);
             stopWatch.split();
+            queryTime = stopWatch.getSplitTime() - beforeQuery;
             connectionDetails.append("Query Return     : " + stopWatch.getSplitTime()).append("ms\n");
-            int[] columnTypes = null;
-            if (!lite) {
-                columnTypes = new int[rs.getMetaData().getColumnCount()];
-                for (int i = 0; i < rs.getMetaData().getColumnCount(); i++) {
-                    columnTypes[i] = rs.getMetaData().getColumnType(i + 1);
-                }
-            }
             stopWatch.split();
             connectionDetails.append("Start Iterating Results   : " + stopWatch.getSplitTime()).append("ms\n");
-            long marker = System.currentTimeMillis();
-            long inc = 0;
-            processingState = ProcessingState.FETCHING;
-            while (rs.next()) {
-                processingState = ProcessingState.PROCESSING;
-                long lDelay = System.currentTimeMillis() - marker;
-                if (lDelay > 10) { // 10 ms should mark a remote fetch
-                    FetchDelay delay = new FetchDelay(lDelay, count.get());
-                    // Setup the batch size in the last fetch.  Used to compare against the
-                    // configured batch size to validate.
-                    Long check = inc % this.batchSize;
-                    if (check.intValue() == 0) {
-                        this.lastBatchSize = this.batchSize;
-                    } else {
-                        this.lastBatchSize = check.intValue();
-                    }
-                    pushFetchDelay(delay);
-                    if (lDelay > delayWarning) {
-                        pushExcessiveDelay(delay);
-                    }
-                }
-                count.getAndAdd(1);//(inc++);
-                if (!lite) {
-                    for (int i = 0; i < columnTypes.length; i++) {
-                        switch (columnTypes[i]) {
-                            case BIT:
-                                size.getAndAdd(1);//rs.getByte(i+1));
-                                break;
-                            case TINYINT:
-                                size.getAndAdd(1);
-                                break;
-                            case SMALLINT:
-                                size.getAndAdd(2);
-                                break;
-                            case INTEGER:
-                                size.getAndAdd(4);
-                                break;
-                            case BIGINT:
-                                size.getAndAdd(8);
-                                break;
-                            case FLOAT:
-                                size.getAndAdd(4);
-                                break;
-                            case REAL:
-                            case DOUBLE:
-                                size.getAndAdd(8);
-                                break;
-                            case NUMERIC:
-                                size.getAndAdd(8);
-                                break;
-                            case DECIMAL:
-                                size.getAndAdd(8);
-                                break;
-                            case CHAR:
-                            case VARCHAR:
-                            case LONGVARCHAR:
-                                String check = rs.getString(i + 1);
-                                if (check != null)
-                                    size.getAndAdd(check.length());
-                                break;
-                            case DATE:
-                            case TIME:
-                            case TIMESTAMP:
-                                size.getAndAdd(8);
-                                break;
-                        }
-                    }
-                }
-                // reset marker
-                marker = System.currentTimeMillis();
-                processingState = ProcessingState.FETCHING;
+            long beforeIterate = stopWatch.getSplitTime();
+            if (pipeline > 0 && !lite) {
+                iteratePipelined(rs);
+            } else {
+                iterate(rs);
             }
             stopWatch.split();
+            iterateTime = stopWatch.getSplitTime() - beforeIterate;
             connectionDetails.append("Completed Iterating Results: " + stopWatch.getSplitTime()).append("ms\n");
+            if (fetchTime >= 0) {
+                connectionDetails.append("Fetch Only (pipelined)     : " + fetchTime).append("ms\n");
+            }
             stmt.close();
             stopWatch.split();
             connectionDetails.append("Statement Closed           : " + stopWatch.getSplitTime()).append("ms\n");
@@ -370,16 +622,19 @@ public class JDBCRecordIterator implements Runnable {
             stopWatch.split();
             connectionDetails.append("SQL Issue                  : " + stopWatch.getSplitTime()).append("ms\n");
             connectionDetails.append("** Message **\n").append(se.getMessage()).append("\n");
+            issue = se.getMessage();
             se.printStackTrace();
         } catch (RuntimeException rt) {
             stopWatch.split();
             connectionDetails.append("Processing Issue           : " + stopWatch.getSplitTime()).append("ms\n");
             connectionDetails.append("   Message:\n").append(rt.getMessage()).append("\n");
+            issue = rt.getMessage();
             rt.printStackTrace();
         } catch (Throwable t) {
             stopWatch.split();
             connectionDetails.append("Processing Issue           : " + stopWatch.getSplitTime()).append("ms\n");
             connectionDetails.append("   Message:\n").append(t.getMessage()).append("\n");
+            issue = String.valueOf(t.getMessage());
             connectionDetails.append("   Kerberos Attempted connections without the proper Hadoop Libs will cause this.\n");
             t.printStackTrace();
         } finally {
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+A fixed size, log-linear histogram of latencies, in the style of HdrHistogram.  Values below
+SUB_BUCKETS are counted exactly, above that each power of two is split into HALF_SUB_BUCKETS
+buckets, so a value is off by at most 1/HALF_SUB_BUCKETS (~3%).  Recording is lock free and
+doesn't allocate.  Values over the 'highestTrackableValue' are counted in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong(0);
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < SUB_BUCKETS) {
+            highestTrackableValue = SUB_BUCKETS;
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+    protected static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Keep the top SUB_BUCKET_BITS bits of the value.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+    }
+
+    /*
+    The largest value counted in bucket 'index'.
+     */
+    protected static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(Math.min(value, highestTrackableValue)));
+        totalCount.incrementAndGet();
+        total.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /*
+    The sum of the recorded values.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long count = totalCount.get();
+        return count > 0 ? total.get() / count : 0;
+    }
+
+    /*
+    The value that 'percentile' percent of the recorded values are at or below, -1 when empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return -1;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /*
+    A copy of the current counts, to compare against later.
+     */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram rtn = new LatencyHistogram(highestTrackableValue);
+        rtn.add(this);
+        return rtn;
+    }
+
+    public void add(LatencyHistogram other) {
+        int length = Math.min(counts.length(), other.counts.length());
+        for (int i = 0; i < length; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        total.addAndGet(other.total.get());
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    /*
+    What was recorded since the 'earlier' snapshot.  The max is the top of the highest bucket used,
+    capped by the max of this histogram.
+     */
+    public LatencyHistogram since(LatencyHistogram earlier) {
+        LatencyHistogram rtn = new LatencyHistogram(highestTrackableValue);
+        long lclMax = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i) - (earlier != null && i < earlier.counts.length() ? earlier.counts.get(i) : 0);
+            if (count > 0) {
+                rtn.counts.set(i, count);
+                lclMax = highestValueAt(i);
+            }
+        }
+        rtn.totalCount.set(totalCount.get() - (earlier != null ? earlier.totalCount.get() : 0));
+        rtn.total.set(total.get() - (earlier != null ? earlier.total.get() : 0));
+        rtn.max.set(Math.min(lclMax, max.get()));
+        return rtn;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("p50 ").append(getValueAtPercentile(50));
+        sb.append(" | p90 ").append(getValueAtPercentile(90));
+        sb.append(" | p99 ").append(getValueAtPercentile(99));
+        sb.append(" | max ").append(getMax());
+        sb.append(" (").append(getTotalCount()).append(" samples)");
+        return sb.toString();
+    }
+}
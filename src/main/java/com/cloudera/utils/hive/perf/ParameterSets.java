@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+The parameter sets for a prepared query, read from a CSV file: one set per line, with the values in
+the order of the query's '?'s.  Blank lines and lines starting with '#' are skipped.
+
+A quoted value ("...") is always a string.  Otherwise NULL is a null, a whole number is bound as a
+long, a decimal number as a BigDecimal, and anything else as a string.
+ */
+public class ParameterSets {
+
+    private final List<Object[]> sets = new ArrayList<Object[]>();
+
+    public static ParameterSets load(String parametersFile) {
+        File file = new File(parametersFile);
+        if (!file.exists()) {
+            throw new RuntimeException("Missing parameters file: " + parametersFile);
+        }
+        try {
+            ParameterSets rtn = new ParameterSets();
+            for (String line : FileUtils.readLines(file, Charset.forName("UTF-8"))) {
+                rtn.add(line);
+            }
+            if (rtn.size() == 0) {
+                throw new RuntimeException("No parameter sets in: " + parametersFile);
+            }
+            return rtn;
+        } catch (IOException e) {
+            throw new RuntimeException("Issue reading parameters file: " + parametersFile, e);
+        }
+    }
+
+    public void add(String line) {
+        if (line.trim().length() > 0 && !line.trim().startsWith("#")) {
+            sets.add(parse(line));
+        }
+    }
+
+    public int size() {
+        return sets.size();
+    }
+
+    public Object[] get(int set) {
+        return sets.get(set);
+    }
+
+    /*
+    The values of a CSV line, typed.  Quotes in a quoted value are doubled ("say ""hi""").
+     */
+    protected static Object[] parse(String line) {
+        List<Object> rtn = new ArrayList<Object>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    inQuotes = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                rtn.add(valueOf(value.toString(), quoted));
+                value.setLength(0);
+                quoted = false;
+            } else {
+                value.append(c);
+            }
+        }
+        if (inQuotes) {
+            throw new RuntimeException("Unclosed quote in parameter set: " + line);
+        }
+        rtn.add(valueOf(value.toString(), quoted));
+        return rtn.toArray();
+    }
+
+    protected static Object valueOf(String value, boolean quoted) {
+        if (quoted) {
+            return value;
+        }
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("NULL")) {
+            return null;
+        }
+        if (trimmed.matches("-?\\d{1,18}")) {
+            return Long.valueOf(trimmed);
+        }
+        if (trimmed.matches("-?\\d*\\.\\d+|-?\\d+\\.\\d*")) {
+            return new BigDecimal(trimmed);
+        }
+        return trimmed;
+    }
+
+    /*
+    Set the parameters of 'statement' from a set.
+     */
+    public void bind(PreparedStatement statement, int set) throws SQLException {
+        Object[] values = sets.get(set);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                statement.setNull(i + 1, Types.NULL);
+            } else if (value instanceof Long) {
+                statement.setLong(i + 1, (Long) value);
+            } else if (value instanceof BigDecimal) {
+                statement.setBigDecimal(i + 1, (BigDecimal) value);
+            } else {
+                statement.setString(i + 1, value.toString());
+            }
+        }
+    }
+}
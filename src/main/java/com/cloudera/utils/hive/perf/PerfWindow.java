@@ -18,7 +18,6 @@ package com.cloudera.utils.hive.perf;
 
 import java.util.Date;
 import java.util.Deque;
-import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 public class PerfWindow {
@@ -61,6 +60,10 @@ public class PerfWindow {
         this.jri = jri;
     }
 
+    public boolean isFilled() {
+        return realWindowLengthSecs != null && realWindowLengthSecs > 0;
+    }
+
     public Long getAverage() {
 //        Statistic first = queue.getFirst();
 //        Statistic last = queue.getLast();
@@ -69,6 +72,9 @@ public class PerfWindow {
     }
 
     public Long getPerSec() {
+        if (!isFilled()) {
+            return 0l;
+        }
 //        Statistic first = queue.getFirst();
 //        Statistic last = queue.getLast();
         Long total = last.getRecordCount() - first.getRecordCount();
@@ -76,25 +82,24 @@ public class PerfWindow {
     }
 
     public Long getSizePerSec() {
+        if (!isFilled()) {
+            return 0l;
+        }
 //        Statistic first = queue.getFirst();
 //        Statistic last = queue.getLast();
         Long total = last.getSize() - first.getSize();
         return total / realWindowLengthSecs;
     }
 
-    public Long getFetchTime() {
-        Iterator<FetchDelay> iFetchs = getJri().getFetchDelays().descendingIterator();
+    /*
+    The fetches in the window.
+     */
+    public LatencyHistogram getFetchLatencies() {
+        return last.getFetchLatencies().since(first.getFetchLatencies());
+    }
 
-        Long rtn = 0l;
-        while (iFetchs.hasNext()) {
-            FetchDelay fetch = iFetchs.next();
-            if (fetch.getTimestamp() > first.getTimestamp().getTime()) {
-                rtn += fetch.getDelay();
-            } else {
-                break;
-            }
-        }
-        return rtn;
+    public Long getFetchTime() {
+        return last.getFetchLatencies().getTotal() - first.getFetchLatencies().getTotal();
     }
 
     @Override
@@ -113,6 +118,11 @@ public class PerfWindow {
         sb.append("\t\t");
 //        sb.append("\tSize/Sec: ");
         sb.append(getFetchTime());
+        sb.append("\t\t");
+        LatencyHistogram fetchLatencies = getFetchLatencies();
+        sb.append(fetchLatencies.getValueAtPercentile(50)).append("/");
+        sb.append(fetchLatencies.getValueAtPercentile(99)).append("/");
+        sb.append(fetchLatencies.getMax());
         return sb.toString();
     }
 }
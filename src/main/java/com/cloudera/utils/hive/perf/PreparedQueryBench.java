@@ -0,0 +1,280 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/*
+Runs the query as a PreparedStatement on one connection, once for each of the @link ParameterSets,
+and all of them again for each of the 'iterations'.  Each execution is timed in phases: COMPILE
+(prepareStatement, once an iteration), EXECUTE (binding and executeQuery), FIRST_ROW (the first next),
+DRAIN (the rest of the records) and TOTAL (execute to the last record).
+
+The first execution is the one-shot timing, on a cold connection and statement.  The rest, on the
+warmed connection, make the latency distributions.  Latencies are kept in microseconds.
+ */
+public class PreparedQueryBench {
+
+    public enum Phase {
+        COMPILE, EXECUTE, FIRST_ROW, DRAIN, TOTAL;
+    }
+
+    // An hour, in microseconds.
+    private static final long MAX_LATENCY = JDBCRecordIterator.MAX_FETCH_DELAY * 1000;
+
+    private String jdbcUrl;
+    private String username;
+    private String password;
+    private String query;
+    private Integer batchSize = 5000;
+    private ParameterSets parameterSets = null;
+    private int iterations = 1;
+
+    private long connectTime = -1;
+    private final long[] oneShot = new long[Phase.values().length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private long executions = 0;
+    private long errors = 0;
+    private long rows = 0;
+    private String issue = null;
+
+    public PreparedQueryBench() {
+        for (Phase phase : Phase.values()) {
+            oneShot[phase.ordinal()] = -1;
+            latencies[phase.ordinal()] = new LatencyHistogram(MAX_LATENCY);
+        }
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public void setJdbcUrl(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public ParameterSets getParameterSets() {
+        return parameterSets;
+    }
+
+    public void setParameterSets(ParameterSets parameterSets) {
+        this.parameterSets = parameterSets;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new RuntimeException("The 'iterations' must be at least 1.");
+        }
+        this.iterations = iterations;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public long getOneShot(Phase phase) {
+        return oneShot[phase.ordinal()];
+    }
+
+    public LatencyHistogram getLatencies(Phase phase) {
+        return latencies[phase.ordinal()];
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public String getIssue() {
+        return issue;
+    }
+
+    public void run() {
+        Connection conn = null;
+        try {
+            long start = System.nanoTime();
+            conn = DriverManager.getConnection(jdbcUrl, username, password);
+            connectTime = (System.nanoTime() - start) / 1000000;
+            run(conn);
+        } catch (SQLException se) {
+            issue = se.getMessage();
+            se.printStackTrace();
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    protected void run(Connection conn) throws SQLException {
+        int sets = parameterSets != null ? parameterSets.size() : 1;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            PreparedStatement statement = conn.prepareStatement(query);
+            statement.setFetchSize(batchSize);
+            record(Phase.COMPILE, System.nanoTime() - start, iteration == 0);
+            try {
+                for (int set = 0; set < sets; set++) {
+                    try {
+                        execute(statement, set, iteration == 0 && set == 0);
+                    } catch (SQLException se) {
+                        errors++;
+                        System.err.println("Parameter set " + (set + 1) + " failed: " + se.getMessage());
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+            if (iterations > 1) {
+                System.err.println("Iteration " + (iteration + 1) + " of " + iterations + " done, " +
+                        executions + " executions, " + errors + " errors");
+            }
+        }
+    }
+
+    protected void execute(PreparedStatement statement, int set, boolean first) throws SQLException {
+        long start = System.nanoTime();
+        if (parameterSets != null) {
+            parameterSets.bind(statement, set);
+        }
+        ResultSet rs = statement.executeQuery();
+        long lclRows = 0;
+        try {
+            long executed = System.nanoTime();
+            boolean more = rs.next();
+            long firstRow = System.nanoTime();
+            while (more) {
+                lclRows++;
+                more = rs.next();
+            }
+            long drained = System.nanoTime();
+            record(Phase.EXECUTE, executed - start, first);
+            record(Phase.FIRST_ROW, firstRow - executed, first);
+            record(Phase.DRAIN, drained - firstRow, first);
+            record(Phase.TOTAL, drained - start, first);
+        } finally {
+            rs.close();
+        }
+        executions++;
+        rows += lclRows;
+    }
+
+    private void record(Phase phase, long nanos, boolean first) {
+        if (first) {
+            oneShot[phase.ordinal()] = nanos / 1000;
+        } else {
+            latencies[phase.ordinal()].record(nanos / 1000);
+        }
+    }
+
+    protected static String millis(long micros) {
+        return micros < 0 ? "-" : String.format(Locale.US, "%.3f", micros / 1000.0);
+    }
+
+    public void printResults(String comment) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Connect(ms): ").append(connectTime).append("\t\tIterations: ").append(iterations);
+        sb.append("\t\tParameter Sets: ").append(parameterSets != null ? parameterSets.size() : 0);
+        sb.append("\t\tExecutions: ").append(executions).append("\t\tErrors: ").append(errors);
+        sb.append("\t\tRecords per execution: ").append(executions > 0 ? rows / executions : 0).append("\n");
+        if (issue != null) {
+            sb.append("Issue: ").append(issue).append("\n");
+        }
+        sb.append("Phase | One-shot(ms) | Warm p50 | p90 | p99 | max(ms) | Warm count\n");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getLatencies(phase);
+            sb.append(String.format("%-10s", phase)).append("\t").append(millis(getOneShot(phase))).append("\t\t");
+            sb.append(millis(histogram.getValueAtPercentile(50))).append("\t");
+            sb.append(millis(histogram.getValueAtPercentile(90))).append("\t");
+            sb.append(millis(histogram.getValueAtPercentile(99))).append("\t");
+            sb.append(millis(histogram.getTotalCount() > 0 ? histogram.getMax() : -1)).append("\t");
+            sb.append(histogram.getTotalCount()).append("\n");
+        }
+        System.err.println(sb.toString());
+
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getLatencies(phase);
+            StringBuilder line = new StringBuilder();
+            if (comment != null) {
+                for (String cpart : comment.split(",")) {
+                    line.append(cpart).append(",");
+                }
+            }
+            line.append(batchSize).append(",").append(iterations).append(",");
+            line.append(parameterSets != null ? parameterSets.size() : 0).append(",").append(phase).append(",");
+            line.append(millis(getOneShot(phase))).append(",");
+            line.append(millis(histogram.getValueAtPercentile(50))).append(",");
+            line.append(millis(histogram.getValueAtPercentile(90))).append(",");
+            line.append(millis(histogram.getValueAtPercentile(99))).append(",");
+            line.append(millis(histogram.getTotalCount() > 0 ? histogram.getMax() : -1)).append(",");
+            line.append(histogram.getTotalCount());
+            System.out.println(line.toString());
+        }
+    }
+}
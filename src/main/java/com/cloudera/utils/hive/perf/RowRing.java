@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+A bounded ring of row chunks between the thread fetching a result and the threads sizing (decoding)
+it.  The chunks go round from the 'free' queue to the fetch thread, to the 'full' queue and on to a
+consumer, and back again, so nothing is allocated once it's going.
+
+The time the fetch thread waits for a free chunk is time the consumers are behind (the decode is the
+bottleneck).  The time the consumers wait for a full chunk is time the fetch is behind.
+ */
+public class RowRing {
+
+    // Rows are handed over a chunk at a time, to keep the queues out of the per row cost.
+    public static final int CHUNK_ROWS = 256;
+
+    public static class Chunk {
+        private final Object[][] rows;
+        private int count = 0;
+
+        protected Chunk(int columns, int size) {
+            rows = new Object[size][columns];
+        }
+
+        public Object[] getRow(int row) {
+            return rows[row];
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Boolean isFull() {
+            return count == rows.length;
+        }
+    }
+
+    // Tells a consumer the fetch is done.
+    private final Chunk end = new Chunk(0, 0);
+
+    private final int consumers;
+    private final int chunks;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> full;
+    private volatile Throwable error = null;
+
+    private final AtomicLong fetchWaitNanos = new AtomicLong(0);
+    private final AtomicLong consumerWaitNanos = new AtomicLong(0);
+    private final AtomicLong consumerBusyNanos = new AtomicLong(0);
+
+    /*
+    A ring holding about 'capacity' rows (at least two chunks) of 'columns' values.
+     */
+    public RowRing(int columns, int capacity, int consumers) {
+        this.consumers = consumers;
+        this.chunks = Math.max(2, (capacity + CHUNK_ROWS - 1) / CHUNK_ROWS);
+        free = new ArrayBlockingQueue<Chunk>(chunks);
+        full = new ArrayBlockingQueue<Chunk>(chunks + consumers);
+        for (int i = 0; i < chunks; i++) {
+            free.add(new Chunk(columns, CHUNK_ROWS));
+        }
+    }
+
+    public int getConsumers() {
+        return consumers;
+    }
+
+    public int getCapacity() {
+        return chunks * CHUNK_ROWS;
+    }
+
+    /*
+    The next chunk for the fetch thread to fill, waiting for a consumer to give one back.
+     */
+    public Chunk claim() throws InterruptedException {
+        Chunk rtn = free.poll();
+        if (rtn == null) {
+            long before = System.nanoTime();
+            rtn = free.take();
+            fetchWaitNanos.addAndGet(System.nanoTime() - before);
+        }
+        rtn.setCount(0);
+        return rtn;
+    }
+
+    public void publish(Chunk chunk) throws InterruptedException {
+        full.put(chunk);
+    }
+
+    /*
+    No more chunks.  Each consumer gets an 'end', after the chunks already published.  There's always
+    room for them, so this doesn't wait.
+     */
+    public void finish() {
+        for (int i = 0; i < consumers; i++) {
+            full.offer(end);
+        }
+    }
+
+    /*
+    The next full chunk for a consumer, or null when the fetch is done.
+     */
+    public Chunk take() throws InterruptedException {
+        Chunk rtn = full.poll();
+        if (rtn == null) {
+            long before = System.nanoTime();
+            rtn = full.take();
+            consumerWaitNanos.addAndGet(System.nanoTime() - before);
+        }
+        return rtn == end ? null : rtn;
+    }
+
+    public void release(Chunk chunk, long busyNanos) {
+        consumerBusyNanos.addAndGet(busyNanos);
+        free.add(chunk);
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /*
+    A consumer failed.  The rest of the chunks are still taken (and released) so the fetch thread
+    doesn't block, and it stops at the next chunk.
+     */
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    public long getFetchWait() {
+        return fetchWaitNanos.get() / 1000000;
+    }
+
+    public long getConsumerWait() {
+        return consumerWaitNanos.get() / 1000000;
+    }
+
+    public long getConsumerBusy() {
+        return consumerBusyNanos.get() / 1000000;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+
+/*
+Streams the perf samples to a file, as JSON lines or, for a '.csv' file, CSV with a header from
+the first sample.  The summary is written next to it as '<file>.summary.json'.
+ */
+public class SampleWriter {
+
+    public enum Format {
+        JSON, CSV;
+    }
+
+    private final String fileName;
+    private final Format format;
+    private final PrintStream out;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private boolean headerWritten = false;
+
+    public SampleWriter(String fileName) {
+        this.fileName = fileName;
+        this.format = fileName.toLowerCase().endsWith(".csv") ? Format.CSV : Format.JSON;
+        try {
+            this.out = new PrintStream(new FileOutputStream(fileName), true, "UTF-8");
+        } catch (FileNotFoundException | java.io.UnsupportedEncodingException e) {
+            throw new RuntimeException("Can't write the perf samples to: " + fileName, e);
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public static String getSummaryFileName(String fileName) {
+        return fileName + ".summary.json";
+    }
+
+    public synchronized void write(Map<String, Object> sample) {
+        if (format == Format.CSV) {
+            if (!headerWritten) {
+                out.println(csvLine(sample.keySet().toArray()));
+                headerWritten = true;
+            }
+            out.println(csvLine(sample.values().toArray()));
+        } else {
+            try {
+                out.println(mapper.writeValueAsString(sample));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Issue writing perf sample", e);
+            }
+        }
+    }
+
+    protected static String csvLine(Object[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String value = values[i] != null ? values[i].toString() : "";
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    public void writeSummary(Map<String, Object> summary) {
+        File summaryFile = new File(getSummaryFileName(fileName));
+        try {
+            mapper.writer().with(SerializationFeature.INDENT_OUTPUT).writeValue(summaryFile, summary);
+        } catch (IOException e) {
+            throw new RuntimeException("Issue writing the perf summary: " + summaryFile, e);
+        }
+    }
+
+    public synchronized void close() {
+        out.close();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static java.sql.Types.*;
+
+/*
+The built in sizing strategies.
+
+WIRE estimates what HiveServer2 sends for each value: fixed widths for the numeric and boolean
+types (FLOAT is sent as a double), and a 4 byte length plus the value for everything that goes over
+as a string or binary.  That includes DECIMAL, DATE, TIMESTAMP and the complex types (ARRAY, MAP and
+STRUCT come back as their JSON text).
+
+FIXED is the estimate perf used before, kept to compare with earlier runs.  Only the character
+types are read, everything else is a fixed width and BINARY and the complex types aren't counted.
+ */
+public enum Sizing implements SizingStrategy {
+
+    WIRE {
+        @Override
+        public ColumnSizer sizerFor(int jdbcType) {
+            switch (jdbcType) {
+                case BIT:
+                case BOOLEAN:
+                case TINYINT:
+                    return fixed(1);
+                case SMALLINT:
+                    return fixed(2);
+                case INTEGER:
+                    return fixed(4);
+                case BIGINT:
+                case FLOAT:
+                case REAL:
+                case DOUBLE:
+                    return fixed(8);
+                case BINARY:
+                case VARBINARY:
+                case LONGVARBINARY:
+                case BLOB:
+                    return BYTES;
+                case NULL:
+                    return fixed(0);
+                default:
+                    // Strings, decimals, dates and times, and the complex types.
+                    return STRING;
+            }
+        }
+    },
+    FIXED {
+        @Override
+        public ColumnSizer sizerFor(int jdbcType) {
+            switch (jdbcType) {
+                case BIT:
+                case TINYINT:
+                    return fixed(1);
+                case SMALLINT:
+                    return fixed(2);
+                case INTEGER:
+                case FLOAT:
+                    return fixed(4);
+                case BIGINT:
+                case REAL:
+                case DOUBLE:
+                case NUMERIC:
+                case DECIMAL:
+                case DATE:
+                case TIME:
+                case TIMESTAMP:
+                    return fixed(8);
+                case CHAR:
+                case VARCHAR:
+                case LONGVARCHAR:
+                    return CHARACTERS;
+                default:
+                    return fixed(0);
+            }
+        }
+    };
+
+    // The length prefix of a string or binary value.
+    private static final int LENGTH_BYTES = 4;
+
+    private static final ColumnSizer[] FIXED_SIZERS = new ColumnSizer[9];
+
+    static {
+        for (int i = 0; i < FIXED_SIZERS.length; i++) {
+            final long width = i;
+            FIXED_SIZERS[i] = new ColumnSizer() {
+                @Override
+                public long size(ResultSet rs, int column) {
+                    return width;
+                }
+
+                @Override
+                public long sizeOf(Object value) {
+                    return width;
+                }
+            };
+        }
+    }
+
+    private static final ColumnSizer CHARACTERS = new ColumnSizer() {
+        @Override
+        public long size(ResultSet rs, int column) throws SQLException {
+            String value = rs.getString(column);
+            return value != null ? value.length() : 0;
+        }
+
+        @Override
+        public long sizeOf(Object value) {
+            return value != null ? value.toString().length() : 0;
+        }
+    };
+
+    private static final ColumnSizer STRING = new ColumnSizer() {
+        @Override
+        public long size(ResultSet rs, int column) throws SQLException {
+            String value = rs.getString(column);
+            return LENGTH_BYTES + (value != null ? utf8Length(value) : 0);
+        }
+
+        @Override
+        public long sizeOf(Object value) {
+            return LENGTH_BYTES + (value != null ? utf8Length(value.toString()) : 0);
+        }
+    };
+
+    private static final ColumnSizer BYTES = new ColumnSizer() {
+        @Override
+        public long size(ResultSet rs, int column) throws SQLException {
+            byte[] value = rs.getBytes(column);
+            return LENGTH_BYTES + (value != null ? value.length : 0);
+        }
+
+        @Override
+        public long sizeOf(Object value) {
+            if (value instanceof byte[]) {
+                return LENGTH_BYTES + ((byte[]) value).length;
+            }
+            return LENGTH_BYTES + (value != null ? utf8Length(value.toString()) : 0);
+        }
+    };
+
+    private static ColumnSizer fixed(int width) {
+        return FIXED_SIZERS[width];
+    }
+
+    /*
+    The UTF-8 encoded length of 'value', without encoding it.
+     */
+    protected static long utf8Length(String value) {
+        long rtn = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                rtn += 1;
+            } else if (c < 0x800) {
+                rtn += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                rtn += 4;
+                i++;
+            } else {
+                rtn += 3;
+            }
+        }
+        return rtn;
+    }
+
+    /*
+    A @link Sizing by name, or else an instance of the named @link SizingStrategy class.
+     */
+    public static SizingStrategy forName(String name) {
+        for (Sizing sizing : values()) {
+            if (sizing.name().equalsIgnoreCase(name)) {
+                return sizing;
+            }
+        }
+        try {
+            return (SizingStrategy) Class.forName(name).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+            throw new RuntimeException("Unknown sizing strategy: " + name, e);
+        }
+    }
+}
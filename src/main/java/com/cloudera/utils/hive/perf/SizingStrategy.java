@@ -0,0 +1,27 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+/*
+Picks the @link ColumnSizer for each column of a result, by its JDBC type (java.sql.Types).
+Set with '-s', either one of the @link Sizing values or the name of a class with a no-arg constructor.
+ */
+public interface SizingStrategy {
+
+    ColumnSizer sizerFor(int jdbcType);
+
+}
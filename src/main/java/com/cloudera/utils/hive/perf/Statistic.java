@@ -23,6 +23,8 @@ public class Statistic {
     private Long recordCount;
     private Long size = 0l;
     private Long delay = 0l;
+    // The fetch latencies recorded up to 'timestamp'.
+    private LatencyHistogram fetchLatencies = null;
 
     public Date getTimestamp() {
         return timestamp;
@@ -56,6 +58,14 @@ public class Statistic {
         return delay;
     }
 
+    public LatencyHistogram getFetchLatencies() {
+        return fetchLatencies;
+    }
+
+    public void setFetchLatencies(LatencyHistogram fetchLatencies) {
+        this.fetchLatencies = fetchLatencies;
+    }
+
     public static Statistic build(Long recordCount) {
         Statistic stats = new Statistic();
         stats.setTimestamp(new Date());
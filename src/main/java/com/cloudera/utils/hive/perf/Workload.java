@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+A mix of weighted queries to replay against the JDBC URL.  In a CLOSED loop, each session runs the
+next query as soon as the last one (and its think time) is done.  In an OPEN loop, queries arrive at
+'targetQps' no matter how long they take, and the time spent waiting for a free session is part of
+the latency.
+ */
+public class Workload {
+
+    public enum Mode {
+        CLOSED, OPEN;
+    }
+
+    private String name = "workload";
+    private Mode mode = Mode.CLOSED;
+    private int sessions = 1;
+    // Seconds.
+    private int duration = 60;
+    // Queries per second across all the sessions.  OPEN only, a CLOSED loop is paced by 'thinkTime'.
+    private double targetQps = 0;
+    // Milliseconds between queries on a session, for queries that don't set their own.
+    private long thinkTime = 0;
+    // The statement fetch size.  When not set, the '-b' batch size.
+    private Integer batchSize = null;
+    private List<WorkloadQuery> queries = new ArrayList<WorkloadQuery>();
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public void setSessions(int sessions) {
+        this.sessions = sessions;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    public double getTargetQps() {
+        return targetQps;
+    }
+
+    public void setTargetQps(double targetQps) {
+        this.targetQps = targetQps;
+    }
+
+    public long getThinkTime() {
+        return thinkTime;
+    }
+
+    public void setThinkTime(long thinkTime) {
+        this.thinkTime = thinkTime;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public List<WorkloadQuery> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<WorkloadQuery> queries) {
+        this.queries = queries;
+    }
+
+    public int getTotalWeight() {
+        int rtn = 0;
+        for (WorkloadQuery query : queries) {
+            rtn += query.getWeight();
+        }
+        return rtn;
+    }
+
+    /*
+    The query for a 'ticket' between 0 and the total weight.
+     */
+    public WorkloadQuery pick(int ticket) {
+        for (WorkloadQuery query : queries) {
+            ticket -= query.getWeight();
+            if (ticket < 0) {
+                return query;
+            }
+        }
+        return queries.get(queries.size() - 1);
+    }
+
+    public void validate() {
+        if (queries == null || queries.size() == 0) {
+            throw new RuntimeException("The workload '" + name + "' has no 'queries'.");
+        }
+        for (WorkloadQuery query : queries) {
+            if (query.getStatement() == null) {
+                throw new RuntimeException("The workload query '" + query.getName() + "' has no 'statement'.");
+            }
+            if (query.getWeight() < 1) {
+                throw new RuntimeException("The workload query '" + query.getName() + "' needs a 'weight' of at least 1.");
+            }
+        }
+        if (sessions < 1) {
+            throw new RuntimeException("The workload 'sessions' must be at least 1.");
+        }
+        if (duration < 1) {
+            throw new RuntimeException("The workload 'duration' must be at least 1 second.");
+        }
+        if (mode == Mode.OPEN && targetQps <= 0) {
+            throw new RuntimeException("An OPEN workload needs a 'targetQps'.");
+        }
+        if (mode == Mode.CLOSED && targetQps > 0) {
+            throw new RuntimeException("A CLOSED workload is paced by 'thinkTime', 'targetQps' is for OPEN only.");
+        }
+    }
+
+    public static Workload load(String workloadFile) {
+        File file = new File(workloadFile);
+        if (!file.exists()) {
+            throw new RuntimeException("Missing workload file: " + workloadFile);
+        }
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        try {
+            String yaml = FileUtils.readFileToString(file, Charset.forName("UTF-8"));
+            Workload workload = mapper.readerFor(Workload.class).readValue(yaml);
+            workload.validate();
+            return workload;
+        } catch (IOException e) {
+            throw new RuntimeException("Issue reading workload file: " + workloadFile, e);
+        }
+    }
+}
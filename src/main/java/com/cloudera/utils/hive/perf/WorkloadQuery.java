@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+A query in a @link Workload.  The '${name}' references in the 'statement' are replaced from the
+'parameterSets', which are used in turn.  The timings of each run are kept here.
+ */
+@JsonIgnoreProperties({"count", "errors", "rows", "executeTime", "fetchTime", "latencies"})
+public class WorkloadQuery {
+
+    private String name;
+    private String statement;
+    private int weight = 1;
+    // Milliseconds, overrides the workload 'thinkTime'.
+    private Long thinkTime = null;
+    private List<Map<String, String>> parameterSets = null;
+
+    private final AtomicLong next = new AtomicLong(0);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong errors = new AtomicLong(0);
+    private final AtomicLong rows = new AtomicLong(0);
+    // Totals, in milliseconds.
+    private final AtomicLong executeTime = new AtomicLong(0);
+    private final AtomicLong fetchTime = new AtomicLong(0);
+
+    // Response times (ms) of the successful runs.
+    private final LatencyHistogram latencies = new LatencyHistogram(JDBCRecordIterator.MAX_FETCH_DELAY);
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public void setStatement(String statement) {
+        this.statement = statement;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public Long getThinkTime() {
+        return thinkTime;
+    }
+
+    public void setThinkTime(Long thinkTime) {
+        this.thinkTime = thinkTime;
+    }
+
+    public List<Map<String, String>> getParameterSets() {
+        return parameterSets;
+    }
+
+    public void setParameterSets(List<Map<String, String>> parameterSets) {
+        this.parameterSets = parameterSets;
+    }
+
+    /*
+    The statement with the next parameter set applied.
+     */
+    public String nextStatement() {
+        if (parameterSets == null || parameterSets.size() == 0) {
+            return statement;
+        }
+        int set = (int) (next.getAndIncrement() % parameterSets.size());
+        return substitute(statement, parameterSets.get(set));
+    }
+
+    protected static String substitute(String statement, Map<String, String> parameters) {
+        String rtn = statement;
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            rtn = rtn.replace("${" + parameter.getKey() + "}", String.valueOf(parameter.getValue()));
+        }
+        return rtn;
+    }
+
+    public void record(long latency, long execute, long fetch, long rowCount) {
+        count.incrementAndGet();
+        rows.addAndGet(rowCount);
+        executeTime.addAndGet(execute);
+        fetchTime.addAndGet(fetch);
+        latencies.record(latency);
+    }
+
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getExecuteTime() {
+        return executeTime.get();
+    }
+
+    public long getFetchTime() {
+        return fetchTime.get();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+}
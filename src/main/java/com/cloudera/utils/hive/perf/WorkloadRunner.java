@@ -0,0 +1,287 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.cloudera.utils.hive.reporting.ReportingConf;
+
+import java.sql.*;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.*;
+
+/*
+Replays a @link Workload against the JDBC URL, with a connection per session.  Each run is timed
+like @link JDBCRecordIterator: the query return (execute), iterating the results (fetch) and, for
+the latency, the whole run.  In OPEN mode the latency starts when the query was due to arrive.
+ */
+public class WorkloadRunner implements Runnable {
+
+    private final Workload workload;
+    private String jdbcUrl;
+    private String username;
+    private String password;
+    private Integer batchSize = 5000;
+
+    private DateFormat dtf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private Date start;
+    private long startNanos;
+    private long endNanos;
+    private volatile Boolean completed = Boolean.FALSE;
+    // OPEN mode, when each waiting query was due (nanoTime).
+    private final BlockingQueue<Long> arrivals = new LinkedBlockingQueue<Long>();
+    private final StringBuffer sessionIssues = new StringBuffer();
+
+    public WorkloadRunner(Workload workload) {
+        this.workload = workload;
+    }
+
+    public Workload getWorkload() {
+        return workload;
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public void setJdbcUrl(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Integer getBatchSize() {
+        return workload.getBatchSize() != null ? workload.getBatchSize() : batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public Date getStart() {
+        return start;
+    }
+
+    protected boolean isRunning() {
+        return System.nanoTime() < endNanos;
+    }
+
+    @Override
+    public void run() {
+        start = new Date();
+        startNanos = System.nanoTime();
+        endNanos = startNanos + TimeUnit.SECONDS.toNanos(workload.getDuration());
+        ExecutorService sessions = Executors.newFixedThreadPool(workload.getSessions());
+        try {
+            for (int i = 0; i < workload.getSessions(); i++) {
+                sessions.submit(new Session(i));
+            }
+            if (workload.getMode() == Workload.Mode.OPEN) {
+                pace();
+            }
+            sessions.shutdown();
+            while (!sessions.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Wait for the last queries to finish.
+            }
+        } catch (InterruptedException ie) {
+            sessions.shutdownNow();
+        } finally {
+            completed = Boolean.TRUE;
+        }
+    }
+
+    /*
+    Queue the arrivals, evenly spaced at the 'targetQps', until the end of the run.
+     */
+    protected void pace() throws InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / workload.getTargetQps());
+        for (long due = startNanos; due < endNanos; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            arrivals.offer(due);
+        }
+    }
+
+    protected WorkloadQuery pick() {
+        return workload.pick(ThreadLocalRandom.current().nextInt(workload.getTotalWeight()));
+    }
+
+    /*
+    Run 'query' on 'conn' and record the timings.  The latency is measured from 'due'.
+     */
+    protected void execute(Connection conn, WorkloadQuery query, long due) throws SQLException {
+        String sql = query.nextStatement();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(getBatchSize());
+            long beforeQuery = System.nanoTime();
+            long rows = 0;
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                long queryReturn = System.nanoTime();
+                while (rs.next()) {
+                    rows++;
+                }
+                long done = System.nanoTime();
+                query.record(TimeUnit.NANOSECONDS.toMillis(done - due),
+                        TimeUnit.NANOSECONDS.toMillis(queryReturn - beforeQuery),
+                        TimeUnit.NANOSECONDS.toMillis(done - queryReturn), rows);
+            }
+        } catch (SQLException se) {
+            query.recordError();
+            throw se;
+        }
+    }
+
+    private class Session implements Runnable {
+        private final int session;
+
+        Session(int session) {
+            this.session = session;
+        }
+
+        @Override
+        public void run() {
+            Connection conn = null;
+            try {
+                while (isRunning()) {
+                    if (conn == null || conn.isClosed()) {
+                        conn = DriverManager.getConnection(jdbcUrl, username, password);
+                    }
+                    long due;
+                    if (workload.getMode() == Workload.Mode.OPEN) {
+                        Long arrival = arrivals.poll(100, TimeUnit.MILLISECONDS);
+                        if (arrival == null) {
+                            continue;
+                        }
+                        due = arrival;
+                    } else {
+                        due = System.nanoTime();
+                    }
+                    WorkloadQuery query = pick();
+                    try {
+                        execute(conn, query, due);
+                    } catch (SQLException se) {
+                        sessionIssues.append("Session ").append(session).append(" ").append(query.getName())
+                                .append(": ").append(se.getMessage()).append("\n");
+                        if (!conn.isValid(5)) {
+                            conn.close();
+                        }
+                    }
+                    if (workload.getMode() == Workload.Mode.CLOSED) {
+                        long thinkTime = query.getThinkTime() != null ? query.getThinkTime() : workload.getThinkTime();
+                        if (thinkTime > 0) {
+                            TimeUnit.MILLISECONDS.sleep(thinkTime);
+                        }
+                    }
+                }
+            } catch (SQLException se) {
+                sessionIssues.append("Session ").append(session).append(" connection: ").append(se.getMessage())
+                        .append("\n");
+            } catch (InterruptedException ie) {
+                // Done
+            } finally {
+                if (conn != null) {
+                    try {
+                        conn.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    protected String printQueries() {
+        StringBuilder sb = new StringBuilder();
+        long runningSecs = start != null ? Math.max(1, (System.currentTimeMillis() - start.getTime()) / 1000) : 1;
+        sb.append(ReportingConf.ANSI_GREEN + "Query | Count | Errors | Per/sec | Rows | Execute avg(ms) | Fetch avg(ms) | Latency(ms)" +
+                ReportingConf.ANSI_RESET).append("\n");
+        for (WorkloadQuery query : workload.getQueries()) {
+            long count = Math.max(1, query.getCount());
+            sb.append(query.getName()).append("\t");
+            sb.append(query.getCount()).append("\t");
+            sb.append(query.getErrors()).append("\t");
+            sb.append(query.getCount() / runningSecs).append("\t");
+            sb.append(query.getRows()).append("\t");
+            sb.append(query.getExecuteTime() / count).append("\t\t");
+            sb.append(query.getFetchTime() / count).append("\t\t");
+            sb.append(query.getLatencies()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    public void printStatus(Boolean finalIteration, String comment) {
+        if (!finalIteration) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(ReportingConf.CLEAR_CONSOLE);
+            sb.append(ReportingConf.ANSI_YELLOW + "========== v.${Implementation-Version} ===========" + ReportingConf.ANSI_RESET).append("\n");
+            sb.append(ReportingConf.ANSI_WHITE + "URL        : " + getJdbcUrl()).append("\n");
+            sb.append("Workload   : " + workload.getName() + " (" + workload.getMode() + ", " +
+                    workload.getSessions() + " sessions" +
+                    (workload.getTargetQps() > 0 ? ", " + workload.getTargetQps() + " qps" : "") + ")").append("\n");
+            sb.append("Batch Size : " + getBatchSize()).append("\n");
+            sb.append(ReportingConf.ANSI_YELLOW + "----------------------------").append("\n");
+            sb.append(printQueries());
+            if (workload.getMode() == Workload.Mode.OPEN) {
+                sb.append(ReportingConf.ANSI_YELLOW + "Waiting for a session: " + arrivals.size() +
+                        ReportingConf.ANSI_RESET).append("\n");
+            }
+            if (sessionIssues.length() > 0) {
+                String issues = sessionIssues.toString();
+                sb.append(ReportingConf.ANSI_RED + issues.substring(Math.max(0, issues.length() - 2000)) +
+                        ReportingConf.ANSI_RESET);
+            }
+            sb.append(ReportingConf.ANSI_BLUE + "===========================").append("\n");
+            sb.append(ReportingConf.ANSI_YELLOW + "Running for: " +
+                    (start != null ? System.currentTimeMillis() - start.getTime() : 0) + "ms\t\tStarted: " +
+                    (start != null ? dtf.format(start) : "-") + ReportingConf.ANSI_RESET).append("\n");
+            System.err.println(ReportingConf.substituteVariables(sb.toString()));
+        } else {
+            long runningSecs = Math.max(1, workload.getDuration());
+            for (WorkloadQuery query : workload.getQueries()) {
+                LatencyHistogram latencies = query.getLatencies();
+                StringBuilder sb = new StringBuilder();
+                if (comment != null) {
+                    for (String cpart : comment.split(",")) {
+                        sb.append(cpart).append(",");
+                    }
+                }
+                sb.append(workload.getName()).append(",").append(query.getName()).append(",");
+                sb.append(getBatchSize()).append(",").append(workload.getSessions()).append(",");
+                sb.append(query.getCount()).append(",").append(query.getErrors()).append(",");
+                sb.append(query.getCount() / runningSecs).append(",");
+                sb.append(latencies.getValueAtPercentile(50)).append(",");
+                sb.append(latencies.getValueAtPercentile(90)).append(",");
+                sb.append(latencies.getValueAtPercentile(99)).append(",");
+                sb.append(latencies.getMax());
+                System.out.println(sb.toString());
+            }
+        }
+    }
+}
@@ -123,6 +123,10 @@ public class Reporter implements Runnable {
             version.append("\t");
             String threadStatus = processThreadStatus(getProcessContainer().getTaskThreadPool());
             version.append(threadStatus);
+            if (getProcessContainer().getConnectionPools() != null) {
+                version.append("\tDB Pool: ");
+                version.append(getProcessContainer().getConnectionPools().getMetastoreDirectPoolStatus());
+            }
 
 //            version.append(getProcessContainer().getThreadPool().getActiveCount());
             pushLine(version.toString());
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.cloudera.utils.sql.ResultArray;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/*
+A predicate on a metastore 'listing' column that is evaluated BEFORE the 'pathCommand' of a
+@link CommandReturnCheck is issued.  Rows that don't pass are never sent to the FileSystem.
+
+The shipped procs don't set any: their listing queries already filter in the WHERE clause.  This is
+for custom procs configs, on fields their listing query returns but doesn't filter on.
+ */
+@JsonIgnoreProperties({"index", "pattern", "valueSet", "tested", "rejected", "selectivity"})
+public class CheckPredicate {
+
+    // The 'listingColumns' name the predicate is evaluated against.
+    private String field;
+    // Pass when the field value is one of these.
+    private String[] values;
+    // Pass when the field value 'finds' this RegEx.
+    private String regex;
+    // Reverse the result of the predicate.
+    private Boolean invert = Boolean.FALSE;
+
+    // Set during init, from the 'listingColumns' of the owning process.
+    private int index = -1;
+    private Pattern pattern = null;
+    private Set<String> valueSet = null;
+
+    // Track how often the predicate filters a row, used to order the predicates.
+    private final AtomicLong tested = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public String[] getValues() {
+        return values;
+    }
+
+    public void setValues(String[] values) {
+        this.values = values;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    public void setRegex(String regex) {
+        this.regex = regex;
+    }
+
+    public Boolean getInvert() {
+        return invert;
+    }
+
+    public void setInvert(Boolean invert) {
+        this.invert = invert;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /*
+    Align the predicate with the columns of the listing query and pre-compile the tests.
+     */
+    public void init(String[] listingColumns) {
+        if (field == null) {
+            throw new RuntimeException("A 'pathPredicate' requires a 'field'.");
+        }
+        index = ResultArray.find(listingColumns, field);
+        if (index < 0) {
+            throw new RuntimeException("The 'pathPredicate' field '" + field + "' isn't in the 'listingColumns': " +
+                    Arrays.toString(listingColumns));
+        }
+        if (values == null && regex == null) {
+            throw new RuntimeException("The 'pathPredicate' for '" + field + "' needs 'values' or a 'regex'.");
+        }
+        if (values != null) {
+            valueSet = new HashSet<String>(Arrays.asList(values));
+        }
+        if (regex != null) {
+            pattern = Pattern.compile(regex);
+        }
+    }
+
+    public boolean test(String[] args) {
+        String value = args[index];
+        boolean rtn = true;
+        if (valueSet != null) {
+            rtn = value != null && valueSet.contains(value.trim());
+        }
+        if (rtn && pattern != null) {
+            rtn = value != null && pattern.matcher(value).find();
+        }
+        if (invert) {
+            rtn = !rtn;
+        }
+        tested.incrementAndGet();
+        if (!rtn) {
+            rejected.incrementAndGet();
+        }
+        return rtn;
+    }
+
+    /*
+    The ratio of rows this predicate has filtered.  Higher means it should be run earlier.
+     */
+    public double getSelectivity() {
+        long lclTested = tested.get();
+        if (lclTested == 0) {
+            // Set lookups are cheaper than a RegEx, so favor them until we have some history.
+            return valueSet != null ? 0.5d : 0.0d;
+        }
+        return (double) rejected.get() / lclTested;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckPredicate{" + field + "}";
+    }
+}
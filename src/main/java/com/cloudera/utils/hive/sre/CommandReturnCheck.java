@@ -25,6 +25,7 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 //@JsonTypeInfo(use = JsonTypeInfo.Id.NAME,
 //        include = JsonTypeInfo.As.PROPERTY,
@@ -35,7 +36,7 @@ import java.util.*;
 //        @JsonSubTypes.Type(value = FilenameFormatCheck.class, name = "filename.format"),
 //        @JsonSubTypes.Type(value = DirectoryExistsCheck.class, name = "directory.exists")
 //})
-@JsonIgnoreProperties({"counter", "properties", "calculationResults", "scriptEngine"})
+@JsonIgnoreProperties({"counter", "properties", "calculationResults", "scriptEngine", "orderedPredicates"})
 public class CommandReturnCheck {
 
     private String displayName;
@@ -65,6 +66,15 @@ public class CommandReturnCheck {
     private Map<String, Map<CheckSearch, CheckCalculation>> checkCalculations = null;
     private ScriptEngine scriptEngine = null;
     private Map<String, Object> calculationResults = null;
+    // Evaluated against the listing record BEFORE the 'pathCommand' is issued.  When any of
+    //      these fail, the path is skipped and no FileSystem call is made.
+    private List<CheckPredicate> pathPredicates = null;
+    // The 'pathPredicates' ordered by how often they filter, so the most selective runs first.
+    private volatile CheckPredicate[] orderedPredicates = null;
+    private final AtomicLong predicateEvaluations = new AtomicLong(0);
+    private static final int PREDICATE_REORDER_INTERVAL = 1000;
+    // Generates the DDL for paths in the 'success' bucket, without going through script-eval.
+    private SqlActionGenerator sqlAction = null;
 //    private String[] currentArgs;
     /**
      * allows stdout to be captured if necessary
@@ -142,192 +152,173 @@ public class CommandReturnCheck {
     }
 
     public void onError(CommandReturn commandReturn, String[] args) {
-        if (!invertCheck) {
-            internalOnError(commandReturn, args);
-        } else {
-            internalOnSuccess(commandReturn, args);
-        }
+        evaluate(commandReturn, args, !invertCheck, false);
     }
 
     public void onSuccess(CommandReturn commandReturn, String[] args) {
-        if (!invertCheck) {
-            internalOnSuccess(commandReturn, args);
-        } else {
-            internalOnError(commandReturn, args);
+        evaluate(commandReturn, args, invertCheck, true);
+    }
+
+    private void evaluate(CommandReturn commandReturn, String[] args, boolean toError, boolean success) {
+        Evaluation evaluation = new Evaluation(args, toError, success);
+        for (List<Object> record : commandReturn.getRecords()) {
+            evaluation.addRecord(record);
         }
+        evaluation.complete();
+    }
+
+    /*
+    Start the evaluation of a CommandReturn for this check.  The records are fed in one at a time, so
+    checks sharing the same 'pathCommand' can be evaluated in a single pass over the records.
+     */
+    public Evaluation startEvaluation(boolean error, String[] args) {
+        boolean success = !error || invertCheck;
+        return new Evaluation(args, success ? invertCheck : !invertCheck, success);
     }
 
     public String runCalculations(CommandReturn commandReturn, String[] args) {
         String rtn = null;
+        if (hasCalculations()) {
+            StringBuilder sb = new StringBuilder();
+            runCalculations(CheckSearch.PATH, args, null, sb);
+            for (List<Object> record : commandReturn.getRecords()) {
+                runCalculations(CheckSearch.RECORDS, args, record, sb);
+            }
+            rtn = sb.toString();
+        }
+        return rtn;
+    }
+
+    protected boolean hasCalculations() {
+        return getCheckCalculations() != null && getCheckCalculations().size() > 0 && getScriptEngine() != null;
+    }
+
+    /*
+    Run the calculations of 'checkSearch' type.  'record' is null for PATH calculations.
+     */
+    protected void runCalculations(CheckSearch checkSearch, String[] args, List<Object> record, StringBuilder sb) {
         try {
-            if (getCheckCalculations() != null && getCheckCalculations().size() > 0 && getScriptEngine() != null) {
-                StringBuilder sb = new StringBuilder();
-                for (String calcKey : checkCalculations.keySet()) {
-                    Map<CheckSearch, CheckCalculation> checkSearchCalculation = checkCalculations.get(calcKey);
-                    for (CheckSearch checkSearch : checkSearchCalculation.keySet()) {
-                        CheckCalculation checkCalculation = checkSearchCalculation.get(checkSearch);
-                        String testStr = null;
-                        String failStr = null;
-                        String passStr = null;
-                        switch (checkSearch) {
-                            case PATH:
-                                if (checkCalculation.getTest() != null) {
-                                    // Params
-                                    List combined = new LinkedList(Arrays.asList(args));
-                                    // Configured Params
-                                    if (checkCalculation.getParams() != null)
-                                        combined.addAll(Arrays.asList(checkCalculation.getParams()));
-                                    try {
-                                        testStr = String.format(checkCalculation.getTest(), combined.toArray());
-                                        Boolean checkTest = null;
-                                        checkTest = (Boolean) scriptEngine.eval(testStr);
-                                        if (checkTest) {
-                                            if (checkCalculation.getPass() != null) {
-                                                passStr = String.format(checkCalculation.getPass(), combined.toArray());
-                                                String passResult = (String) scriptEngine.eval(passStr);
-                                                sb.append(passResult).append("\n");
-                                            }
-
-                                        } else {
-                                            if (checkCalculation.getFail() != null) {
-                                                failStr = String.format(checkCalculation.getFail(), combined.toArray());
-                                                String failResult = (String) scriptEngine.eval(failStr);
-                                                sb.append(failResult).append("\n");
-                                            }
-                                        }
-                                    } catch (ScriptException e) {
-                                        e.printStackTrace();
-                                        System.err.println("Issue with script eval: " + this.getDisplayName() + ":" + calcKey);
-                                    } catch (MissingFormatArgumentException mfa) {
-                                        mfa.printStackTrace();
-                                        System.err.println("Bad Argument Match up for PATH check rule: " + this.getDisplayName() + ":" + calcKey);
-                                    }
-                                }
-                                break;
-                            case RECORDS:
-                                // Loop Through Records.
-                                if (checkCalculation.getTest() != null) {
-                                    for (List<Object> record : commandReturn.getRecords()) {
-                                        // Params
-                                        List combined = new LinkedList(Arrays.asList(args));
-                                        // Current Record
-                                        combined.addAll(record);
-                                        // Configured Params
-                                        if (checkCalculation.getParams() != null)
-                                            combined.addAll(Arrays.asList(checkCalculation.getParams()));
-                                        try {
-                                            testStr = String.format(checkCalculation.getTest(), combined.toArray());
-                                            Boolean checkTest = null;
-                                            checkTest = (Boolean) scriptEngine.eval(testStr);
-                                            if (checkTest) {
-                                                if (checkCalculation.getPass() != null) {
-                                                    passStr = String.format(checkCalculation.getPass(), combined.toArray());
-                                                    String passResult = (String) scriptEngine.eval(passStr);
-                                                    sb.append(passResult).append("\n");
-                                                }
-
-                                            } else {
-                                                if (checkCalculation.getFail() != null) {
-                                                    failStr = String.format(checkCalculation.getFail(), combined.toArray());
-                                                    String failResult = (String) scriptEngine.eval(failStr);
-                                                    sb.append(failResult).append("\n");
-                                                }
-                                            }
-                                        } catch (ScriptException e) {
-                                            e.printStackTrace();
-                                            System.err.println("Issue with script eval: " + this.getDisplayName() + ":" + calcKey);
-                                        } catch (MissingFormatArgumentException mfa) {
-                                            mfa.printStackTrace();
-                                            System.err.println("Bad Argument Match up for RECORDS check rule: " + this.getDisplayName() + ":" + calcKey);
-                                        }
-                                    }
-                                }
-                                break;
+            for (String calcKey : checkCalculations.keySet()) {
+                CheckCalculation checkCalculation = checkCalculations.get(calcKey).get(checkSearch);
+                if (checkCalculation == null || checkCalculation.getTest() == null) {
+                    continue;
+                }
+                // Params
+                List combined = new LinkedList(Arrays.asList(args));
+                // Current Record
+                if (record != null)
+                    combined.addAll(record);
+                // Configured Params
+                if (checkCalculation.getParams() != null)
+                    combined.addAll(Arrays.asList(checkCalculation.getParams()));
+                try {
+                    String testStr = String.format(checkCalculation.getTest(), combined.toArray());
+                    Boolean checkTest = (Boolean) scriptEngine.eval(testStr);
+                    if (checkTest) {
+                        if (checkCalculation.getPass() != null) {
+                            String passStr = String.format(checkCalculation.getPass(), combined.toArray());
+                            String passResult = (String) scriptEngine.eval(passStr);
+                            sb.append(passResult).append("\n");
+                        }
+                    } else {
+                        if (checkCalculation.getFail() != null) {
+                            String failStr = String.format(checkCalculation.getFail(), combined.toArray());
+                            String failResult = (String) scriptEngine.eval(failStr);
+                            sb.append(failResult).append("\n");
                         }
                     }
+                } catch (ScriptException e) {
+                    e.printStackTrace();
+                    System.err.println("Issue with script eval: " + this.getDisplayName() + ":" + calcKey);
+                } catch (MissingFormatArgumentException mfa) {
+                    mfa.printStackTrace();
+                    System.err.println("Bad Argument Match up for " + checkSearch + " check rule: " + this.getDisplayName() + ":" + calcKey);
                 }
-                rtn = sb.toString();
             }
         } catch (RuntimeException re) {
             re.printStackTrace();
         }
-        return rtn;
     }
 
     public ScriptEngine getScriptEngine() {
         return scriptEngine;
     }
 
-    private void internalOnError(CommandReturn commandReturn, String[] args) {
-        StringBuilder sb = new StringBuilder();
-        if (getReportOnPath() && getOnErrorPathCommand() != null) {
-            String action = null;
-            try {
-                action = String.format(getOnErrorPathCommand(), args);
-            } catch (Throwable t) {
-                throw new RuntimeException("Bad string format in 'errorPath' action command of CommandReturnCheck", t);
-            }
-            if (action != null)
-                sb.append(action).append("\n");
-        }
-
-        if (getReportOnResults() && getOnErrorRecordCommand() != null) {
-            for (List<Object> record : commandReturn.getRecords()) {
-                String action = null;
-                String[] combined = new String[args.length + record.size()];
-                System.arraycopy(args, 0, combined, 0, args.length);
-                System.arraycopy(record.toArray(), 0, combined, args.length, record.toArray().length);
+    /*
+    The output of this check for one path.  Path actions and PATH calculations are resolved up front,
+    record actions and RECORDS calculations as each record is added.  Nothing is written until 'complete'.
+     */
+    public class Evaluation {
+        private final String[] args;
+        private final boolean toError;
+        private final boolean success;
+        private final boolean calculate;
+        private final StringBuilder actions = new StringBuilder();
+        private final StringBuilder calculations = new StringBuilder();
+
+        protected Evaluation(String[] args, boolean toError, boolean success) {
+            this.args = args;
+            this.toError = toError;
+            this.success = success;
+            this.calculate = (toError ? getProcessOnError() : getProcessOnSuccess()) && hasCalculations();
+            String pathAction = toError ? getOnErrorPathCommand() : getOnSuccessPathCommand();
+            if (getReportOnPath() && pathAction != null) {
                 try {
-                    action = String.format(getOnErrorRecordCommand(), combined);
+                    actions.append(String.format(pathAction, args)).append("\n");
                 } catch (Throwable t) {
-                    throw new RuntimeException("Bad string format in 'errorRecord' action command of CommandReturnCheck", t);
+                    throw new RuntimeException("Bad string format in '" + (toError ? "errorPath" : "successPath") +
+                            "' action command of CommandReturnCheck", t);
                 }
-                if (action != null)
-                    sb.append(action).append("\n");
+            }
+            if (calculate) {
+                runCalculations(CheckSearch.PATH, args, null, calculations);
             }
         }
-        if (getProcessOnError()) {
-            String checkCalcs = runCalculations(commandReturn, args);
-            if (checkCalcs != null)
-                sb.append(checkCalcs);
+
+        public CommandReturnCheck getCheck() {
+            return CommandReturnCheck.this;
         }
-        errorStream.print(sb.toString());
-    }
 
-    private void internalOnSuccess(CommandReturn commandReturn, String[] args) {
-        StringBuilder sb = new StringBuilder();
-        if (getReportOnPath() && getOnSuccessPathCommand() != null) {
-            String action = null;
-            try {
-                action = String.format(getOnSuccessPathCommand(), args);
-            } catch (Throwable t) {
-                throw new RuntimeException("Bad string format in 'successPath' action command of CommandReturnCheck", t);
-            }
-            if (action != null)
-                sb.append(action).append("\n");
+        public boolean isSuccess() {
+            return success;
         }
-        if (getReportOnResults() && getOnSuccessRecordCommand() != null) {
-            for (List<Object> record : commandReturn.getRecords()) {
-                Object[] rec = new Object[record.size()];
-                for (int i = 0; i < record.size(); i++) {
-                    rec[i] = record.get(i);
-                }
-                String action = null;
-                try {
-                    action = String.format(getOnSuccessRecordCommand(), rec);
-                } catch (Throwable t) {
-                    throw new RuntimeException("Bad string format in 'successRecord' action command of CommandReturnCheck", t);
+
+        public void addRecord(List<Object> record) {
+            if (getReportOnResults()) {
+                if (toError && getOnErrorRecordCommand() != null) {
+                    String[] combined = new String[args.length + record.size()];
+                    System.arraycopy(args, 0, combined, 0, args.length);
+                    System.arraycopy(record.toArray(), 0, combined, args.length, record.size());
+                    try {
+                        actions.append(String.format(getOnErrorRecordCommand(), combined)).append("\n");
+                    } catch (Throwable t) {
+                        throw new RuntimeException("Bad string format in 'errorRecord' action command of CommandReturnCheck", t);
+                    }
+                } else if (!toError && getOnSuccessRecordCommand() != null) {
+                    try {
+                        actions.append(String.format(getOnSuccessRecordCommand(), record.toArray())).append("\n");
+                    } catch (Throwable t) {
+                        throw new RuntimeException("Bad string format in 'successRecord' action command of CommandReturnCheck", t);
+                    }
                 }
-                if (action != null)
-                    sb.append(action).append("\n");
+            }
+            if (calculate) {
+                runCalculations(CheckSearch.RECORDS, args, record, calculations);
             }
         }
-        if (getProcessOnSuccess()) {
-            String checkCalcs = runCalculations(commandReturn, args);
-            if (checkCalcs != null)
-                sb.append(checkCalcs);
+
+        public void complete() {
+            actions.append(calculations);
+            if (toError) {
+                errorStream.print(actions.toString());
+            } else {
+                if (sqlAction != null && getProcessOnSuccess()) {
+                    sqlAction.generate(args, actions);
+                }
+                // The whole record in one print, so records from other threads can't interleave with it.
+                successStream.print(actions.toString());
+            }
         }
-        successStream.print(sb.toString());
     }
 
     public String getDisplayName() {
@@ -440,6 +431,70 @@ public class CommandReturnCheck {
 
     }
 
+    public List<CheckPredicate> getPathPredicates() {
+        return pathPredicates;
+    }
+
+    public void setPathPredicates(List<CheckPredicate> pathPredicates) {
+        this.pathPredicates = pathPredicates;
+    }
+
+    public SqlActionGenerator getSqlAction() {
+        return sqlAction;
+    }
+
+    public void setSqlAction(SqlActionGenerator sqlAction) {
+        this.sqlAction = sqlAction;
+    }
+
+    /*
+    Align the 'pathPredicates' and 'sqlAction' with the listing columns of the owning process.
+     */
+    public void initListingColumns(String[] listingColumns) {
+        if (pathPredicates != null && pathPredicates.size() > 0) {
+            for (CheckPredicate predicate : pathPredicates) {
+                predicate.init(listingColumns);
+            }
+            orderedPredicates = pathPredicates.toArray(new CheckPredicate[0]);
+            orderPredicates();
+        }
+        if (sqlAction != null) {
+            sqlAction.init(listingColumns);
+        }
+    }
+
+    /*
+    Run the 'pathPredicates' against the listing record.  Returns false when the path shouldn't be
+    checked.  Stops at the first predicate that fails.
+     */
+    public boolean acceptPath(String[] args) {
+        CheckPredicate[] predicates = orderedPredicates;
+        if (predicates == null) {
+            return true;
+        }
+        if (predicateEvaluations.incrementAndGet() % PREDICATE_REORDER_INTERVAL == 0) {
+            orderPredicates();
+            predicates = orderedPredicates;
+        }
+        for (CheckPredicate predicate : predicates) {
+            if (!predicate.test(args)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void orderPredicates() {
+        CheckPredicate[] reordered = Arrays.copyOf(orderedPredicates, orderedPredicates.length);
+        Arrays.sort(reordered, new Comparator<CheckPredicate>() {
+            @Override
+            public int compare(CheckPredicate o1, CheckPredicate o2) {
+                return Double.compare(o2.getSelectivity(), o1.getSelectivity());
+            }
+        });
+        orderedPredicates = reordered;
+    }
+
     public String getFullCommand(String[] args) {
 //        setCurrentArgs(args);
         String action = String.format(getPathCommand(), args);
@@ -517,6 +572,7 @@ public class CommandReturnCheck {
 //        clone.setCounter(new ReportCounter());
         clone.getCounter().setName(this.displayName);
         clone.setCheckCalculations(this.checkCalculations);
+        clone.setSqlAction(this.sqlAction);
         clone.setErrorStream(this.errorStream);
         clone.setErrorDescription(this.errorDescription);
         clone.setErrorFilename(this.errorFilename);
@@ -524,6 +580,7 @@ public class CommandReturnCheck {
         clone.setSuccessStream(this.successStream);
         clone.setSuccessDescription(this.successDescription);
         clone.setSuccessFilename(this.successFilename);
+        clone.setPathPredicates(this.pathPredicates);
         return clone;
     }
 
@@ -16,21 +16,43 @@
 
 package com.cloudera.utils.hive.sre;
 
+import com.cloudera.utils.hive.config.ConnectionPool;
 import com.cloudera.utils.hive.config.Metastore;
 import com.cloudera.utils.hive.config.SreProcessesConfig;
 import org.apache.commons.dbcp2.*;
-import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConnectionPools {
+    private static Logger LOG = LogManager.getLogger(ConnectionPools.class);
+
+    // Idle connections are checked and evicted in the background, instead of on every borrow.
+    private static final long EVICTION_RUN_INTERVAL_MS = 30000l;
+    private static final long MIN_EVICTABLE_IDLE_MS = 300000l;
+    private static final int VALIDATION_TIMEOUT_SECS = 5;
+
     private SreProcessesConfig config;
 
     private PoolingDataSource<PoolableConnection> metastoreDirectDataSource = null;
     private PoolingDataSource<PoolableConnection> hs2DataSource = null;
+    private GenericObjectPool<PoolableConnection> metastoreDirectPool = null;
+    private GenericObjectPool<PoolableConnection> hs2Pool = null;
+    // One pool per 'replicaUris' entry of the metastore.
+    private List<GenericObjectPool<PoolableConnection>> metastoreReplicaPools =
+            new ArrayList<GenericObjectPool<PoolableConnection>>();
+    private List<PoolingDataSource<PoolableConnection>> metastoreReplicaDataSources =
+            new ArrayList<PoolingDataSource<PoolableConnection>>();
+    private final AtomicInteger nextReplica = new AtomicInteger(0);
 
     public ConnectionPools(SreProcessesConfig config) {
         this.config = config;
@@ -56,57 +78,187 @@ public class ConnectionPools {
     }
 
     public Connection getMetastoreDirectConnection() throws SQLException {
+        // The 'initSql' has already been run when the physical connection was created.
         Connection conn = getMetastoreDirectDataSource().getConnection();
-        if (this.config.getMetastoreDirect().getInitSql() != null) {
-            conn.createStatement().execute(this.config.getMetastoreDirect().getInitSql());
-        }
         return conn;
     }
 
+    /*
+    A connection for read-only queries.  Round robin over the replicas, or the primary when there
+    aren't any.
+     */
+    public Connection getMetastoreReadConnection() throws SQLException {
+        return getMetastoreReadConnection(null);
+    }
+
+    /*
+    A connection for read-only queries, routed by 'routingKey' (the database), so the scans for a
+    database always land on the same replica and the load is spread over all of them.
+     */
+    public Connection getMetastoreReadConnection(String routingKey) throws SQLException {
+        if (metastoreDirectDataSource == null) {
+            initMetastoreDataSource();
+        }
+        int replicas = metastoreReplicaDataSources.size();
+        if (replicas == 0) {
+            return getMetastoreDirectConnection();
+        }
+        int index = routingKey != null ? replicaIndex(routingKey, replicas) :
+                Math.floorMod(nextReplica.getAndIncrement(), replicas);
+        try {
+            return metastoreReplicaDataSources.get(index).getConnection();
+        } catch (SQLException se) {
+            // A replica that's down or lagging shouldn't stop the run.
+            LOG.warn("Issue getting a connection from metastore replica " + index + ", using the primary. " +
+                    se.getMessage());
+            return getMetastoreDirectConnection();
+        }
+    }
+
+    protected static int replicaIndex(String routingKey, int replicas) {
+        return Math.floorMod(routingKey.hashCode(), replicas);
+    }
+
     public Connection getHs2Connection() throws SQLException {
         Connection conn = getHs2DataSource().getConnection();
         return conn;
     }
 
+    public GenericObjectPool<PoolableConnection> getMetastoreDirectPool() {
+        return metastoreDirectPool;
+    }
+
+    public GenericObjectPool<PoolableConnection> getHs2Pool() {
+        return hs2Pool;
+    }
+
+    /*
+    Pool usage for the status line: active,idle,max - waiting,borrowed,mean wait ms,max wait ms
+     */
+    public String getMetastoreDirectPoolStatus() {
+        StringBuilder sb = new StringBuilder(poolStatus(metastoreDirectPool));
+        for (GenericObjectPool<PoolableConnection> replicaPool : metastoreReplicaPools) {
+            sb.append(" | ").append(poolStatus(replicaPool));
+        }
+        return sb.toString();
+    }
+
+    protected static String poolStatus(GenericObjectPool<PoolableConnection> pool) {
+        StringBuilder sb = new StringBuilder();
+        if (pool != null) {
+            sb.append(pool.getNumActive()).append(",");
+            sb.append(pool.getNumIdle()).append(",");
+            sb.append(pool.getMaxTotal()).append(" - ");
+            sb.append(pool.getNumWaiters()).append(",");
+            sb.append(pool.getBorrowedCount()).append(",");
+            sb.append(pool.getMeanBorrowWaitTimeMillis()).append(",");
+            sb.append(pool.getMaxBorrowWaitTimeMillis());
+        }
+        return sb.toString();
+    }
+
+    protected static ConnectionPool getConnectionPool(Metastore metastore) {
+        return metastore.getConnectionPool() != null ? metastore.getConnectionPool() : new ConnectionPool();
+    }
+
+    /*
+    Every process thread and every task thread can hold a connection at the same time, so the pool
+    needs at least 2 x 'parallelism' connections or threads will wait on it.
+     */
+    protected GenericObjectPoolConfig<PoolableConnection> getPoolConfig(String name, Metastore metastore) {
+        ConnectionPool cp = getConnectionPool(metastore);
+        int required = config.getParallelism() * 2;
+        int maxTotal = Math.max(cp.getMax(), required);
+        if (cp.getMax() < required) {
+            LOG.warn(name + " connectionPool 'max' (" + cp.getMax() + ") is less than the " + required +
+                    " connections needed for 'parallelism' " + config.getParallelism() + ".  Using " + maxTotal + ".");
+        }
+        GenericObjectPoolConfig<PoolableConnection> poolConfig = new GenericObjectPoolConfig<PoolableConnection>();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        poolConfig.setMinIdle(Math.min(cp.getMin(), maxTotal));
+        poolConfig.setMaxWaitMillis(cp.getTimeout() * 1000l);
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestOnCreate(false);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRunsMillis(EVICTION_RUN_INTERVAL_MS);
+        poolConfig.setMinEvictableIdleTimeMillis(MIN_EVICTABLE_IDLE_MS);
+        poolConfig.setJmxNamePrefix(name);
+        return poolConfig;
+    }
+
+    protected GenericObjectPool<PoolableConnection> buildPool(String name, Metastore metastore) {
+        return buildPool(name, metastore, metastore.getUri(), false);
+    }
+
+    /*
+    A pool for 'uri', using the rest of the 'metastore' settings.
+     */
+    protected GenericObjectPool<PoolableConnection> buildPool(String name, Metastore metastore, String uri,
+                                                              boolean readOnly) {
+        ConnectionFactory connectionFactory =
+                new DriverManagerConnectionFactory(uri, metastore.getConnectionProperties());
+
+        PoolableConnectionFactory poolableConnectionFactory =
+                new PoolableConnectionFactory(connectionFactory, null);
+        // Run once per physical connection, not on every borrow.
+        if (metastore.getInitSql() != null) {
+            poolableConnectionFactory.setConnectionInitSql(Collections.singletonList(metastore.getInitSql()));
+        }
+        // No validation query, so Connection.isValid() is used.
+        poolableConnectionFactory.setValidationQueryTimeout(VALIDATION_TIMEOUT_SECS);
+        poolableConnectionFactory.setFastFailValidation(true);
+        if (readOnly) {
+            poolableConnectionFactory.setDefaultReadOnly(Boolean.TRUE);
+        }
+        // Cache prepared statements on each connection, keyed by their SQL.  The same queries are prepared
+        // for every database, so the next task that gets the connection skips the parse.
+        int maxStatements = getConnectionPool(metastore).getMaxOpenPreparedStatements();
+        if (maxStatements > 0) {
+            poolableConnectionFactory.setPoolStatements(true);
+            poolableConnectionFactory.setMaxOpenPreparedStatements(maxStatements);
+        }
+
+        GenericObjectPool<PoolableConnection> connectionPool =
+                new GenericObjectPool<>(poolableConnectionFactory, getPoolConfig(name, metastore));
+
+        poolableConnectionFactory.setPool(connectionPool);
+        return connectionPool;
+    }
+
     protected void initMetastoreDataSource() {
         // Metastore Direct
         if (config.getMetastoreDirect() == null) {
             throw new RuntimeException("Missing configuration to connect to Metastore RDBMS");
         }
-        Metastore msdb = config.getMetastoreDirect();
-        ConnectionFactory msconnectionFactory =
-                new DriverManagerConnectionFactory(msdb.getUri(), msdb.getConnectionProperties());
-
-        PoolableConnectionFactory mspoolableConnectionFactory =
-                new PoolableConnectionFactory(msconnectionFactory, null);
-
-        ObjectPool<PoolableConnection> msconnectionPool =
-                new GenericObjectPool<>(mspoolableConnectionFactory);
-
-        mspoolableConnectionFactory.setPool(msconnectionPool);
+        this.metastoreDirectPool = buildPool("metastore_direct", config.getMetastoreDirect());
 
         this.metastoreDirectDataSource =
-                new PoolingDataSource<>(msconnectionPool);
+                new PoolingDataSource<>(metastoreDirectPool);
+
+        List<String> replicaUris = config.getMetastoreDirect().getReplicaUris();
+        if (replicaUris != null) {
+            for (int i = 0; i < replicaUris.size(); i++) {
+                GenericObjectPool<PoolableConnection> replicaPool =
+                        buildPool("metastore_replica_" + i, config.getMetastoreDirect(), replicaUris.get(i), true);
+                metastoreReplicaPools.add(replicaPool);
+                metastoreReplicaDataSources.add(new PoolingDataSource<>(replicaPool));
+            }
+            if (replicaUris.size() > 0) {
+                LOG.info("Metastore read-only queries are spread over " + replicaUris.size() + " replica(s).");
+            }
+        }
 
     }
 
     protected void initHs2DataSource() {
         // this is optional.
         if (config.getHs2() != null) {
-            Metastore hs2db = config.getHs2();
-            ConnectionFactory hs2connectionFactory =
-                    new DriverManagerConnectionFactory(hs2db.getUri(), hs2db.getConnectionProperties());
-
-            PoolableConnectionFactory hs2poolableConnectionFactory =
-                    new PoolableConnectionFactory(hs2connectionFactory, null);
-
-            ObjectPool<PoolableConnection> hs2connectionPool =
-                    new GenericObjectPool<>(hs2poolableConnectionFactory);
-
-            hs2poolableConnectionFactory.setPool(hs2connectionPool);
+            this.hs2Pool = buildPool("hs2", config.getHs2());
 
             this.hs2DataSource =
-                    new PoolingDataSource<>(hs2connectionPool);
+                    new PoolingDataSource<>(hs2Pool);
         }
     }
 
@@ -20,17 +20,12 @@ import com.cloudera.utils.hive.config.HiveStrictManagedMigrationElements;
 import com.cloudera.utils.hive.config.HiveStrictManagedMigrationIncludeListConfig;
 import com.cloudera.utils.hive.reporting.CounterGroup;
 import com.cloudera.utils.hive.reporting.TaskState;
-import com.cloudera.utils.sql.JDBCUtils;
 import com.cloudera.utils.sql.QueryDefinition;
 import com.cloudera.utils.sql.ResultArray;
 import com.cloudera.utils.hadoop.HadoopSession;
-import com.cloudera.utils.hadoop.shell.command.CommandReturn;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -41,6 +36,7 @@ public class DbPaths extends SRERunnable {
     private CounterGroup counterGroup;
 
     private List<CommandReturnCheck> commandChecks = new ArrayList<CommandReturnCheck>();
+    private List<FusedCheck> fusedChecks = null;
     private SkipCommandCheck skipCommandCheck = null;
 
     private CheckCalculation calculationCheck = null;
@@ -65,6 +61,14 @@ public class DbPaths extends SRERunnable {
         this.commandChecks = commandChecks;
     }
 
+    public List<FusedCheck> getFusedChecks() {
+        return fusedChecks;
+    }
+
+    public void setFusedChecks(List<FusedCheck> fusedChecks) {
+        this.fusedChecks = fusedChecks;
+    }
+
     public SkipCommandCheck getSkipCommandCheck() {
         return skipCommandCheck;
     }
@@ -107,20 +111,15 @@ public class DbPaths extends SRERunnable {
         QueryDefinition queryDefinition = null;
         HadoopSession cli = null;
 
-        try (Connection conn = getParent().getParent().getConnectionPools().
-                getMetastoreDirectConnection()) {
+        try {
             LOG.info(this.getDisplayName());
             queryDefinition = getParent().getQueryDefinitions().
                     getQueryDefinition(getParent().getPathsListingQuery());
-            PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
-
             Properties overrides = new Properties();
             overrides.setProperty("dbs", getDisplayName());
-            JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, overrides);
-
-            ResultSet epRs = preparedStatement.executeQuery();
-            ResultArray rarray = new ResultArray(epRs);
-            epRs.close();
+            // Cached when another dbSet lists the same paths.  Routed by database over the replicas.
+            ResultArray rarray = getParent().getParent().getQueryResultCache().executeQuery(getParent().getDbType(),
+                    getParent().getPathsListingQuery(), queryDefinition, overrides, getDisplayName());
 
             String[] columns = getParent().getListingColumns();
 
@@ -174,21 +173,13 @@ public class DbPaths extends SRERunnable {
                         hsmmwcfg.addTable(args[hsmmElementLoc[0]], args[hsmmElementLoc[1]]);
                     }
                     if (getCommandChecks() != null) {
-                        for (CommandReturnCheck lclCheck : getCommandChecks()) {
+                        if (getFusedChecks() == null) {
+                            setFusedChecks(FusedCheck.fuse(getCommandChecks()));
+                        }
+                        for (FusedCheck lclCheck : getFusedChecks()) {
                             try {
                                 LOG.info(getParent().getDisplayName() + ":" + lclCheck.getDisplayName() + " " + Arrays.toString(args));
-                                String rcmd = lclCheck.getFullCommand(args);
-                                if (rcmd != null) {
-                                    CommandReturn cr = cli.processInput(rcmd);
-//                                    lclCheck.getCounter().incCount(TaskState.PROCESSED, 1);
-                                    if (!cr.isError() || (lclCheck.getInvertCheck() && cr.isError())) {
-                                        lclCheck.onSuccess(cr,args);
-                                        lclCheck.getCounter().incCount(TaskState.SUCCESS, 1);
-                                    } else {
-                                        lclCheck.onError(cr,args);
-                                        lclCheck.getCounter().incCount(TaskState.ERROR, 1);
-                                    }
-                                }
+                                lclCheck.process(cli, args);
                             } catch (RuntimeException t) {
                                 // Malformed cli request.  Input is missing an element required to complete call.
                                 // Unusual, but not an expection.
@@ -20,7 +20,6 @@ import com.cloudera.utils.hive.config.HiveStrictManagedMigrationElements;
 import com.cloudera.utils.hive.reporting.CounterGroup;
 import com.cloudera.utils.hive.reporting.ReportingConf;
 import com.cloudera.utils.hive.reporting.TaskState;
-import com.cloudera.utils.sql.JDBCUtils;
 import com.cloudera.utils.sql.Parameter;
 import com.cloudera.utils.sql.QueryDefinition;
 import com.cloudera.utils.sql.ResultArray;
@@ -31,10 +30,9 @@ import org.apache.log4j.Logger;
 import javax.validation.valueextraction.Unwrapping;
 import java.io.FileNotFoundException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -42,7 +40,7 @@ import java.util.concurrent.ScheduledFuture;
 
 
 @JsonIgnoreProperties({"parent", "counterGroup", "config", "metastoreDirectDataSource", "h2DataSource",
-        "outputDirectory", "dbPaths", "cliSession", "success", "error"})
+        "outputDirectory", "dbPaths", "cliSession", "success", "error", "fusedChecks"})
 public class DbSetProcess extends SreProcessBase {
     private static Logger LOG = LogManager.getLogger(DbSetProcess.class);
 
@@ -50,6 +48,8 @@ public class DbSetProcess extends SreProcessBase {
 
     //    private List<DbPaths> dbPaths;
     private List<CommandReturnCheck> commandChecks;
+    // The 'commandChecks' grouped by 'pathCommand', so each command is only issued once per path.
+    private List<FusedCheck> fusedChecks;
     private CheckCalculation calculationCheck;
     private SkipCommandCheck skipCommandCheck;
 
@@ -57,6 +57,8 @@ public class DbSetProcess extends SreProcessBase {
     private HiveStrictManagedMigrationElements hsmmElements;
     private String dbListingQuery;
     private Map<String, Parameter> dbListingParameters;
+    // The 'dbListingQuery' with the include/exclude regex pushed into it, when the query allows it.
+    private QueryDefinition dbListingDefinition;
 
     private String[] listingColumns;
     private String pathsListingQuery;
@@ -82,6 +84,10 @@ public class DbSetProcess extends SreProcessBase {
         this.commandChecks = commandChecks;
     }
 
+    public List<FusedCheck> getFusedChecks() {
+        return fusedChecks;
+    }
+
     public CheckCalculation getCalculationCheck() {
         return calculationCheck;
     }
@@ -262,13 +268,52 @@ public class DbSetProcess extends SreProcessBase {
         // Add Report Counters.
         if (getCommandChecks() != null) {
             for (CommandReturnCheck crr : getCommandChecks()) {
+                crr.initListingColumns(getListingColumns());
                 getParent().getReporter().addCounter(counterGroup, crr.getCounter());
             }
+            fusedChecks = FusedCheck.fuse(getCommandChecks());
         } else {
             if (getSkipCommandCheck() != null) {
                 getParent().getReporter().addCounter(counterGroup, getSkipCommandCheck().getCounter());
             }
         }
+        initDbListingDefinition();
+    }
+
+    /*
+    Have the metastore apply the include/exclude regex to the database listing, so only the databases
+    in scope come back.
+     */
+    protected void initDbListingDefinition() {
+        dbListingDefinition = null;
+        QueryDefinition listing = getQueryDefinitions().getQueryDefinition(getDbListingQuery());
+        if (listing == null || listing.getDatabaseColumn() == null) {
+            return;
+        }
+        boolean negate = getIncludeRegEx() == null;
+        String regex = negate ? getExcludeRegEx() : getIncludeRegEx();
+        if (regex == null) {
+            return;
+        }
+        if (getSqlDialect().canFilter(regex, negate)) {
+            dbListingDefinition = getSqlDialect().filter(listing, listing.getDatabaseColumn(), regex, negate);
+        } else {
+            LOG.info(getDisplayName() + " will filter DB(s) after the listing, the " + getDbType() +
+                    " metastore may not match RegEx '" + regex + "' the same way.");
+        }
+    }
+
+    @Override
+    protected QueryDefinition getEffectiveQueryDefinition(String queryName) {
+        if (dbListingDefinition != null && queryName.equals(getDbListingQuery())) {
+            return dbListingDefinition;
+        }
+        return super.getEffectiveQueryDefinition(queryName);
+    }
+
+    @Override
+    public List<String> listQueries() {
+        return Arrays.asList(getDbListingQuery(), getPathsListingQuery());
     }
 
     @Override
@@ -278,18 +323,13 @@ public class DbSetProcess extends SreProcessBase {
         QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
         LOG.info("Testing DB SQL Definition: " + targetQueryDef);
         LOG.info("Testing DB SQL: " + queryDefinition.getStatement());
-        try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+        try (Connection conn = getParent().getConnectionPools().getMetastoreReadConnection()) {
             // build prepared statement for targetQueryDef
-            PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
             // apply any overrides from the user configuration.
             Map<String, Parameter> queryOverrides = getDbListingParameters();
-            JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, queryOverrides);
-            // Run
-            ResultSet check = preparedStatement.executeQuery();
-            // Convert Result to an array
-            ResultArray rarray = new ResultArray(check);
-            // Close ResultSet
-            check.close();
+            // Only the SQL is being tested, so a single row is enough.
+            ResultArray rarray = getParent().getQueryMonitor().executeQuery(conn,
+                    getSqlDialect().limit(queryDefinition, 1), queryOverrides);
         } catch (SQLException e) {
             rtn = Boolean.FALSE;
             LOG.error("Test Failure for DB SQL Definition: " + targetQueryDef, e);
@@ -303,18 +343,13 @@ public class DbSetProcess extends SreProcessBase {
         QueryDefinition queryPathDefinition = getQueryDefinitions().getQueryDefinition(targetPathQueryDef);
         LOG.info("Testing Path SQL Definition: " + targetPathQueryDef);
         LOG.info("Testing Path SQL: " + queryPathDefinition.getStatement());
-        try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+        try (Connection conn = getParent().getConnectionPools().getMetastoreReadConnection()) {
             // build prepared statement for targetQueryDef
-            PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryPathDefinition);
             // apply any overrides from the user configuration.
             Map<String, Parameter> queryOverrides = getPathListingParameters();
-            JDBCUtils.setPreparedStatementParameters(preparedStatement, queryPathDefinition, queryOverrides);
-            // Run
-            ResultSet check = preparedStatement.executeQuery();
-            // Convert Result to an array
-            ResultArray rarray = new ResultArray(check);
-            // Close ResultSet
-            check.close();
+            // Only the SQL is being tested, so a single row is enough.
+            ResultArray rarray = getParent().getQueryMonitor().executeQuery(conn,
+                    getSqlDialect().limit(queryPathDefinition, 1), queryOverrides);
         } catch (SQLException e) {
             rtn = Boolean.FALSE;
             LOG.error("Test Failure for Path SQL Definition: " + targetQueryDef, e);
@@ -333,19 +368,31 @@ public class DbSetProcess extends SreProcessBase {
         if (getDbsOverride() != null && getDbsOverride().length > 0) {
             dbs = getDbsOverride();
         } else {
-            try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+            try {
                 LOG.info(this.getDisplayName());
                 String targetQueryDef = this.dbListingQuery;
                 // build prepared statement for targetQueryDef
                 QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
-                PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
                 // apply any overrides from the user configuration.
                 Map<String, Parameter> queryOverrides = getDbListingParameters();
-                JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, queryOverrides);
-                // Run
-                ResultSet check = preparedStatement.executeQuery();
-                // Convert Result to an array
-                ResultArray rarray = new ResultArray(check);
+                // Shared with other processes that list the same databases.
+                ResultArray rarray = null;
+                if (dbListingDefinition != null) {
+                    try {
+                        rarray = getParent().getQueryResultCache().executeQuery(getDbType(), targetQueryDef,
+                                dbListingDefinition, queryOverrides);
+                    } catch (SQLException se) {
+                        // The RDBMS regex syntax differs from Java's, fall back to filtering after the fetch.
+                        LOG.warn(getDisplayName() + " couldn't filter DB(s) in the metastore, filtering the full list: " +
+                                se.getMessage());
+                    }
+                }
+                if (rarray == null) {
+                    rarray = getParent().getQueryResultCache().executeQuery(getDbType(), targetQueryDef,
+                            queryDefinition, queryOverrides);
+                }
+                // Applied again when pushed down, an include may have matched more without regard to case.
+                // It's only over the databases the metastore already matched.
                 if (getIncludeRegEx() != null) {
                     LOG.info(getDisplayName() + " will include DB(s) that 'match' RegEx: " + getIncludeRegEx());
                     rarray.keep(getIncludeRegEx(), 0);
@@ -353,8 +400,6 @@ public class DbSetProcess extends SreProcessBase {
                     LOG.info(getDisplayName() + " will include DB(s) that do 'NOT' match RegEx: " + getExcludeRegEx());
                     rarray.remove(getExcludeRegEx(), 0);
                 }
-                // Close ResultSet
-                check.close();
                 // build array of tables.
                 dbs = rarray.getColumn("name");
                 System.out.println(getDisplayName() + " - found " + dbs.length + " databases to process.");
@@ -368,12 +413,24 @@ public class DbSetProcess extends SreProcessBase {
             }
         }
 
+        // The paths are only listed for these databases, the cache doesn't hold the others for this process.
+        QueryDefinition pathsDefinition = getPathsListingQuery() != null ?
+                getEffectiveQueryDefinition(getPathsListingQuery()) : null;
+        if (pathsDefinition != null) {
+            getParent().getQueryResultCache().limit(pathsDefinition.getStatement(), Arrays.asList(dbs));
+        }
+
         // Build an Element Path for each database.  This will be use to divide the work.
         int i = 0;
         counterGroup.addAndGetTaskState(TaskState.CONSTRUCTED, dbs.length);
         for (String database : dbs) {
+            if (getParent().isCancelled()) {
+                LOG.warn(getDisplayName() + " cancelled, not adding the remaining databases.");
+                break;
+            }
             DbPaths paths = new DbPaths(database, this);
             paths.setCommandChecks(this.getCommandChecks());
+            paths.setFusedChecks(this.getFusedChecks());
             paths.setSkipCommandCheck(this.getSkipCommandCheck());
             paths.setCounterGroup(counterGroup);
             if (paths.init() || this.getCommandChecks() == null) {
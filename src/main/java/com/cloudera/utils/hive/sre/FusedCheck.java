@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hadoop.HadoopSession;
+import com.cloudera.utils.hadoop.shell.command.CommandReturn;
+import com.cloudera.utils.hive.reporting.TaskState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+The CommandReturnChecks of a dbSet that issue the same 'pathCommand'.  The command is run once per
+path and every check in the group is evaluated in a single pass over the returned records.
+ */
+public class FusedCheck {
+
+    private final String pathCommand;
+    private final List<CommandReturnCheck> checks = new ArrayList<CommandReturnCheck>();
+
+    public FusedCheck(String pathCommand) {
+        this.pathCommand = pathCommand;
+    }
+
+    public String getPathCommand() {
+        return pathCommand;
+    }
+
+    public List<CommandReturnCheck> getChecks() {
+        return checks;
+    }
+
+    public String getDisplayName() {
+        StringBuilder sb = new StringBuilder();
+        for (CommandReturnCheck check : checks) {
+            if (sb.length() > 0)
+                sb.append(",");
+            sb.append(check.getDisplayName());
+        }
+        return sb.toString();
+    }
+
+    /*
+    Commands that only differ by whitespace between their arguments are the same command to the cli.
+    Whitespace inside quotes is part of the argument and is kept as is.
+     */
+    public static String normalize(String pathCommand) {
+        if (pathCommand == null)
+            return null;
+        String command = pathCommand.trim();
+        StringBuilder sb = new StringBuilder(command.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(c);
+            if (c == '\\' && i + 1 < command.length()) {
+                sb.append(command.charAt(++i));
+            } else if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    /*
+    Group the checks by their normalized 'pathCommand', keeping the order they were defined in.
+     */
+    public static List<FusedCheck> fuse(List<CommandReturnCheck> checks) {
+        Map<String, FusedCheck> fused = new LinkedHashMap<String, FusedCheck>();
+        if (checks != null) {
+            for (CommandReturnCheck check : checks) {
+                String key = normalize(check.getPathCommand());
+                FusedCheck fusedCheck = fused.get(key);
+                if (fusedCheck == null) {
+                    fusedCheck = new FusedCheck(key);
+                    fused.put(key, fusedCheck);
+                }
+                fusedCheck.getChecks().add(check);
+            }
+        }
+        return new ArrayList<FusedCheck>(fused.values());
+    }
+
+    /*
+    The checks that accept the path.  The others skip the FileSystem call.
+     */
+    protected List<CommandReturnCheck> accept(String[] args) {
+        List<CommandReturnCheck> rtn = new ArrayList<CommandReturnCheck>(checks.size());
+        for (CommandReturnCheck check : checks) {
+            if (check.acceptPath(args)) {
+                rtn.add(check);
+            }
+        }
+        return rtn;
+    }
+
+    /*
+    Run the command for 'args' and evaluate every check that accepts the path.
+     */
+    public void process(HadoopSession cli, String[] args) {
+        List<CommandReturnCheck> accepted = accept(args);
+        if (accepted.isEmpty() || pathCommand == null) {
+            return;
+        }
+        String rcmd = accepted.get(0).getFullCommand(args);
+        if (rcmd == null) {
+            return;
+        }
+        CommandReturn cr = cli.processInput(rcmd);
+        evaluate(accepted, args, cr.isError(), cr.getRecords());
+    }
+
+    /*
+    Evaluate the 'accepted' checks against one command result, in a single pass over its records.
+     */
+    protected static void evaluate(List<CommandReturnCheck> accepted, String[] args, boolean error,
+                                   List<List<Object>> records) {
+        CommandReturnCheck.Evaluation[] evaluations = new CommandReturnCheck.Evaluation[accepted.size()];
+        for (int i = 0; i < evaluations.length; i++) {
+            evaluations[i] = accepted.get(i).startEvaluation(error, args);
+        }
+        for (List<Object> record : records) {
+            for (CommandReturnCheck.Evaluation evaluation : evaluations) {
+                evaluation.addRecord(record);
+            }
+        }
+        for (CommandReturnCheck.Evaluation evaluation : evaluations) {
+            evaluation.complete();
+            if (evaluation.getCheck().getCounter() != null) {
+                evaluation.getCheck().getCounter().incCount(evaluation.isSuccess() ? TaskState.SUCCESS : TaskState.ERROR, 1);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FusedCheck{" + pathCommand + "}";
+    }
+}
@@ -10,7 +10,10 @@ public enum MessageCode {
     DECRYPT_PASSWORD(2, "Decrypted Password: {0}"),
     ENCRYPT_PASSWORD_ISSUE(3, "Issue Encrypting Password"),
     DECRYPTING_PASSWORD_ISSUE(4, "Issue Decrypting password"),
-    PKEY_PASSWORD_CFG(5, "Need to include '-pkey' with '-p'.")
+    PKEY_PASSWORD_CFG(5, "Need to include '-pkey' with '-p'."),
+    // WARNINGS
+    FUSABLE_CHECKS(6, "These dbSets list the same paths and issue the same 'pathCommand'. " +
+            "Combine their checks into one dbSet so the command only runs once per path: {0}")
     ;
 
 
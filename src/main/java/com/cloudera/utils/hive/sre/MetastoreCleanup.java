@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.reporting.ReportCounter;
+import com.cloudera.utils.sql.Parameter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/*
+A delete that's run over the keys of a metastore table, a batch of keys at a time.
+
+The 'keysQuery' returns the next keys to clean ('cleanup_key'), in order, after the 'last_key'
+parameter and no more than the 'batch_size' parameter.  The 'deleteQuery' removes exactly those keys,
+listed in place of its '${keys}', so each delete and commit is bounded.
+ */
+@JsonIgnoreProperties({"counter"})
+public class MetastoreCleanup {
+
+    private String name;
+    private String keysQuery;
+    private String deleteQuery;
+    @JsonProperty("parameters")
+    private Map<String, Parameter> parameters;
+
+    private ReportCounter counter;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getKeysQuery() {
+        return keysQuery;
+    }
+
+    public void setKeysQuery(String keysQuery) {
+        this.keysQuery = keysQuery;
+    }
+
+    public String getDeleteQuery() {
+        return deleteQuery;
+    }
+
+    public void setDeleteQuery(String deleteQuery) {
+        this.deleteQuery = deleteQuery;
+    }
+
+    public Map<String, Parameter> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(Map<String, Parameter> parameters) {
+        this.parameters = parameters;
+    }
+
+    public ReportCounter getCounter() {
+        if (counter == null) {
+            counter = new ReportCounter(name);
+        }
+        return counter;
+    }
+}
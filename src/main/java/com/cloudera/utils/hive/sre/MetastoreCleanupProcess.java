@@ -0,0 +1,370 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.reporting.CounterGroup;
+import com.cloudera.utils.hive.reporting.ReportingConf;
+import com.cloudera.utils.hive.reporting.TaskState;
+import com.cloudera.utils.sql.JDBCUtils;
+import com.cloudera.utils.sql.QueryDefinition;
+import com.cloudera.utils.sql.ResultArray;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.FileNotFoundException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/*
+Runs the 'cleanups' against the metastore RDBMS in bounded batches of keys, committing after each
+batch.  Deletes are throttled to 'rowsPerSecond' and a batch that runs into lock contention is rolled
+back and retried after a growing pause, so the HMS keeps getting to its tables while this runs.
+
+Nothing is deleted unless the run was started with '--execute-cleanup'.  Without it, the keys are
+walked the same way and the rows that would be deleted are counted.
+
+Progress is on the status line: each cleanup's counter shows the batches processed, the rows deleted
+(SUCCESS) and the batches that failed (ERROR).
+ */
+public class MetastoreCleanupProcess extends MetastoreProcess {
+    private static Logger LOG = LogManager.getLogger(MetastoreCleanupProcess.class);
+
+    protected static final String LAST_KEY = "last_key";
+    protected static final String BATCH_SIZE = "batch_size";
+    protected static final String KEY_COLUMN = "cleanup_key";
+    protected static final String KEYS_VARIABLE = "${keys}";
+    private static final long MAX_BACKOFF_MS = 60000l;
+
+    private List<MetastoreCleanup> cleanups = new ArrayList<MetastoreCleanup>();
+    // The most keys deleted (and committed) at a time.
+    private long batchSize = 1000;
+    // 0 for no limit.
+    private int rowsPerSecond = 2000;
+    // Retries for a batch that hit a lock wait timeout or deadlock, starting 'backoffMs' apart and doubling.
+    private int maxRetries = 5;
+    private long backoffMs = 1000l;
+    // Only set from the command line, never from the config.
+    private Boolean executeDeletes = Boolean.FALSE;
+
+    public List<MetastoreCleanup> getCleanups() {
+        return cleanups;
+    }
+
+    public void setCleanups(List<MetastoreCleanup> cleanups) {
+        this.cleanups = cleanups;
+    }
+
+    public long getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(long batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(int rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getBackoffMs() {
+        return backoffMs;
+    }
+
+    public void setBackoffMs(long backoffMs) {
+        this.backoffMs = backoffMs;
+    }
+
+    @JsonIgnore
+    public Boolean getExecuteDeletes() {
+        return executeDeletes;
+    }
+
+    @JsonIgnore
+    public void setExecuteDeletes(Boolean executeDeletes) {
+        this.executeDeletes = executeDeletes;
+    }
+
+    @Override
+    public void init(ProcessContainer parent) throws FileNotFoundException {
+        // The cleanup queries are only written for some RDBMS's.
+        if (this.getClass().getResource("/" + getDbType().toString() + getQueryDefinitionReference()) == null) {
+            throw new RuntimeException("The '" + getDisplayName() + "' cleanup isn't available for a " +
+                    getDbType() + " metastore.  There are no '" + getQueryDefinitionReference() + "' queries for it.");
+        }
+        super.init(parent);
+        if (batchSize < 1) {
+            throw new RuntimeException("The cleanup 'batchSize' must be at least 1.");
+        }
+
+        counterGroup = new CounterGroup(getUniqueName());
+        counterGroup.addAndGetTaskState(TaskState.CONSTRUCTED, getCleanups().size());
+        getParent().getReporter().addCounter(counterGroup, null);
+        for (MetastoreCleanup cleanup : getCleanups()) {
+            getParent().getReporter().addCounter(counterGroup, cleanup.getCounter());
+        }
+    }
+
+    @Override
+    public String call() throws Exception {
+        if (isTestSQL()) {
+            testSQLScript();
+        } else {
+            doIt();
+        }
+        return "done";
+    }
+
+    @Override
+    public Boolean testSQLScript() {
+        Boolean rtn = Boolean.TRUE;
+        for (MetastoreCleanup cleanup : getCleanups()) {
+            // Only the first batch of keys is read, nothing is deleted.
+            try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+                QueryDefinition keysDefinition = getQueryDefinitions().getQueryDefinition(cleanup.getKeysQuery());
+                LOG.info("Testing SQL: " + keysDefinition.getStatement());
+                getParent().getQueryMonitor().executeQuery(conn, keysDefinition, keysParameters(cleanup, keysDefinition));
+            } catch (SQLException e) {
+                rtn = Boolean.FALSE;
+                LOG.error("Test Failure for SQL Definition: " + cleanup.getKeysQuery(), e);
+                error.println(cleanup.getKeysQuery());
+                error.println("> Processing Issue: " + e.getMessage());
+            }
+        }
+        setInitializing(Boolean.FALSE);
+        return rtn;
+    }
+
+    public void doIt() {
+        LOG.info(this.getDisplayName());
+        if (getTitle() != null)
+            success.println(ReportingConf.substituteVariables(getTitle()));
+        if (getNote() != null)
+            success.println(getNote());
+        if (!executeDeletes) {
+            success.println("**Dry run**: nothing was deleted.  The rows are the ones that would have been. " +
+                    "Run with '--execute-cleanup' to delete them.\n");
+        }
+        success.println("| Cleanup | Keys | Batches | Rows " + (executeDeletes ? "Deleted" : "Matched") +
+                " | Failed Batches |");
+        success.println("|:---|:---|---:|---:|---:|");
+        for (MetastoreCleanup cleanup : getCleanups()) {
+            try {
+                clean(cleanup);
+            } catch (SQLException | RuntimeException e) {
+                counterGroup.addAndGetTaskState(TaskState.ERROR, 1);
+                error.println(cleanup.getName());
+                error.println("> Processing Issue: " + e.getMessage());
+                e.printStackTrace(error);
+            }
+            counterGroup.addAndGetTaskState(TaskState.PROCESSED, 1);
+        }
+        setInitializing(Boolean.FALSE);
+    }
+
+    protected Properties keysParameters(MetastoreCleanup cleanup, QueryDefinition keysDefinition) {
+        Properties rtn = JDBCUtils.bindParameters(keysDefinition, cleanup.getParameters());
+        rtn.setProperty(LAST_KEY, Long.toString(Long.MIN_VALUE));
+        rtn.setProperty(BATCH_SIZE, Long.toString(batchSize));
+        return rtn;
+    }
+
+    /*
+    Walk the keys to clean, 'batchSize' at a time: read the next keys after the last one and delete
+    exactly those.  A batch that fails is left and the walk carries on after it.
+     */
+    protected void clean(MetastoreCleanup cleanup) throws SQLException {
+        QueryDefinition keysDefinition = getQueryDefinitions().getQueryDefinition(cleanup.getKeysQuery());
+        QueryDefinition deleteDefinition = getQueryDefinitions().getQueryDefinition(cleanup.getDeleteQuery());
+        if (keysDefinition == null || deleteDefinition == null) {
+            throw new RuntimeException("Missing query definition for cleanup: " + cleanup.getName());
+        }
+        if (!deleteDefinition.getStatement().contains(KEYS_VARIABLE)) {
+            throw new RuntimeException("The delete for cleanup '" + cleanup.getName() + "' must list its keys with " +
+                    KEYS_VARIABLE);
+        }
+
+        Properties keysParameters = keysParameters(cleanup, keysDefinition);
+        Properties deleteParameters = JDBCUtils.bindParameters(deleteDefinition, cleanup.getParameters());
+        long start = System.currentTimeMillis();
+        Long firstKey = null;
+        long lastKey = Long.MIN_VALUE;
+        long rows = 0;
+        long batches = 0;
+        long failed = 0;
+        while (!Thread.currentThread().isInterrupted() && !getParent().isCancelled()) {
+            keysParameters.setProperty(LAST_KEY, Long.toString(lastKey));
+            ResultArray keyArray;
+            try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+                keyArray = getParent().getQueryMonitor().executeQuery(conn, keysDefinition, keysParameters);
+            }
+            if (keyArray.getCount() == 0) {
+                break;
+            }
+            long[] keys = new long[(int) keyArray.getCount()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyArray.getLong(KEY_COLUMN, i);
+            }
+            if (keys[keys.length - 1] <= lastKey) {
+                throw new RuntimeException("The keys query for cleanup '" + cleanup.getName() +
+                        "' must return keys after 'last_key', in order.");
+            }
+            if (firstKey == null) {
+                firstKey = keys[0];
+            }
+            lastKey = keys[keys.length - 1];
+            batches++;
+            if (executeDeletes) {
+                int deleted = deleteBatch(cleanup, forKeys(deleteDefinition, keys), deleteParameters);
+                if (deleted < 0) {
+                    failed++;
+                    cleanup.getCounter().incCount(TaskState.ERROR, 1);
+                } else {
+                    rows += deleted;
+                    cleanup.getCounter().incCount(TaskState.SUCCESS, deleted);
+                }
+                pause(throttleDelay(rows, System.currentTimeMillis() - start, rowsPerSecond));
+            } else {
+                rows += keys.length;
+                cleanup.getCounter().incCount(TaskState.SUCCESS, keys.length);
+            }
+            cleanup.getCounter().incCount(TaskState.PROCESSED, 1);
+            if (keys.length < batchSize) {
+                break;
+            }
+        }
+        success.println("| " + cleanup.getName() + " | " + (firstKey != null ? firstKey + " - " + lastKey : "-") +
+                " | " + batches + " | " + rows + " | " + failed + " |");
+    }
+
+    /*
+    The delete, with its '${keys}' replaced by the keys of a batch.  They're numbers we read, so
+    they're safe to put in the statement.
+     */
+    protected static QueryDefinition forKeys(QueryDefinition deleteDefinition, long[] keys) {
+        StringBuilder sb = new StringBuilder();
+        for (long key : keys) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(key);
+        }
+        QueryDefinition rtn = new QueryDefinition();
+        rtn.setStatement(deleteDefinition.getStatement().replace(KEYS_VARIABLE, sb.toString()));
+        rtn.setTimeout(deleteDefinition.getTimeout());
+        rtn.setParameters(deleteDefinition.getParameters());
+        return rtn;
+    }
+
+    /*
+    Delete and commit one batch.  Returns the rows deleted, or -1 when the batch was given up on.
+     */
+    protected int deleteBatch(MetastoreCleanup cleanup, QueryDefinition deleteDefinition, Properties parameters) {
+        int attempt = 0;
+        while (true) {
+            try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    int rows = getParent().getQueryMonitor().executeUpdate(conn, deleteDefinition, parameters);
+                    conn.commit();
+                    return rows;
+                } catch (SQLException se) {
+                    conn.rollback();
+                    throw se;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException se) {
+                if (isLockContention(se) && attempt < maxRetries) {
+                    long delay = backoffDelay(backoffMs, attempt++);
+                    LOG.warn(cleanup.getName() + " batch hit lock contention, retrying in " + delay + "ms: " +
+                            se.getMessage());
+                    pause(delay);
+                } else {
+                    error.println(cleanup.getName() + " > Processing Issue: " + se.getMessage());
+                    error.println(deleteDefinition.getStatement());
+                    return -1;
+                }
+            }
+        }
+    }
+
+    /*
+    Lock wait timeouts and deadlocks, where backing off and retrying is the right thing to do.
+     */
+    protected static boolean isLockContention(SQLException se) {
+        String state = se.getSQLState();
+        if (state != null && (state.startsWith("40") || state.equals("55P03"))) {
+            // Serialization failure, deadlock (ANSI and POSTGRES) and lock not available (POSTGRES).
+            return true;
+        }
+        switch (se.getErrorCode()) {
+            case 1205: // MYSQL lock wait timeout
+            case 1213: // MYSQL deadlock
+            case 54:   // ORACLE resource busy
+            case 60:   // ORACLE deadlock
+            case 30006: // ORACLE resource busy, WAIT timeout
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    protected static long backoffDelay(long backoffMs, int attempt) {
+        return Math.min(MAX_BACKOFF_MS, backoffMs << Math.min(attempt, 16));
+    }
+
+    /*
+    How long to wait so 'deleted' rows over 'elapsedMs' doesn't exceed 'rowsPerSecond'.
+     */
+    protected static long throttleDelay(long deleted, long elapsedMs, int rowsPerSecond) {
+        if (rowsPerSecond <= 0) {
+            return 0;
+        }
+        return Math.max(0, deleted * 1000 / rowsPerSecond - elapsedMs);
+    }
+
+    private static void pause(long ms) {
+        if (ms > 0) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MetastoreCleanupProcess{}";
+    }
+}
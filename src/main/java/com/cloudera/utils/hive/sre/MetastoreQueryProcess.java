@@ -17,7 +17,6 @@
 package com.cloudera.utils.hive.sre;
 
 import com.cloudera.utils.hive.reporting.ReportingConf;
-import com.cloudera.utils.sql.JDBCUtils;
 import com.cloudera.utils.sql.Parameter;
 import com.cloudera.utils.sql.QueryDefinition;
 import com.cloudera.utils.sql.ResultArray;
@@ -25,9 +24,9 @@ import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class MetastoreQueryProcess extends MetastoreProcess {
@@ -51,26 +50,26 @@ public class MetastoreQueryProcess extends MetastoreProcess {
         return "done";
     }
 
+    @Override
+    public List<String> listQueries() {
+        return Collections.singletonList(getMetastoreQueryDefinition().getQuery());
+    }
+
     @Override
     public Boolean testSQLScript() {
         Boolean rtn = Boolean.TRUE;
 
         String targetQueryDef = this.getMetastoreQueryDefinition().getQuery();
-        try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+        try (Connection conn = getParent().getConnectionPools().getMetastoreReadConnection()) {
             // build prepared statement for targetQueryDef
             LOG.info("Testing Complete for SQL Definition: " + targetQueryDef);
             QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
             LOG.info("Testing SQL: " + queryDefinition.getStatement());
-            PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
             // apply any overrides from the user configuration.
             Map<String, Parameter> queryOverrides = metastoreQueryDefinition.getParameters();
-            JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, queryOverrides);
-            // Run
-            ResultSet check = preparedStatement.executeQuery();
-            // Convert Result to an array
-            ResultArray rarray = new ResultArray(check);
-            // Close ResultSet
-            check.close();
+            // Only the SQL is being tested, so a single row is enough.
+            ResultArray rarray = getParent().getQueryMonitor().executeQuery(conn,
+                    getSqlDialect().limit(queryDefinition, 1), queryOverrides);
             // build array of columns
         } catch (SQLException e) {
             rtn = Boolean.FALSE;
@@ -89,22 +88,17 @@ public class MetastoreQueryProcess extends MetastoreProcess {
         String[][] metastoreRecords = null;
 //        this.setTotalCount(1);
         LOG.info(this.getDisplayName());
-        try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+        try {
             String targetQueryDef = this.getMetastoreQueryDefinition().getQuery();
             LOG.info("Query Definition: " + targetQueryDef);
             // build prepared statement for targetQueryDef
             QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
             LOG.info("Query Statement: " + queryDefinition.getStatement());
-            PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
             // apply any overrides from the user configuration.
             Map<String, Parameter> queryOverrides = this.getMetastoreQueryDefinition().getParameters();
-            JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, queryOverrides);
-            // Run
-            ResultSet check = preparedStatement.executeQuery();
-            // Convert Result to an array
-            ResultArray rarray = new ResultArray(check);
-            // Close ResultSet
-            check.close();
+            // Run and convert to an array, or pick up the results of another process running the same query.
+            ResultArray rarray = getParent().getQueryResultCache().executeQuery(getDbType(), targetQueryDef,
+                    queryDefinition, queryOverrides);
             // build array of columns
             metastoreRecords = rarray.getColumns(getMetastoreQueryDefinition().getListingColumns());
         } catch (SQLException e) {
@@ -21,7 +21,6 @@ import com.cloudera.utils.hive.config.HiveStrictManagedMigrationIncludeListConfi
 import com.cloudera.utils.hive.reporting.CounterGroup;
 import com.cloudera.utils.hive.reporting.ReportingConf;
 import com.cloudera.utils.hive.reporting.TaskState;
-import com.cloudera.utils.sql.JDBCUtils;
 import com.cloudera.utils.sql.Parameter;
 import com.cloudera.utils.sql.QueryDefinition;
 import com.cloudera.utils.sql.ResultArray;
@@ -31,18 +30,22 @@ import org.apache.log4j.Logger;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.PrintStream;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MetastoreReportProcess extends MetastoreProcess {
     private static Logger LOG = LogManager.getLogger(MetastoreReportProcess.class);
 
     private List<MetastoreQuery> metastoreQueryDefinitions = new ArrayList<MetastoreQuery>();
-    private ScriptEngine scriptEngine = null;
 
     @Override
     public void init(ProcessContainer parent) throws FileNotFoundException {
@@ -69,6 +72,15 @@ public class MetastoreReportProcess extends MetastoreProcess {
         return "done";
     }
 
+    @Override
+    public List<String> listQueries() {
+        List<String> rtn = new ArrayList<String>();
+        for (MetastoreQuery metastoreQueryDefinition : getMetastoreQueryDefinitions()) {
+            rtn.add(metastoreQueryDefinition.getQuery());
+        }
+        return rtn;
+    }
+
     @Override
     public Boolean testSQLScript() {
         Boolean rtn = Boolean.TRUE;
@@ -76,21 +88,16 @@ public class MetastoreReportProcess extends MetastoreProcess {
         for (MetastoreQuery metastoreQueryDefinition: getMetastoreQueryDefinitions()) {
             String[][] metastoreRecords = null;
             String targetQueryDef = metastoreQueryDefinition.getQuery();
-            try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
+            try (Connection conn = getParent().getConnectionPools().getMetastoreReadConnection()) {
                 LOG.info("Testing SQL Definition: " + targetQueryDef);
                 // build prepared statement for targetQueryDef
                 QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
                 LOG.info("Testing SQL: " + queryDefinition.getStatement());
-                PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
                 // apply any overrides from the user configuration.
                 Map<String, Parameter> queryOverrides = metastoreQueryDefinition.getParameters();
-                JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, queryOverrides);
-                // Run
-                ResultSet rCheck = preparedStatement.executeQuery();
-                // Convert Result to an array
-                ResultArray rarray = new ResultArray(rCheck);
-                // Close ResultSet
-                rCheck.close();
+                // Only the SQL is being tested, so a single row is enough.
+                ResultArray rarray = getParent().getQueryMonitor().executeQuery(conn,
+                        getSqlDialect().limit(queryDefinition, 1), queryOverrides);
                 // build array of columns
                 String[] columns = metastoreQueryDefinition.getListingColumns();
 
@@ -117,9 +124,6 @@ public class MetastoreReportProcess extends MetastoreProcess {
     }
 
     public void doIt() {
-        ScriptEngineManager sem = new ScriptEngineManager();
-        scriptEngine = sem.getEngineByName("nashorn");
-
         success.println(ReportingConf.substituteVariables(getTitle()));
 
         if (getNote() != null)
@@ -129,138 +133,192 @@ public class MetastoreReportProcess extends MetastoreProcess {
             success.println(getHeader());
         LOG.info(this.getDisplayName());
 //        this.setTotalCount(getMetastoreQueryDefinitions().size());
-        for (MetastoreQuery metastoreQueryDefinition: getMetastoreQueryDefinitions()) {
-            String[][] metastoreRecords = null;
-            try (Connection conn = getParent().getConnectionPools().getMetastoreDirectConnection()) {
-                String targetQueryDef = metastoreQueryDefinition.getQuery();
-                LOG.info("Query Definition: " + targetQueryDef);
-                // build prepared statement for targetQueryDef
-                QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
-                LOG.info("Query Statement: " + queryDefinition.getStatement());
-                PreparedStatement preparedStatement = JDBCUtils.getPreparedStatement(conn, queryDefinition);
-                // apply any overrides from the user configuration.
-                Map<String, Parameter> queryOverrides = metastoreQueryDefinition.getParameters();
-                JDBCUtils.setPreparedStatementParameters(preparedStatement, queryDefinition, queryOverrides);
-                // Run
-                ResultSet rCheck = preparedStatement.executeQuery();
-                // Convert Result to an array
-                ResultArray rarray = new ResultArray(rCheck);
-                // Close ResultSet
-                rCheck.close();
-                // build array of columns
-                String[] columns = metastoreQueryDefinition.getListingColumns();
+        // Start all the queries, then write their results in the order they were configured.  They get their
+        // own pool, the task pool is queued up with the dbSet path scans.
+        ExecutorService reportPool = newReportPool(getMetastoreQueryDefinitions().size());
+        try {
+            List<Future<ReportSection>> sections = new ArrayList<Future<ReportSection>>();
+            for (final MetastoreQuery metastoreQueryDefinition : getMetastoreQueryDefinitions()) {
+                sections.add(reportPool.submit(new Callable<ReportSection>() {
+                    @Override
+                    public ReportSection call() throws Exception {
+                        ReportSection section = new ReportSection();
+                        reportQuery(metastoreQueryDefinition, section.out, section.err);
+                        return section;
+                    }
+                }));
+            }
+            for (Future<ReportSection> section : sections) {
+                try {
+                    section.get().writeTo(success, error);
+                } catch (InterruptedException | ExecutionException e) {
+                    counterGroup.addAndGetTaskState(TaskState.ERROR, 1);
+                    error.println("> Processing Issue: " + e.getMessage());
+                    e.printStackTrace(error);
+                }
+            }
+        } finally {
+            reportPool.shutdownNow();
+        }
+        setInitializing(Boolean.FALSE);
+    }
 
-                metastoreRecords = rarray.getColumns(metastoreQueryDefinition.getListingColumns());
 
-                if (metastoreRecords != null && metastoreRecords[0] != null && metastoreRecords[0].length > 0) {
-                    if (metastoreQueryDefinition.getResultMessageHeader() != null) {
-                        success.println(metastoreQueryDefinition.getResultMessageHeader());
-                    }
-                    if (metastoreQueryDefinition.getResultMessageDetailHeader() != null) {
-                        success.println(metastoreQueryDefinition.getResultMessageDetailHeader());
-                    }
+    /*
+    A pool for the queries of this report, no bigger than the 'parallelism'.
+     */
+    protected ExecutorService newReportPool(int queries) {
+        int threads = Math.max(1, Math.min(queries, getParent().getConfig().getParallelism()));
+        return Executors.newFixedThreadPool(threads);
+    }
 
-                    Integer[] hsmmElementLoc = null;
-                    HiveStrictManagedMigrationElements hsmmElements = metastoreQueryDefinition.getHsmmElements();
-                    // If we found an hsmmelement attribute, populate the location parts
-                    // so we can add the reference for the hsmm processing config.
-                    if (hsmmElements != null) {
-                        hsmmElementLoc = new Integer[2];
-                        // Align the locations in the array with the names
-                        for (int i = 0;i < columns.length;i++) {
-                            if (columns[i].equals(hsmmElements.getDatabaseField())) {
-                                hsmmElementLoc[0] = i;
-                            }
-                            if (columns[i].equals(hsmmElements.getTableField())) {
-                                hsmmElementLoc[1] = i;
-                            }
+    /*
+    Run one of the report queries and write its section of the report to 'out'.  Runs on the report's
+    pool, alongside the other queries of the report.
+     */
+    protected void reportQuery(MetastoreQuery metastoreQueryDefinition, PrintStream out, PrintStream err) {
+        // Each query gets its own engine, the queries are evaluated on separate threads.
+        ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByName("nashorn");
+        String[][] metastoreRecords = null;
+        try {
+            String targetQueryDef = metastoreQueryDefinition.getQuery();
+            LOG.info("Query Definition: " + targetQueryDef);
+            // build prepared statement for targetQueryDef
+            QueryDefinition queryDefinition = getQueryDefinitions().getQueryDefinition(targetQueryDef);
+            LOG.info("Query Statement: " + queryDefinition.getStatement());
+            // apply any overrides from the user configuration.
+            Map<String, Parameter> queryOverrides = metastoreQueryDefinition.getParameters();
+            // Run and convert to an array, or pick up the results of another process running the same query.
+            ResultArray rarray = getParent().getQueryResultCache().executeQuery(getDbType(), targetQueryDef,
+                    queryDefinition, queryOverrides);
+            // build array of columns
+            String[] columns = metastoreQueryDefinition.getListingColumns();
+
+            metastoreRecords = rarray.getColumns(metastoreQueryDefinition.getListingColumns());
+
+            if (metastoreRecords != null && metastoreRecords[0] != null && metastoreRecords[0].length > 0) {
+                if (metastoreQueryDefinition.getResultMessageHeader() != null) {
+                    out.println(metastoreQueryDefinition.getResultMessageHeader());
+                }
+                if (metastoreQueryDefinition.getResultMessageDetailHeader() != null) {
+                    out.println(metastoreQueryDefinition.getResultMessageDetailHeader());
+                }
+
+                Integer[] hsmmElementLoc = null;
+                HiveStrictManagedMigrationElements hsmmElements = metastoreQueryDefinition.getHsmmElements();
+                // If we found an hsmmelement attribute, populate the location parts
+                // so we can add the reference for the hsmm processing config.
+                if (hsmmElements != null) {
+                    hsmmElementLoc = new Integer[2];
+                    // Align the locations in the array with the names
+                    for (int i = 0;i < columns.length;i++) {
+                        if (columns[i].equals(hsmmElements.getDatabaseField())) {
+                            hsmmElementLoc[0] = i;
                         }
-                        // If we didn't find both, then set to null.
-                        if (hsmmElementLoc[0] == null || hsmmElementLoc[1] == null) {
-                            // TODO: Need to throw config exception in this condition.
-                            hsmmElementLoc = null;
+                        if (columns[i].equals(hsmmElements.getTableField())) {
+                            hsmmElementLoc[1] = i;
                         }
                     }
+                    // If we didn't find both, then set to null.
+                    if (hsmmElementLoc[0] == null || hsmmElementLoc[1] == null) {
+                        // TODO: Need to throw config exception in this condition.
+                        hsmmElementLoc = null;
+                    }
+                }
 
 //                    setTotalCount(metastoreRecords[0].length);
-                    for (int i = 0; i < metastoreRecords[0].length; i++) {
+                for (int i = 0; i < metastoreRecords[0].length; i++) {
 //                    incSuccess(1);
-                        String[] record = new String[metastoreQueryDefinition.getListingColumns().length];
-                        for (int j = 0; j < metastoreQueryDefinition.getListingColumns().length; j++) {
-                            record[j] = metastoreRecords[j][i];
+                    String[] record = new String[metastoreQueryDefinition.getListingColumns().length];
+                    for (int j = 0; j < metastoreQueryDefinition.getListingColumns().length; j++) {
+                        record[j] = metastoreRecords[j][i];
 //                        serdeRecords[0][i], serdeRecords[1][i], serdeRecords[2][i]
-                        }
+                    }
 
-                        if (hsmmElementLoc != null) {
-                            // When defined, add elements to hsmm.
-                            HiveStrictManagedMigrationIncludeListConfig hsmmwcfg =
-                                    HiveStrictManagedMigrationIncludeListConfig.getInstance();
-                            hsmmwcfg.addTable(record[hsmmElementLoc[0]], record[hsmmElementLoc[1]]);
-                        }
+                    if (hsmmElementLoc != null) {
+                        // When defined, add elements to hsmm.
+                        HiveStrictManagedMigrationIncludeListConfig hsmmwcfg =
+                                HiveStrictManagedMigrationIncludeListConfig.getInstance();
+                        hsmmwcfg.addTable(record[hsmmElementLoc[0]], record[hsmmElementLoc[1]]);
+                    }
 
-                        // Use the Check OR the Result Message Template
-                        if (metastoreQueryDefinition.getCheck() != null && metastoreQueryDefinition.getCheck().getTest() != null) {
-                            // Params
-                            List combined = new LinkedList(Arrays.asList(record));
-                            // Configured Params
-                            if (metastoreQueryDefinition.getCheck().getParams() != null)
-                                combined.addAll(Arrays.asList(metastoreQueryDefinition.getCheck().getParams()));
-                            try {
-                                String testStr = String.format(metastoreQueryDefinition.getCheck().getTest(), combined.toArray());
-                                Boolean checkTest = null;
-                                checkTest = (Boolean) scriptEngine.eval(testStr);
-                                if (checkTest) {
-                                    if (metastoreQueryDefinition.getCheck().getPass() != null) {
-                                        String passStr = String.format(metastoreQueryDefinition.getCheck().getPass(), combined.toArray());
-                                        String passResult = (String) scriptEngine.eval(passStr);
-                                        success.println(passResult);
+                    // Use the Check OR the Result Message Template
+                    if (metastoreQueryDefinition.getCheck() != null && metastoreQueryDefinition.getCheck().getTest() != null) {
+                        // Params
+                        List combined = new LinkedList(Arrays.asList(record));
+                        // Configured Params
+                        if (metastoreQueryDefinition.getCheck().getParams() != null)
+                            combined.addAll(Arrays.asList(metastoreQueryDefinition.getCheck().getParams()));
+                        try {
+                            String testStr = String.format(metastoreQueryDefinition.getCheck().getTest(), combined.toArray());
+                            Boolean checkTest = null;
+                            checkTest = (Boolean) scriptEngine.eval(testStr);
+                            if (checkTest) {
+                                if (metastoreQueryDefinition.getCheck().getPass() != null) {
+                                    String passStr = String.format(metastoreQueryDefinition.getCheck().getPass(), combined.toArray());
+                                    String passResult = (String) scriptEngine.eval(passStr);
+                                    out.println(passResult);
 //                                        sb.append(passResult).append("\n");
-                                    }
+                                }
 
-                                } else {
-                                    if (metastoreQueryDefinition.getCheck().getFail() != null) {
-                                        String failStr = String.format(metastoreQueryDefinition.getCheck().getFail(), combined.toArray());
-                                        String failResult = (String) scriptEngine.eval(failStr);
-                                        success.println(failResult);
+                            } else {
+                                if (metastoreQueryDefinition.getCheck().getFail() != null) {
+                                    String failStr = String.format(metastoreQueryDefinition.getCheck().getFail(), combined.toArray());
+                                    String failResult = (String) scriptEngine.eval(failStr);
+                                    out.println(failResult);
 //                                        sb.append(failResult).append("\n");
-                                    }
                                 }
-                            } catch (ScriptException e) {
-                                e.printStackTrace();
-                                System.err.println("Issue with script eval: " + this.getDisplayName());
-                            } catch (MissingFormatArgumentException mfa) {
-                                mfa.printStackTrace();
-                                System.err.println("Bad Argument Match up for PATH check rule: " + this.getDisplayName());
-                            }
-                        } else {
-                            if (metastoreQueryDefinition.getResultMessageDetailTemplate() != null) {
-                                String message = String.format(metastoreQueryDefinition.getResultMessageDetailTemplate(), record);
-                                success.println(message);
                             }
+                        } catch (ScriptException e) {
+                            e.printStackTrace();
+                            System.err.println("Issue with script eval: " + this.getDisplayName());
+                        } catch (MissingFormatArgumentException mfa) {
+                            mfa.printStackTrace();
+                            System.err.println("Bad Argument Match up for PATH check rule: " + this.getDisplayName());
+                        }
+                    } else {
+                        if (metastoreQueryDefinition.getResultMessageDetailTemplate() != null) {
+                            String message = String.format(metastoreQueryDefinition.getResultMessageDetailTemplate(), record);
+                            out.println(message);
                         }
                     }
-                } else {
-                    if (metastoreQueryDefinition.getResultMessageHeader() != null) {
-                        success.println(metastoreQueryDefinition.getResultMessageHeader());
-                    }
-                    success.println("\n> **Results empty**\n");
                 }
-                counterGroup.addAndGetTaskState(TaskState.PROCESSED, 1);
-            } catch (SQLException e) {
-                counterGroup.addAndGetTaskState(TaskState.ERROR, 1);
-                error.println(metastoreQueryDefinition.getQuery());
-                error.println("> Processing Issue: " + e.getMessage());
-                e.printStackTrace(error);
-            } catch (RuntimeException rte) {
-                counterGroup.addAndGetTaskState(TaskState.ERROR, 1);
-                error.println(metastoreQueryDefinition.getQuery());
-                error.println("> Processing Issue: " + rte.getMessage());
-                rte.printStackTrace(error);
+            } else {
+                if (metastoreQueryDefinition.getResultMessageHeader() != null) {
+                    out.println(metastoreQueryDefinition.getResultMessageHeader());
+                }
+                out.println("\n> **Results empty**\n");
             }
+            counterGroup.addAndGetTaskState(TaskState.PROCESSED, 1);
+        } catch (SQLException e) {
+            counterGroup.addAndGetTaskState(TaskState.ERROR, 1);
+            err.println(metastoreQueryDefinition.getQuery());
+            err.println("> Processing Issue: " + e.getMessage());
+            e.printStackTrace(err);
+        } catch (RuntimeException rte) {
+            counterGroup.addAndGetTaskState(TaskState.ERROR, 1);
+            err.println(metastoreQueryDefinition.getQuery());
+            err.println("> Processing Issue: " + rte.getMessage());
+            rte.printStackTrace(err);
         }
-        setInitializing(Boolean.FALSE);
     }
 
+    /*
+    The buffered output of one report query.
+     */
+    protected static class ReportSection {
+        private final ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+        private final PrintStream out = new PrintStream(outBuffer);
+        private final PrintStream err = new PrintStream(errBuffer);
+
+        protected void writeTo(PrintStream success, PrintStream error) {
+            out.flush();
+            err.flush();
+            success.print(outBuffer.toString());
+            error.print(errBuffer.toString());
+        }
+    }
 
     public List<MetastoreQuery> getMetastoreQueryDefinitions() {
         return metastoreQueryDefinitions;
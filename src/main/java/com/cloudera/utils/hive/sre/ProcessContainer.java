@@ -19,6 +19,8 @@ package com.cloudera.utils.hive.sre;
 import com.cloudera.utils.hive.config.Metastore;
 import com.cloudera.utils.hive.config.SreProcessesConfig;
 import com.cloudera.utils.hive.reporting.Reporter;
+import com.cloudera.utils.sql.QueryDefinition;
+import com.cloudera.utils.sql.QueryMonitor;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -39,18 +41,23 @@ import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 /*
 The 'ProcessContainer' is the definition and runtime structure
  */
 @JsonIgnoreProperties({"config", "reporter", "taskThreadPool", "procThreadPool", "processThreads", "cliPool",
-        "connectionPools", "outputDirectory", "dbsOverride", "includeFilter", "excludeFilter", "testSQL"})
+        "connectionPools", "queryResultCache", "queryMonitor", "cancelled", "outputDirectory", "dbsOverride", "includeFilter", "excludeFilter", "testSQL"})
 public class ProcessContainer implements Runnable {
     private static Logger LOG = LogManager.getLogger(ProcessContainer.class);
 
+    public static final String SLOW_QUERY_LOG = "slow_queries.txt";
+
     private boolean initializing = Boolean.TRUE;
     private SreProcessesConfig config;
     private Reporter reporter;
@@ -62,6 +69,9 @@ public class ProcessContainer implements Runnable {
 
     private List<Future<String>> processThreads;
     private ConnectionPools connectionPools;
+    private QueryResultCache queryResultCache;
+    private QueryMonitor queryMonitor;
+    private Thread cancelHook;
     private String outputDirectory;
     private List<Integer> includes = new ArrayList<Integer>();
 
@@ -132,6 +142,43 @@ public class ProcessContainer implements Runnable {
         this.connectionPools = connectionPools;
     }
 
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    public QueryMonitor getQueryMonitor() {
+        return queryMonitor;
+    }
+
+    public void setQueryMonitor(QueryMonitor queryMonitor) {
+        this.queryMonitor = queryMonitor;
+    }
+
+    public boolean isCancelled() {
+        return queryMonitor != null && queryMonitor.isCancelled();
+    }
+
+    /*
+    Stop the run.  Running metastore queries are cancelled, queued tasks are dropped and the
+    processes stop at their next check of 'isCancelled'.
+     */
+    public void cancel() {
+        LOG.warn("Cancelling the running processes.");
+        if (queryMonitor != null) {
+            queryMonitor.cancel();
+        }
+        if (getTaskThreadPool() != null) {
+            getTaskThreadPool().shutdownNow();
+        }
+        if (getProcThreadPool() != null) {
+            getProcThreadPool().shutdownNow();
+        }
+    }
+
     public String getOutputDirectory() {
         return outputDirectory;
     }
@@ -222,6 +269,27 @@ public class ProcessContainer implements Runnable {
                 break;
             }
         }
+        if (getConnectionPools() != null) {
+            LOG.info("Metastore connection pool (active,idle,max - waiting,borrowed,mean wait ms,max wait ms): " +
+                    getConnectionPools().getMetastoreDirectPoolStatus());
+        }
+        if (getQueryResultCache() != null) {
+            getQueryResultCache().close();
+        }
+        if (getQueryMonitor() != null) {
+            if (getQueryMonitor().getSlowQueryCount() > 0) {
+                LOG.warn(getQueryMonitor().getSlowQueryCount() + " slow metastore queries.  See: " +
+                        new File(getOutputDirectory(), SLOW_QUERY_LOG));
+            }
+            getQueryMonitor().close();
+        }
+        if (cancelHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(cancelHook);
+            } catch (IllegalStateException ise) {
+                // Already shutting down.
+            }
+        }
         LOG.info("Shutting down Thread Pool.");
         getTaskThreadPool().shutdown();
         getProcThreadPool().shutdown();
@@ -306,6 +374,7 @@ public class ProcessContainer implements Runnable {
             SreProcessesConfig sreConfig = mapper.readerFor(SreProcessesConfig.class).readValue(yamlCfgFile);
             sreConfig.validate();
             setConfig(sreConfig);
+            validateChecks();
 
         } catch (
                 IOException e) {
@@ -317,10 +386,58 @@ public class ProcessContainer implements Runnable {
         return jobRunDir;
     }
 
+    /*
+    Checks within a dbSet that share a 'pathCommand' are fused at runtime.  Separate dbSets over the
+    same listing can't be, so warn when the same command would be issued by more than one of them.
+     */
+    protected void validateChecks() {
+        Map<String, List<String>> commandSets = new LinkedHashMap<String, List<String>>();
+        for (SreProcessBase process : getProcesses()) {
+            if (!process.isActive() || !(process instanceof DbSetProcess))
+                continue;
+            DbSetProcess dbSet = (DbSetProcess) process;
+            for (FusedCheck fusedCheck : FusedCheck.fuse(dbSet.getCommandChecks())) {
+                if (fusedCheck.getPathCommand() == null)
+                    continue;
+                String key = dbSet.getPathsListingQuery() + ":" + Arrays.toString(dbSet.getListingColumns()) +
+                        ":" + fusedCheck.getPathCommand();
+                List<String> dbSets = commandSets.get(key);
+                if (dbSets == null) {
+                    dbSets = new ArrayList<String>();
+                    commandSets.put(key, dbSets);
+                }
+                dbSets.add(dbSet.getDisplayName());
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (List<String> dbSets : commandSets.values()) {
+            if (dbSets.size() > 1) {
+                if (sb.length() > 0)
+                    sb.append("; ");
+                sb.append(dbSets);
+            }
+        }
+        if (sb.length() > 0) {
+            LOG.warn("Fusable checks: " + sb.toString());
+            getConfig().getWarnings().set(MessageCode.FUSABLE_CHECKS.getCode(), sb.toString());
+        }
+    }
+
     protected void initResources() {
         try {
             this.connectionPools = new ConnectionPools(getConfig());
             this.connectionPools.init();
+            this.queryMonitor = new QueryMonitor(getConfig().getQueryTimeout(), getConfig().getSlowQueryThreshold(),
+                    new File(getOutputDirectory(), SLOW_QUERY_LOG));
+            this.queryResultCache = new QueryResultCache(this.connectionPools, this.queryMonitor, getOutputDirectory());
+            // On an interrupt, don't leave long running queries behind on the metastore.
+            cancelHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    cancel();
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(cancelHook);
 
             GenericObjectPoolConfig<HadoopSession> hspCfg = new GenericObjectPoolConfig<HadoopSession>();
             hspCfg.setMaxTotal(getConfig().getParallelism() * 2);
@@ -331,6 +448,7 @@ public class ProcessContainer implements Runnable {
             // Needs to be added first, so it runs the reporter thread.
             reporterThread = new Thread(getReporter());
 
+            List<SreProcessBase> initialized = new ArrayList<SreProcessBase>();
             for (SreProcessBase process : getProcesses()) {
                 if (process.isActive()) {
                     setFilter(process);
@@ -358,11 +476,16 @@ public class ProcessContainer implements Runnable {
                     process.setParent(this);
                     process.setOutputDirectory(getOutputDirectory());
                     process.init(this);
-                    if (testSQL) {
-                        process.testSQLScript();
-                    } else {
-                        getProcThreadPool().submit(process);
-                    }
+                    registerQueries(process);
+                    initialized.add(process);
+                }
+            }
+            // Start them once they're all registered, so the shared queries are known up front.
+            for (SreProcessBase process : initialized) {
+                if (testSQL) {
+                    process.testSQLScript();
+                } else {
+                    getProcThreadPool().submit(process);
                 }
             }
             if (!isTestSQL()) {
@@ -374,6 +497,20 @@ public class ProcessContainer implements Runnable {
         }
     }
 
+    /*
+    Let the result cache know which statements the process will run.
+     */
+    protected void registerQueries(SreProcessBase process) {
+        for (String queryName : process.listQueries()) {
+            if (queryName == null)
+                continue;
+            QueryDefinition queryDefinition = process.getEffectiveQueryDefinition(queryName);
+            if (queryDefinition != null) {
+                getQueryResultCache().register(queryDefinition.getStatement());
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "ProcessContainer{}";
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.config.Metastore;
+import com.cloudera.utils.sql.JDBCUtils;
+import com.cloudera.utils.sql.Parameter;
+import com.cloudera.utils.sql.QueryDefinition;
+import com.cloudera.utils.sql.QueryMonitor;
+import com.cloudera.utils.sql.ResultArray;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Run scoped cache of metastore query results.  Processes that run the same statement with the same
+bound parameters share a single trip to the metastore RDBMS.  Only statements that more than one
+process registered are cached, the rest go straight through.  Big results are spilled to disk under
+the run's output directory and read back for each caller.
+
+Each process that registered a statement is expected to read each of its results once, unless it has
+since 'limit'ed the databases (routing keys) it will run the statement for.  After the last expected
+reader has, the entry is dropped: its cells are given back to the in-memory budget and its spill file
+is deleted.  A late reader just runs the query again.
+ */
+public class QueryResultCache {
+    private static Logger LOG = LogManager.getLogger(QueryResultCache.class);
+
+    // Results with more cells (rows x columns) than this go to disk.
+    protected static final long SPILL_CELLS = 250000;
+    // The most cells held in memory across all the entries.  Anything after is spilled.
+    protected static final long MAX_MEMORY_CELLS = 2000000;
+
+    private final ConnectionPools connectionPools;
+    private final QueryMonitor queryMonitor;
+    private final File spillDirectory;
+
+    private final ConcurrentMap<String, AtomicInteger> statementUses = new ConcurrentHashMap<String, AtomicInteger>();
+    // For each statement, the routing keys of each registered process that limited itself to them.
+    private final ConcurrentMap<String, List<Set<String>>> statementLimits = new ConcurrentHashMap<String, List<Set<String>>>();
+    private final ConcurrentMap<String, FutureTask<Entry>> entries = new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+    private final AtomicLong memoryCells = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public QueryResultCache(ConnectionPools connectionPools, QueryMonitor queryMonitor, String outputDirectory) {
+        this.connectionPools = connectionPools;
+        this.queryMonitor = queryMonitor;
+        this.spillDirectory = new File(outputDirectory, ".query_cache");
+    }
+
+    /*
+    Record that a process will run 'statement'.
+     */
+    public void register(String statement) {
+        if (statement == null)
+            return;
+        AtomicInteger uses = statementUses.get(statement);
+        if (uses == null) {
+            uses = new AtomicInteger(0);
+            AtomicInteger current = statementUses.putIfAbsent(statement, uses);
+            if (current != null)
+                uses = current;
+        }
+        uses.incrementAndGet();
+    }
+
+    /*
+    Record that one of the processes that registered 'statement' will only run it for these routing keys
+    (its databases).  Until it does, it's expected to read every result.  The results it won't read, and
+    the others have, are dropped now.
+     */
+    public void limit(String statement, Collection<String> routingKeys) {
+        if (statement == null)
+            return;
+        List<Set<String>> limits = statementLimits.get(statement);
+        if (limits == null) {
+            limits = new CopyOnWriteArrayList<Set<String>>();
+            List<Set<String>> current = statementLimits.putIfAbsent(statement, limits);
+            if (current != null)
+                limits = current;
+        }
+        limits.add(new HashSet<String>(routingKeys));
+        for (Map.Entry<String, FutureTask<Entry>> cached : entries.entrySet()) {
+            FutureTask<Entry> task = cached.getValue();
+            if (!task.isDone())
+                continue;
+            try {
+                Entry entry = task.get();
+                if (statement.equals(entry.statement) &&
+                        entry.reads.get() >= getReaders(statement, entry.routingKey)) {
+                    evict(cached.getKey(), task, entry);
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                // Nothing was stored.
+            }
+        }
+    }
+
+    public boolean isShared(String statement) {
+        return getReaders(statement) > 1;
+    }
+
+    /*
+    The processes that registered 'statement', so the reads expected for each of its results.
+     */
+    protected int getReaders(String statement) {
+        return getReaders(statement, null);
+    }
+
+    /*
+    The reads expected for the result of 'statement' for 'routingKey', leaving out the processes that
+    limited themselves to other routing keys.
+     */
+    protected int getReaders(String statement, String routingKey) {
+        AtomicInteger uses = statement != null ? statementUses.get(statement) : null;
+        int rtn = uses != null ? uses.get() : 0;
+        List<Set<String>> limits = routingKey != null ? statementLimits.get(statement) : null;
+        if (limits != null) {
+            for (Set<String> keys : limits) {
+                if (!keys.contains(routingKey)) {
+                    rtn--;
+                }
+            }
+        }
+        return rtn;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getMemoryCells() {
+        return memoryCells.get();
+    }
+
+    protected int getEntryCount() {
+        return entries.size();
+    }
+
+    public ResultArray executeQuery(Metastore.DB_TYPE dbType, String queryName, QueryDefinition query,
+                                    Map<String, Parameter> overrides) throws SQLException {
+        return executeQuery(dbType, queryName, query, JDBCUtils.bindParameters(query, overrides));
+    }
+
+    public ResultArray executeQuery(Metastore.DB_TYPE dbType, String queryName, QueryDefinition query,
+                                    Properties overrides) throws SQLException {
+        return executeQuery(dbType, queryName, query, overrides, null);
+    }
+
+    /*
+    The results of 'query' with the 'overrides' applied.  The caller owns the returned ResultArray and
+    may filter it.  The query runs on a read replica when there are any, picked by 'routingKey' when set.
+     */
+    public ResultArray executeQuery(Metastore.DB_TYPE dbType, String queryName, final QueryDefinition query,
+                                    final Properties overrides, final String routingKey) throws SQLException {
+        if (getReaders(query.getStatement(), routingKey) <= 1) {
+            return load(query, overrides, routingKey);
+        }
+        String key = getKey(dbType, queryName, query, overrides);
+        FutureTask<Entry> task = entries.get(key);
+        boolean loader = false;
+        if (task == null) {
+            FutureTask<Entry> newTask = new FutureTask<Entry>(new Callable<Entry>() {
+                @Override
+                public Entry call() throws Exception {
+                    return store(load(query, overrides, routingKey), query.getStatement(), routingKey);
+                }
+            });
+            task = entries.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                loader = true;
+                // The first caller runs the query, the others wait on its result.
+                task.run();
+            }
+        }
+        (loader ? misses : hits).incrementAndGet();
+        try {
+            Entry entry = task.get();
+            ResultArray rtn = entry.read();
+            if (rtn == null) {
+                // Evicted while we waited on it, more reads than registered.
+                return executeQuery(dbType, queryName, query, overrides, routingKey);
+            }
+            if (entry.reads.incrementAndGet() >= getReaders(query.getStatement(), routingKey)) {
+                evict(key, task, entry);
+            }
+            return rtn;
+        } catch (ExecutionException e) {
+            // Don't hold on to the failure, the next caller tries again.
+            entries.remove(key, task);
+            if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            throw new SQLException("Issue running query: " + queryName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for query: " + queryName, e);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SQLException("Issue reading the cached results for query: " + queryName, e);
+        }
+    }
+
+    protected ResultArray load(QueryDefinition query, Properties overrides, String routingKey) throws SQLException {
+        try (Connection conn = connectionPools.getMetastoreReadConnection(routingKey)) {
+            return queryMonitor.executeQuery(conn, query, overrides);
+        }
+    }
+
+    private void evict(String key, FutureTask<Entry> task, Entry entry) {
+        if (entries.remove(key, task)) {
+            release(entry);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.release()) {
+            if (entry.file != null) {
+                entry.file.delete();
+            } else {
+                memoryCells.addAndGet(-entry.cells);
+            }
+        }
+    }
+
+    protected long getSpillCells() {
+        return SPILL_CELLS;
+    }
+
+    protected static String getKey(Metastore.DB_TYPE dbType, String queryName, QueryDefinition query,
+                                   Properties overrides) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(dbType).append('|').append(queryName).append('|');
+        // Sorted, so the key doesn't depend on the order the parameters were bound in.
+        sb.append(new TreeMap<Object, Object>(overrides)).append('|');
+        sb.append(query.getStatement());
+        return sb.toString();
+    }
+
+    private Entry store(ResultArray results, String statement, String routingKey) throws IOException {
+        long cells = results.getCount() * results.getColumnCount();
+        if (cells <= getSpillCells() && memoryCells.addAndGet(cells) <= MAX_MEMORY_CELLS) {
+            return new Entry(results, null, cells, statement, routingKey);
+        }
+        if (cells <= getSpillCells()) {
+            memoryCells.addAndGet(-cells);
+        }
+        spillDirectory.mkdirs();
+        File file = File.createTempFile("query", ".ser", spillDirectory);
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(results);
+        }
+        LOG.info("Spilled " + results.getCount() + " query results to: " + file.getPath());
+        return new Entry(null, file, cells, statement, routingKey);
+    }
+
+    /*
+    Remove the spilled results.
+     */
+    public void close() {
+        LOG.info("Query result cache: " + hits.get() + " hits, " + misses.get() + " misses, " +
+                evictions.get() + " evictions");
+        for (FutureTask<Entry> task : entries.values()) {
+            try {
+                if (task.isDone()) {
+                    release(task.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                // Nothing was stored.
+            }
+        }
+        entries.clear();
+        spillDirectory.delete();
+    }
+
+    private static class Entry {
+        private final ResultArray results;
+        private final File file;
+        private final long cells;
+        private final String statement;
+        private final String routingKey;
+        private final AtomicInteger reads = new AtomicInteger(0);
+        private boolean released = false;
+
+        Entry(ResultArray results, File file, long cells, String statement, String routingKey) {
+            this.results = results;
+            this.file = file;
+            this.cells = cells;
+            this.statement = statement;
+            this.routingKey = routingKey;
+        }
+
+        /*
+        A copy of the results, or null once the entry has been released.
+         */
+        synchronized ResultArray read() throws IOException, ClassNotFoundException {
+            if (released) {
+                return null;
+            }
+            if (results != null) {
+                return new ResultArray(results);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return (ResultArray) in.readObject();
+            }
+        }
+
+        /*
+        True the first time, when the caller should free what the entry holds.
+         */
+        synchronized boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+}
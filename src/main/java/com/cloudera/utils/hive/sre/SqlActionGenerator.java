@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.sql.ResultArray;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Arrays;
+
+/*
+Builds the Hive DDL for a @link CommandReturnCheck directly, instead of through 'checkCalculations'
+script-eval.  The statement for each path is appended to the check's output for that path.
+ */
+@JsonIgnoreProperties({"databaseIndex", "tableIndex", "partitionIndex"})
+public class SqlActionGenerator {
+
+    public enum Action {
+        COMPACT_MAJOR
+    }
+
+    private Action action = null;
+    // The 'listingColumns' that hold the database, table and partition directory.
+    private String databaseField = "name";
+    private String tableField = "tbl_name";
+    private String partitionField = "part_name";
+
+    private int databaseIndex = -1;
+    private int tableIndex = -1;
+    private int partitionIndex = -1;
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public String getDatabaseField() {
+        return databaseField;
+    }
+
+    public void setDatabaseField(String databaseField) {
+        this.databaseField = databaseField;
+    }
+
+    public String getTableField() {
+        return tableField;
+    }
+
+    public void setTableField(String tableField) {
+        this.tableField = tableField;
+    }
+
+    public String getPartitionField() {
+        return partitionField;
+    }
+
+    public void setPartitionField(String partitionField) {
+        this.partitionField = partitionField;
+    }
+
+    public void init(String[] listingColumns) {
+        if (action == null) {
+            throw new RuntimeException("A 'sqlAction' requires an 'action'.");
+        }
+        databaseIndex = ResultArray.find(listingColumns, databaseField);
+        tableIndex = ResultArray.find(listingColumns, tableField);
+        partitionIndex = ResultArray.find(listingColumns, partitionField);
+        if (databaseIndex < 0 || tableIndex < 0 || partitionIndex < 0) {
+            throw new RuntimeException("The 'sqlAction' fields (" + databaseField + ", " + tableField + ", " +
+                    partitionField + ") must all be in the 'listingColumns': " + Arrays.toString(listingColumns));
+        }
+    }
+
+    /*
+    Append the statement for the listing record to 'sb'.
+     */
+    public void generate(String[] args, StringBuilder sb) {
+        String partition = args[partitionIndex] != null ? args[partitionIndex].trim() : "";
+        switch (action) {
+            case COMPACT_MAJOR:
+                appendTable(sb.append("ALTER TABLE "), args[databaseIndex], args[tableIndex]);
+                appendPartition(sb, partition);
+                sb.append(" COMPACT \"MAJOR\";\n");
+                break;
+        }
+    }
+
+    private static StringBuilder appendTable(StringBuilder sb, String database, String table) {
+        return sb.append('`').append(database).append("`.`").append(table).append('`');
+    }
+
+    private static void appendPartition(StringBuilder sb, String partition) {
+        if (partition.length() > 0) {
+            sb.append(" PARTITION (");
+            Utils.appendPartitionSpec(sb, partition);
+            sb.append(')');
+        }
+    }
+
+}
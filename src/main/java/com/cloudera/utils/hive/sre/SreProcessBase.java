@@ -21,6 +21,7 @@ import com.cloudera.utils.hive.config.QueryDefinitions;
 import com.cloudera.utils.hive.config.SreProcessesConfig;
 import com.cloudera.utils.hive.reporting.CounterGroup;
 import com.cloudera.utils.sql.QueryDefinition;
+import com.cloudera.utils.sql.SqlDialect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -31,6 +32,8 @@ import org.apache.commons.io.IOUtils;
 
 import java.io.*;
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 @JsonIgnoreProperties({"parent", "config", "queryDefinitions", "dbsOverride", "includeRegEx", "excludeRegEx", "dbType",
@@ -41,7 +44,8 @@ import java.util.concurrent.Callable;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = DbSetProcess.class, name = "dbSet"),
         @JsonSubTypes.Type(value = MetastoreQueryProcess.class, name = "metastore.query"),
-        @JsonSubTypes.Type(value = MetastoreReportProcess.class, name = "metastore.report")})
+        @JsonSubTypes.Type(value = MetastoreReportProcess.class, name = "metastore.report"),
+        @JsonSubTypes.Type(value = MetastoreCleanupProcess.class, name = "metastore.cleanup")})
 public abstract class SreProcessBase implements Callable<String> {
     private String displayName = "not set";
     private String title = null;
@@ -166,6 +170,13 @@ public abstract class SreProcessBase implements Callable<String> {
         this.dbType = dbType;
     }
 
+    /*
+    Builds the filters and limits that run in the metastore RDBMS.
+     */
+    protected SqlDialect getSqlDialect() {
+        return SqlDialect.forType(getDbType().name());
+    }
+
     public ProcessContainer getParent() {
         return parent;
     }
@@ -190,6 +201,13 @@ public abstract class SreProcessBase implements Callable<String> {
         this.queryDefinitions = queryDefinitions;
     }
 
+    /*
+    The definition run for 'queryName', after any filters have been pushed into it.
+     */
+    protected QueryDefinition getEffectiveQueryDefinition(String queryName) {
+        return getQueryDefinitions().getQueryDefinition(queryName);
+    }
+
     public void setConfig(SreProcessesConfig config) {
         this.config = config;
     }
@@ -333,6 +351,14 @@ public abstract class SreProcessBase implements Callable<String> {
         }
     }
 
+    /*
+    The names of the query definitions this process runs.  Used to find the queries that are shared
+    between processes.
+     */
+    public List<String> listQueries() {
+        return Collections.emptyList();
+    }
+
     public abstract Boolean testSQLScript();
 
 }
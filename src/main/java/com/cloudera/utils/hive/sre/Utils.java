@@ -16,32 +16,97 @@
 
 package com.cloudera.utils.hive.sre;
 
-import org.apache.commons.lang.StringUtils;
-
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Utils {
 
+    // Partitions of a table share their leading directories (year=2020/month=01/...), so the spec of
+    // each parent directory is kept and only the last segment is decoded.
+    private static final int PARTITION_PREFIX_CACHE_LIMIT = 10000;
+    private static final Map<String, String> partitionPrefixCache = new ConcurrentHashMap<String, String>();
+
+    /*
+    Convert a partition directory 'k1=v1/k2=v2' to the HiveQL partition spec 'k1="v1",k2="v2"'.
+    Values are unescaped the way Hive escapes path names (%XX) and quoted for a HiveQL string literal.
+     */
     public static String dirToPartitionSpec(String directoryPart) throws UnsupportedEncodingException {
-        String[] directories = directoryPart.split("\\/");
-        String[] partitionSpecs = new String[directories.length];
-        int loc = 0;
-        try {
-            for (String directory : directories) {
-                String[] specParts = directory.split("=");
-                String partDir = null;
-                partDir = URLDecoder.decode(specParts[1], StandardCharsets.UTF_8.toString());
-                partitionSpecs[loc++] = specParts[0] + "=\"" + partDir + "\"";
+        String rtn = partitionPrefixCache.get(directoryPart);
+        if (rtn == null) {
+            StringBuilder sb = new StringBuilder(directoryPart.length() + 16);
+            if (!appendSpec(sb, directoryPart, directoryPart.length())) {
+                System.err.println("Issue with partition directory spec: " + directoryPart);
             }
-        } catch (Throwable t) {
+            rtn = sb.toString();
+        }
+        return rtn;
+    }
+
+    /*
+    Same as 'dirToPartitionSpec', but appends to the caller's builder instead of returning a new String.
+     */
+    public static StringBuilder appendPartitionSpec(StringBuilder sb, String directoryPart) {
+        String cached = partitionPrefixCache.get(directoryPart);
+        if (cached != null) {
+            sb.append(cached);
+        } else if (!appendSpec(sb, directoryPart, directoryPart.length())) {
             System.err.println("Issue with partition directory spec: " + directoryPart);
-//            throw t;
         }
-        StringBuilder rtn = new StringBuilder();
-        rtn.append(StringUtils.join(partitionSpecs, ","));
-        return rtn.toString();
+        return sb;
+    }
+
+    /*
+    Append the spec for directoryPart[0, end).  The parent directory's spec comes from the cache
+    when it's there, and is added to it when it isn't.
+     */
+    private static boolean appendSpec(StringBuilder sb, String directoryPart, int end) {
+        int lastSlash = directoryPart.lastIndexOf('/', end - 1);
+        if (lastSlash > 0) {
+            String prefix = directoryPart.substring(0, lastSlash);
+            String prefixSpec = partitionPrefixCache.get(prefix);
+            if (prefixSpec == null) {
+                StringBuilder prefixSb = new StringBuilder(lastSlash + 16);
+                if (!appendSpec(prefixSb, directoryPart, lastSlash)) {
+                    sb.append(prefixSb);
+                    return false;
+                }
+                prefixSpec = prefixSb.toString();
+                if (partitionPrefixCache.size() >= PARTITION_PREFIX_CACHE_LIMIT) {
+                    partitionPrefixCache.clear();
+                }
+                partitionPrefixCache.put(prefix, prefixSpec);
+            }
+            sb.append(prefixSpec).append(',');
+        }
+        return appendSegment(sb, directoryPart, lastSlash + 1, end);
+    }
+
+    /*
+    Append a single 'key=value' directory as 'key="value"', in one pass over the characters.
+     */
+    private static boolean appendSegment(StringBuilder sb, String directoryPart, int start, int end) {
+        int eq = directoryPart.indexOf('=', start);
+        if (eq < 0 || eq >= end) {
+            return false;
+        }
+        sb.append(directoryPart, start, eq).append("=\"");
+        for (int i = eq + 1; i < end; i++) {
+            char c = directoryPart.charAt(i);
+            if (c == '%' && i + 2 < end) {
+                int hi = Character.digit(directoryPart.charAt(i + 1), 16);
+                int lo = Character.digit(directoryPart.charAt(i + 2), 16);
+                if (hi >= 0 && lo >= 0) {
+                    c = (char) ((hi << 4) + lo);
+                    i += 2;
+                }
+            }
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+        return true;
     }
 }
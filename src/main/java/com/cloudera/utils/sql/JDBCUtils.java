@@ -39,6 +39,92 @@ public class JDBCUtils {
         return rtn;
     }
 
+    /*
+    Prepare, run and read 'query' into a ResultArray.  The statement and result set are always closed,
+    which hands a pooled statement back to the connection's statement cache for the next caller.
+     */
+    public static ResultArray executeQuery(Connection conn, QueryDefinition query, Properties overrides)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = conn.prepareStatement(query.getStatement())) {
+            setPreparedStatementParameters(preparedStatement, query, overrides);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return new ResultArray(resultSet);
+            }
+        }
+    }
+
+    public static ResultArray executeQuery(Connection conn, QueryDefinition query, Map<String, Parameter> overrides)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = conn.prepareStatement(query.getStatement())) {
+            setPreparedStatementParameters(preparedStatement, query, overrides);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return new ResultArray(resultSet);
+            }
+        }
+    }
+
+    /*
+    Run an insert/update/delete for 'query'.  Returns the affected row count.  The statement is always
+    closed, committing is left to the caller.
+     */
+    public static int executeUpdate(Connection conn, QueryDefinition query, Properties overrides)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = conn.prepareStatement(query.getStatement())) {
+            setPreparedStatementParameters(preparedStatement, query, overrides);
+            return preparedStatement.executeUpdate();
+        }
+    }
+
+    /*
+    The values the query's parameters will be bound with, after applying the overrides.
+     */
+    public static Properties bindParameters(QueryDefinition query, Properties overrides) {
+        Properties rtn = new Properties();
+        if (query.getParameters() != null) {
+            for (String key : query.getParameters().keySet()) {
+                String value = overrides != null ? overrides.getProperty(key, query.getParameters().get(key).getInitial())
+                        : query.getParameters().get(key).getInitial();
+                if (value != null)
+                    rtn.setProperty(key, value);
+            }
+        }
+        return rtn;
+    }
+
+    public static Properties bindParameters(QueryDefinition query, Map<String, Parameter> overrides) {
+        Properties rtn = new Properties();
+        if (query.getParameters() != null) {
+            for (String key : query.getParameters().keySet()) {
+                String value = query.getParameters().get(key).getInitial();
+                if (overrides != null && overrides.get(key) != null) {
+                    value = overrides.get(key).getOverride();
+                }
+                if (value != null)
+                    rtn.setProperty(key, value);
+            }
+        }
+        return rtn;
+    }
+
+    // TODO: Complete more SQL Types for Prepared Statements.
+    protected static void setParameter(PreparedStatement preparedStatement, Parameter param, String value)
+            throws SQLException {
+        switch (param.getSqlType()) {
+            case VARCHAR:
+                preparedStatement.setString(param.getLocation(), value);
+                break;
+            case INTEGER:
+            case BIGINT:
+                // Keys and counts.  Bound as numbers, some RDBMS's won't compare them to strings.
+                if (value == null) {
+                    preparedStatement.setNull(param.getLocation(), param.getSqlType());
+                } else {
+                    preparedStatement.setLong(param.getLocation(), Long.parseLong(value.trim()));
+                }
+                break;
+        }
+    }
+
     public static void setPreparedStatementParameters(PreparedStatement preparedStatement, QueryDefinition query,
                                                       Properties overrides) {
         Properties lclOverrides = overrides;
@@ -50,11 +136,7 @@ public class JDBCUtils {
                 for (String key : query.getParameters().keySet()) {
                     Parameter param = query.getParameters().get(key);
                     String value = lclOverrides.getProperty(key, param.getInitial());
-                    switch (param.getSqlType()) {
-                        case VARCHAR:
-                            preparedStatement.setString(param.getLocation(), value);
-                            break;
-                    }
+                    setParameter(preparedStatement, param, value);
                 }
             }
         } catch (SQLException se) {
@@ -74,12 +156,7 @@ public class JDBCUtils {
                         value = overrides.get(key).getOverride();
                         LOG.info("Override parameter '" + key + "' found.  Setting value to '" + value + "'");
                     }
-                    // TODO: Complete more SQL Types for Prepared Statements.
-                    switch (param.getSqlType()) {
-                        case VARCHAR:
-                            preparedStatement.setString(param.getLocation(), value);
-                            break;
-                    }
+                    setParameter(preparedStatement, param, value);
                 }
             }
         } catch (SQLException se) {
@@ -22,6 +22,10 @@ import java.util.Map;
 
 public class QueryDefinition {
     private String statement;
+    // The result column holding the database name, quoted for the RDBMS.  Lets database filters run in SQL.
+    private String databaseColumn;
+    // Seconds before the query is cancelled by the driver.  When not set, the config's 'queryTimeout'.
+    private Integer timeout;
     @JsonProperty("parameters")
     private Map<String, Parameter> parameters;
 
@@ -33,6 +37,22 @@ public class QueryDefinition {
         this.statement = statement;
     }
 
+    public String getDatabaseColumn() {
+        return databaseColumn;
+    }
+
+    public void setDatabaseColumn(String databaseColumn) {
+        this.databaseColumn = databaseColumn;
+    }
+
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
     public Map<String, Parameter> getParameters() {
         return parameters;
     }
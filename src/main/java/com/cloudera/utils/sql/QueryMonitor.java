@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.sql;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Runs the metastore queries with their timeouts, keeps track of the statements in flight so they can be
+cancelled, and writes the queries that take longer than 'slowQueryMs' to the slow query log.
+ */
+public class QueryMonitor {
+    private static Logger LOG = LogManager.getLogger(QueryMonitor.class);
+
+    // The SQLState for a cancelled statement.
+    public static final String CANCELLED_STATE = "57014";
+
+    // Seconds, for queries that don't set their own 'timeout'.  0 for none.
+    private final int defaultTimeout;
+    private final long slowQueryMs;
+    private final File slowQueryFile;
+    private PrintStream slowQueryLog = null;
+
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+    private final AtomicLong slowQueries = new AtomicLong(0);
+
+    public QueryMonitor(int defaultTimeout, long slowQueryMs, File slowQueryFile) {
+        this.defaultTimeout = defaultTimeout;
+        this.slowQueryMs = slowQueryMs;
+        this.slowQueryFile = slowQueryFile;
+    }
+
+    public int getTimeout(QueryDefinition query) {
+        return query.getTimeout() != null ? query.getTimeout() : defaultTimeout;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getSlowQueryCount() {
+        return slowQueries.get();
+    }
+
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    public ResultArray executeQuery(Connection conn, QueryDefinition query, Map<String, Parameter> overrides)
+            throws SQLException {
+        return executeQuery(conn, query, JDBCUtils.bindParameters(query, overrides));
+    }
+
+    public ResultArray executeQuery(Connection conn, QueryDefinition query, Properties overrides)
+            throws SQLException {
+        long start = System.nanoTime();
+        String outcome = "FAILED";
+        long rows = -1;
+        try (PreparedStatement preparedStatement = prepare(conn, query, overrides)) {
+            running.add(preparedStatement);
+            try {
+                checkCancelled();
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    ResultArray rtn = new ResultArray(resultSet);
+                    rows = rtn.getCount();
+                    outcome = "OK";
+                    return rtn;
+                }
+            } finally {
+                running.remove(preparedStatement);
+            }
+        } catch (SQLException se) {
+            outcome = getOutcome(se);
+            throw se;
+        } finally {
+            record(query, overrides, rows, start, outcome);
+        }
+    }
+
+    public int executeUpdate(Connection conn, QueryDefinition query, Properties overrides) throws SQLException {
+        long start = System.nanoTime();
+        String outcome = "FAILED";
+        long rows = -1;
+        try (PreparedStatement preparedStatement = prepare(conn, query, overrides)) {
+            running.add(preparedStatement);
+            try {
+                checkCancelled();
+                int rtn = preparedStatement.executeUpdate();
+                rows = rtn;
+                outcome = "OK";
+                return rtn;
+            } finally {
+                running.remove(preparedStatement);
+            }
+        } catch (SQLException se) {
+            outcome = getOutcome(se);
+            throw se;
+        } finally {
+            record(query, overrides, rows, start, outcome);
+        }
+    }
+
+    private PreparedStatement prepare(Connection conn, QueryDefinition query, Properties overrides)
+            throws SQLException {
+        checkCancelled();
+        PreparedStatement preparedStatement = conn.prepareStatement(query.getStatement());
+        // Always set, a pooled statement keeps the timeout of its last use.
+        preparedStatement.setQueryTimeout(getTimeout(query));
+        JDBCUtils.setPreparedStatementParameters(preparedStatement, query, overrides);
+        return preparedStatement;
+    }
+
+    /*
+    How a failed statement is recorded.  POSTGRES reports a statement timeout as a cancel (57014), not
+    a SQLTimeoutException, so a cancel we didn't ask for is a timeout.
+     */
+    protected String getOutcome(SQLException se) {
+        if (se instanceof SQLTimeoutException) {
+            return "TIMEOUT";
+        }
+        if (CANCELLED_STATE.equals(se.getSQLState())) {
+            return cancelled ? "CANCELLED" : "TIMEOUT";
+        }
+        return "FAILED";
+    }
+
+    private void checkCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query cancelled", CANCELLED_STATE);
+        }
+    }
+
+    /*
+    Stop the statements that are running and fail any that start after.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException se) {
+                LOG.warn("Issue cancelling statement: " + se.getMessage());
+            }
+        }
+        LOG.info("Cancelled " + running.size() + " running metastore queries.");
+    }
+
+    protected void record(QueryDefinition query, Properties overrides, long rows, long start, String outcome) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (slowQueryMs < 0 || elapsedMs < slowQueryMs) {
+            return;
+        }
+        slowQueries.incrementAndGet();
+        String line = formatSlowQuery(new Date(), elapsedMs, rows, outcome, query, overrides);
+        LOG.warn("Slow query: " + line);
+        synchronized (this) {
+            if (slowQueryLog == null && slowQueryFile != null) {
+                try {
+                    slowQueryLog = new PrintStream(new FileOutputStream(slowQueryFile, true), true);
+                    slowQueryLog.println("time\telapsed_ms\trows\toutcome\tparameters\tstatement");
+                } catch (FileNotFoundException e) {
+                    LOG.error("Issue opening the slow query log: " + slowQueryFile, e);
+                }
+            }
+            if (slowQueryLog != null) {
+                slowQueryLog.println(line);
+            }
+        }
+    }
+
+    protected static String formatSlowQuery(Date time, long elapsedMs, long rows, String outcome,
+                                            QueryDefinition query, Properties overrides) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(time)).append('\t');
+        sb.append(elapsedMs).append('\t');
+        sb.append(rows).append('\t');
+        sb.append(outcome).append('\t');
+        sb.append(overrides != null ? overrides.toString() : "{}").append('\t');
+        // On one line, so the log can be sorted and grepped.
+        sb.append(query.getStatement().trim().replaceAll("\\s+", " "));
+        return sb.toString();
+    }
+
+    public synchronized void close() {
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+            slowQueryLog = null;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.cloudera.utils.sql;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -27,37 +28,68 @@ import java.util.stream.IntStream;
 import static java.sql.Types.*;
 import static java.sql.Types.TIMESTAMP;
 
-public class ResultArray {
+/*
+The results of a metastore query, stored by column.  Integral columns are held as primitive longs,
+floating point columns as doubles and character columns are dictionary encoded, since the db names,
+table types and serdes repeat on nearly every row.  Each column tracks its nulls in a bitmap.
+
+The 'String' accessors render the values the way the rule templates expect them.  The typed
+accessors ('getLong', 'getDouble', 'isNull') read the values without the round trip through text.
+ */
+public class ResultArray implements Serializable {
+    private static final long serialVersionUID = 2L;
 
     private String[] header;
     private int columnCount = 0;
-    private List<String[]> records = new ArrayList<String[]>();
-
+    private Column[] columns = new Column[0];
+    // The rows that survived 'keep'/'remove', in order.  Null when every row is visible.
+    private int[] rows = null;
+    private int rowCount = 0;
 
     public ResultArray(ResultSet source) {
         build(source);
     }
 
+    /*
+    A copy that can be filtered ('keep'/'remove') without changing the source.  The columns are shared.
+     */
+    public ResultArray(ResultArray source) {
+        this.header = source.header;
+        this.columnCount = source.columnCount;
+        this.columns = source.columns;
+        this.rows = source.rows;
+        this.rowCount = source.rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
     public void remove(String removeFilter, int index) {
-        Pattern rPat = Pattern.compile(removeFilter);
-        List<String[]> newRecordsList = new ArrayList<String[]>();
-        for (String[] item: records) {
-            if (!rPat.matcher(item[index]).find()) {
-                newRecordsList.add(item);
-            }
-        }
-        records = newRecordsList;
+        filter(Pattern.compile(removeFilter), index, false);
     }
 
     public void keep(String keepFilter, int index) {
-        Pattern rPat = Pattern.compile(keepFilter);
-        List<String[]> newRecordsList = new ArrayList<String[]>();
-        for (String[] item: records) {
-            if (rPat.matcher(item[index]).find()) {
-                newRecordsList.add(item);
+        filter(Pattern.compile(keepFilter), index, true);
+    }
+
+    private void filter(Pattern pattern, int index, boolean keep) {
+        Column column = columns[index];
+        int[] newRows = new int[rowCount];
+        int count = 0;
+        for (int r = 0; r < rowCount; r++) {
+            int row = row(r);
+            String value = column.getString(row);
+            if (pattern.matcher(value != null ? value : "").find() == keep) {
+                newRows[count++] = row;
             }
         }
-        records = newRecordsList;
+        rows = Arrays.copyOf(newRows, count);
+        rowCount = count;
+    }
+
+    private int row(int index) {
+        return rows == null ? index : rows[index];
     }
 
     private void build(ResultSet resultSet) {
@@ -65,65 +97,59 @@ public class ResultArray {
             ResultSetMetaData metadata = resultSet.getMetaData();
             columnCount = metadata.getColumnCount();
             header = new String[columnCount];
-            Map<String, Integer> fields = new LinkedHashMap<String, Integer>();
+            int[] types = new int[columnCount];
+            columns = new Column[columnCount];
             for (int i = 1;i <= columnCount; i++) {
-                String column = metadata.getColumnName(i);
-                Integer type = metadata.getColumnType(i);
-                header[i-1] = column;
-                fields.put(column, type);
+                header[i-1] = metadata.getColumnName(i);
+                types[i-1] = metadata.getColumnType(i);
+                columns[i-1] = newColumn(types[i-1]);
             }
 
-            List<Map.Entry<String, Integer>> entryList = new ArrayList<Map.Entry<String, Integer>>(fields.entrySet());
-            Map.Entry<String, Integer> lastEntry = entryList.get(entryList.size()-1);
-
-            String lastField = lastEntry.getKey();
-
             while (resultSet.next()) {
-                String[] record = new String[columnCount];
-                int i = 0;
-                for (String column: fields.keySet()) {
+                for (int i = 0; i < columnCount; i++) {
+                    int c = i + 1;
                     // Check the Column Type and Fetch.
-                    switch (fields.get(column)) {
+                    switch (types[i]) {
                         case BIT:
-                            record[i++] = Byte.toString(resultSet.getByte(column));
-                            break;
                         case TINYINT:
                         case SMALLINT:
                         case INTEGER:
-                            record[i++] =  Integer.toString(resultSet.getInt(column));
-                            break;
                         case BIGINT:
-                            record[i++] = Long.toString(resultSet.getLong(column));
+                            long lValue = resultSet.getLong(c);
+                            ((LongColumn) columns[i]).add(lValue, resultSet.wasNull());
                             break;
                         case FLOAT:
-                            record[i++] = Float.toString(resultSet.getFloat(column));
-                            break;
                         case REAL:
                         case DOUBLE:
                         case NUMERIC:
-                            record[i++] = Double.toString(resultSet.getDouble(column));
+                            double dValue = resultSet.getDouble(c);
+                            ((DoubleColumn) columns[i]).add(dValue, resultSet.wasNull());
                             break;
                         case DECIMAL:
-                            record[i++] = resultSet.getBigDecimal(column).toString();
-                            break;
-                        case CHAR:
-                        case VARCHAR:
-                        case LONGVARCHAR:
-                            record[i++] = resultSet.getString(column);
+                            BigDecimal decimal = resultSet.getBigDecimal(c);
+                            ((StringColumn) columns[i]).add(decimal != null ? decimal.toString() : null);
                             break;
-                            // TODO: HANDLE Date/Time Formatting
+                        // TODO: HANDLE Date/Time Formatting
                         case DATE:
-                            record[i++] = resultSet.getDate(column).toString();
+                            java.sql.Date date = resultSet.getDate(c);
+                            ((StringColumn) columns[i]).add(date != null ? date.toString() : null);
                             break;
                         case TIME:
-                            record[i++] = resultSet.getTime(column).toString();
+                            java.sql.Time time = resultSet.getTime(c);
+                            ((StringColumn) columns[i]).add(time != null ? time.toString() : null);
                             break;
                         case TIMESTAMP:
-                            record[i++] = resultSet.getTimestamp(column).toString();
+                            java.sql.Timestamp timestamp = resultSet.getTimestamp(c);
+                            ((StringColumn) columns[i]).add(timestamp != null ? timestamp.toString() : null);
                             break;
+                        default:
+                            ((StringColumn) columns[i]).add(resultSet.getString(c));
                     }
                 }
-                records.add(record);
+                rowCount++;
+            }
+            for (Column column : columns) {
+                column.trim();
             }
         } catch (SQLException se) {
 
@@ -132,52 +158,92 @@ public class ResultArray {
         }
     }
 
+    private static Column newColumn(int type) {
+        switch (type) {
+            case BIT:
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return new LongColumn(type);
+            case FLOAT:
+            case REAL:
+            case DOUBLE:
+            case NUMERIC:
+                return new DoubleColumn(type);
+            default:
+                return new StringColumn(type);
+        }
+    }
+
     public String[] getColumn(String name) {
+        String[] rtn = new String[rowCount];
         int columnIndex = find(header, name);
-        String[] rtn = new String[records.size()];
-        int i = 0;
-        for (String[] record: records) {
-            rtn[i++] = record[columnIndex];
+        if (columnIndex < 0) {
+            if (rowCount == 0)
+                return rtn;
+            throw new RuntimeException("Column '" + name + "' not in the results: " + Arrays.toString(header));
+        }
+        Column column = columns[columnIndex];
+        for (int r = 0; r < rowCount; r++) {
+            rtn[r] = column.getString(row(r));
         }
         return rtn;
     }
 
     public String[][] getColumns(String[] columns) {
-        int[] columnIndexes = new int[columns.length];
         String[][] rtn = null;
         if (columns.length > 0) {
-            rtn = new String[columns.length][records.size()];
-
-            for (int i = 0; i < columns.length; i++) {
-                columnIndexes[i] = find(header, columns[i]);
-            }
-
-            int i = 0;
-            for (String[] record : records) {
-                for (int c = 0; c < columnIndexes.length; c++) {
-                    try {
-                        rtn[c][i] = record[columnIndexes[c]];
-                    } catch (ArrayIndexOutOfBoundsException aiobe) {
-                        throw new RuntimeException(Arrays.toString(record) + ":" + Arrays.toString(columnIndexes), aiobe);
-                    }
-                }
-                i++;
+            rtn = new String[columns.length][];
+            for (int c = 0; c < columns.length; c++) {
+                rtn[c] = getColumn(columns[c]);
             }
         }
         return rtn;
     }
 
     public long getCount() {
-        return records.size();
+        return rowCount;
     }
 
     public String getField(String column, Integer index) {
-        // Find the column index.
-        int columnIndex = find(header, column);
-        // Pull the record
-        String[] record = records.get(index);
-        // return the field
-        return record[columnIndex];
+        return columns[find(header, column)].getString(row(index));
+    }
+
+    /*
+    The SQL type (@link java.sql.Types) the column was read as.
+     */
+    public int getColumnType(String column) {
+        return columns[find(header, column)].type;
+    }
+
+    public boolean isNull(String column, int index) {
+        return columns[find(header, column)].isNull(row(index));
+    }
+
+    /*
+    The value of an integral or floating point column.  Character columns are parsed.
+     */
+    public long getLong(String column, int index) {
+        Column col = columns[find(header, column)];
+        int row = row(index);
+        if (col instanceof LongColumn)
+            return ((LongColumn) col).values[row];
+        if (col instanceof DoubleColumn)
+            return (long) ((DoubleColumn) col).values[row];
+        String value = col.getString(row);
+        return value != null ? Long.parseLong(value.trim()) : 0L;
+    }
+
+    public double getDouble(String column, int index) {
+        Column col = columns[find(header, column)];
+        int row = row(index);
+        if (col instanceof DoubleColumn)
+            return ((DoubleColumn) col).values[row];
+        if (col instanceof LongColumn)
+            return ((LongColumn) col).values[row];
+        String value = col.getString(row);
+        return value != null ? Double.parseDouble(value.trim()) : 0D;
     }
 
     // Function to find the index of an element in a primitive array in Java
@@ -194,9 +260,164 @@ public class ResultArray {
         StringBuilder sb = new StringBuilder();
         sb.append("HEADER\n" + Arrays.toString(header) + "\n");
         sb.append("RECORDS\n");
-        for (String[] record: records) {
+        String[] record = new String[columnCount];
+        for (int r = 0; r < rowCount; r++) {
+            for (int c = 0; c < columnCount; c++) {
+                record[c] = columns[c].getString(row(r));
+            }
             sb.append(Arrays.toString(record)).append("\n");
         }
         return sb.toString();
     }
+
+    /*
+    A column of values, with the nulls in a bitmap.  Columns are only appended to while the
+    results are read, after that they're shared read-only between copies.
+     */
+    private static abstract class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        protected final int type;
+        protected final BitSet nulls = new BitSet();
+        protected int size = 0;
+
+        Column(int type) {
+            this.type = type;
+        }
+
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        abstract String getString(int row);
+
+        abstract void trim();
+
+        protected static int grow(int length) {
+            return Math.max(16, length + (length >> 1));
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private long[] values = new long[16];
+
+        LongColumn(int type) {
+            super(type);
+        }
+
+        void add(long value, boolean isNull) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, grow(size));
+            if (isNull)
+                nulls.set(size);
+            values[size++] = value;
+        }
+
+        String getString(int row) {
+            return nulls.get(row) ? null : Long.toString(values[row]);
+        }
+
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private double[] values = new double[16];
+
+        DoubleColumn(int type) {
+            super(type);
+        }
+
+        void add(double value, boolean isNull) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, grow(size));
+            if (isNull)
+                nulls.set(size);
+            values[size++] = value;
+        }
+
+        String getString(int row) {
+            if (nulls.get(row))
+                return null;
+            // FLOAT was always rendered with float precision.
+            return type == FLOAT ? Float.toString((float) values[row]) : Double.toString(values[row]);
+        }
+
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /*
+    Dictionary encoded while the values repeat.  When most of the values are distinct (locations,
+    partition names) the dictionary is dropped and the values are kept as is.
+     */
+    private static class StringColumn extends Column {
+        // Past this many distinct values, check whether the dictionary still pays for itself.
+        private static final int DICTIONARY_CHECK = 1024;
+
+        private Map<String, Integer> lookup = new HashMap<String, Integer>();
+        private List<String> dictionary = new ArrayList<String>();
+        private int[] codes = new int[16];
+        private String[] values = null;
+
+        StringColumn(int type) {
+            super(type);
+        }
+
+        void add(String value) {
+            if (value == null)
+                nulls.set(size);
+            if (values != null) {
+                if (size == values.length)
+                    values = Arrays.copyOf(values, grow(size));
+                values[size++] = value;
+                return;
+            }
+            if (size == codes.length)
+                codes = Arrays.copyOf(codes, grow(size));
+            int code = -1;
+            if (value != null) {
+                Integer existing = lookup.get(value);
+                if (existing == null) {
+                    existing = dictionary.size();
+                    dictionary.add(value);
+                    lookup.put(value, existing);
+                }
+                code = existing;
+            }
+            codes[size++] = code;
+            if (dictionary.size() > DICTIONARY_CHECK && dictionary.size() * 2 > size) {
+                undictionary();
+            }
+        }
+
+        private void undictionary() {
+            values = new String[grow(size)];
+            for (int r = 0; r < size; r++) {
+                values[r] = codes[r] < 0 ? null : dictionary.get(codes[r]);
+            }
+            codes = null;
+            dictionary = null;
+            lookup = null;
+        }
+
+        String getString(int row) {
+            if (values != null)
+                return values[row];
+            int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        void trim() {
+            if (values != null) {
+                values = Arrays.copyOf(values, size);
+            } else {
+                codes = Arrays.copyOf(codes, size);
+                // Only needed while building.
+                lookup = null;
+            }
+        }
+    }
 }
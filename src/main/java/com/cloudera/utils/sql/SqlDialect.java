@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.sql.Types.VARCHAR;
+
+/*
+What each metastore RDBMS needs to have filters and limits run in the database, instead of on the
+rows after they've been fetched.  The base query is wrapped, so the query definitions don't change.
+ */
+public enum SqlDialect {
+    MYSQL {
+        @Override
+        public String regexPredicate(String column, boolean negate) {
+            return column + (negate ? " NOT REGEXP ?" : " REGEXP ?");
+        }
+
+        @Override
+        public String limit(String statement, int rows) {
+            return "SELECT * FROM (" + statement + ") Q LIMIT " + rows;
+        }
+    },
+    POSTGRES {
+        @Override
+        public String regexPredicate(String column, boolean negate) {
+            return column + (negate ? " !~ ?" : " ~ ?");
+        }
+
+        @Override
+        protected boolean isCaseSensitiveRegex() {
+            return true;
+        }
+
+        @Override
+        public String limit(String statement, int rows) {
+            return "SELECT * FROM (" + statement + ") Q LIMIT " + rows;
+        }
+    },
+    ORACLE {
+        @Override
+        public String regexPredicate(String column, boolean negate) {
+            return (negate ? "NOT REGEXP_LIKE(" : "REGEXP_LIKE(") + column + ", ?)";
+        }
+
+        @Override
+        public String limit(String statement, int rows) {
+            // ROWNUM, so it works before 12c too.
+            return "SELECT * FROM (" + statement + ") Q WHERE ROWNUM <= " + rows;
+        }
+    };
+
+    /*
+    A predicate matching 'column' against a regex parameter.
+     */
+    public abstract String regexPredicate(String column, boolean negate);
+
+    /*
+    'statement', returning at most 'rows' rows.
+     */
+    public abstract String limit(String statement, int rows);
+
+    /*
+    Whether the regex match always respects case.  MYSQL and ORACLE follow the column's collation, which
+    is often case-insensitive.
+     */
+    protected boolean isCaseSensitiveRegex() {
+        return false;
+    }
+
+    /*
+    Whether 'regex' can be run in the RDBMS and match the same rows java.util.regex would.  It has to be
+    'portable' and, for an exclude, matched case-sensitively.  An include that matches more rows is fine,
+    they're dropped by the Java filter after the fetch.
+     */
+    public boolean canFilter(String regex, boolean negate) {
+        return isPortableRegex(regex) && (!negate || isCaseSensitiveRegex());
+    }
+
+    /*
+    Only the part of the regex syntax that java.util.regex, POSIX ERE (MYSQL, ORACLE) and POSTGRES
+    agree on: letters, digits, '_' and '-', '.', '^', '$', '*', '+', '|' and bracket expressions of
+    letters, digits, '_' and '-'.  Escapes, groups, '?' and '{n}' all differ somewhere.
+     */
+    public static boolean isPortableRegex(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return false;
+        }
+        // Whether the last thing can take a '*' or '+'.
+        boolean atom = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (isPortableLiteral(c) || c == '.') {
+                atom = true;
+            } else if (c == '*' || c == '+') {
+                if (!atom) {
+                    return false;
+                }
+                atom = false;
+            } else if (c == '^' || c == '$') {
+                atom = false;
+            } else if (c == '|') {
+                // No empty alternatives.
+                if (i == 0 || i == regex.length() - 1 || regex.charAt(i - 1) == '|') {
+                    return false;
+                }
+                atom = false;
+            } else if (c == '[') {
+                int end = regex.indexOf(']', i + 1);
+                if (end < 0) {
+                    return false;
+                }
+                int from = i + 1;
+                if (from < end && regex.charAt(from) == '^') {
+                    from++;
+                }
+                if (from == end) {
+                    return false;
+                }
+                for (int j = from; j < end; j++) {
+                    if (!isPortableLiteral(regex.charAt(j))) {
+                        return false;
+                    }
+                }
+                i = end;
+                atom = true;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPortableLiteral(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    /*
+    'query' with only the rows where 'column' matches (or with 'negate', doesn't match) 'regex'.
+    The regex is bound as the last parameter.
+     */
+    public QueryDefinition filter(QueryDefinition query, String column, String regex, boolean negate) {
+        QueryDefinition rtn = new QueryDefinition();
+        rtn.setStatement("SELECT * FROM (" + query.getStatement() + ") Q WHERE " +
+                regexPredicate("Q." + column, negate));
+        Map<String, Parameter> parameters = new LinkedHashMap<String, Parameter>();
+        int location = 0;
+        if (query.getParameters() != null) {
+            parameters.putAll(query.getParameters());
+            for (Parameter parameter : query.getParameters().values()) {
+                location = Math.max(location, parameter.getLocation());
+            }
+        }
+        Parameter regexParameter = new Parameter();
+        regexParameter.setInitial(regex);
+        regexParameter.setSqlType(VARCHAR);
+        regexParameter.setLocation(location + 1);
+        parameters.put(negate ? "excludeRegEx" : "includeRegEx", regexParameter);
+        rtn.setParameters(parameters);
+        rtn.setDatabaseColumn(query.getDatabaseColumn());
+        rtn.setTimeout(query.getTimeout());
+        return rtn;
+    }
+
+    /*
+    'query' returning at most 'rows' rows.
+     */
+    public QueryDefinition limit(QueryDefinition query, int rows) {
+        QueryDefinition rtn = new QueryDefinition();
+        rtn.setStatement(limit(query.getStatement(), rows));
+        rtn.setParameters(query.getParameters());
+        rtn.setTimeout(query.getTimeout());
+        return rtn;
+    }
+
+    public static SqlDialect forType(String type) {
+        return SqlDialect.valueOf(type.toUpperCase());
+    }
+}
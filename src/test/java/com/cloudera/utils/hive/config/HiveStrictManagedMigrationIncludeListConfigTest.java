@@ -28,6 +28,10 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
 
 public class HiveStrictManagedMigrationIncludeListConfigTest {
 
@@ -42,7 +46,7 @@ public class HiveStrictManagedMigrationIncludeListConfigTest {
     @Test
     public void test01() {
         HiveStrictManagedMigrationIncludeListConfig hsmmCfg = HiveStrictManagedMigrationIncludeListConfig.getInstance();
-        List<String> tables = new ArrayList<String>();
+        Set<String> tables = new TreeSet<String>();
         tables.add("call_center");
         tables.add("customer");
         hsmmCfg.getDatabaseIncludeLists().put("tpcds_bin_partitioned_x", tables);
@@ -68,10 +72,33 @@ public class HiveStrictManagedMigrationIncludeListConfigTest {
         }
         try {
             hsmmCfg = mapper.readerFor(HiveStrictManagedMigrationIncludeListConfig.class).readValue(yamlConfig);
-            List<String> includelist = hsmmCfg.getDatabaseIncludeLists().get("tpcds_bin_partitioned_orc_10");
+            Set<String> includelist = hsmmCfg.getDatabaseIncludeLists().get("tpcds_bin_partitioned_orc_10");
             assert(includelist != null);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Issue deserializing config: " + cfgResource, e);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test03() throws InterruptedException {
+        final HiveStrictManagedMigrationIncludeListConfig hsmmCfg = HiveStrictManagedMigrationIncludeListConfig.getInstance();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // Every partition of a table adds the table again.
+                    for (int i = 0; i < 1000; i++) {
+                        hsmmCfg.addTable("concurrent_db", "tbl_" + (i % 50));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(50, hsmmCfg.getDatabaseIncludeLists().get("concurrent_db").size());
+    }
+}
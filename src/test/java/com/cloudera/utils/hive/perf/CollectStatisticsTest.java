@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CollectStatisticsTest {
+
+    @Test
+    public void percentile_001() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+        assertEquals(50, CollectStatistics.percentile(sorted, 50));
+        assertEquals(99, CollectStatistics.percentile(sorted, 99));
+        assertEquals(100, CollectStatistics.percentile(sorted, 100));
+        assertEquals(-1, CollectStatistics.percentile(new long[0], 50));
+    }
+
+    @Test
+    public void sessions_001() {
+        JDBCRecordIterator jri = new JDBCRecordIterator();
+        jri.setJdbcUrl("jdbc:hive2://localhost:10000");
+        jri.setQuery("SELECT 1");
+        jri.setBatchSize(100);
+        List<JDBCRecordIterator> jris = new ArrayList<JDBCRecordIterator>();
+        jris.add(jri);
+        jris.add(jri.copy(1));
+        jri.getCount().addAndGet(10);
+        jris.get(1).getCount().addAndGet(5);
+
+        CollectStatistics stats = new CollectStatistics(jris);
+        assertEquals(15, stats.getCount());
+        assertEquals(Integer.valueOf(100), jris.get(1).getBatchSize());
+        assertEquals(Integer.valueOf(1), jris.get(1).getSession());
+        // Neither has run.
+        assertEquals(Boolean.FALSE, stats.getCompleted());
+    }
+}
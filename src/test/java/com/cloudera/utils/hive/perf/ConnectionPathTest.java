@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import org.junit.Test;
+
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPathTest {
+
+    @Test
+    public void parse_001() {
+        ConnectionPath path = ConnectionPath.parse("jdbc:hive2://zk1:2181,zk2:2181,zk3:2181/default;" +
+                "serviceDiscoveryMode=zooKeeper;zooKeeperNamespace=hs2_batch;ssl=true?hive.fetch.task.conversion=none");
+        assertEquals(3, path.getHosts().size());
+        assertEquals("zk2:2181", path.getHosts().get(1));
+        assertTrue(path.isZooKeeper());
+        assertTrue(path.isSsl());
+        assertEquals("hs2_batch", path.getZooKeeperNamespace());
+        assertEquals(10000, path.getDefaultPort());
+
+        path = ConnectionPath.parse("jdbc:impala://impalad:21050;AuthMech=1;SSL=1");
+        assertEquals("impalad:21050", path.getHosts().get(0));
+        assertTrue(path.isSsl());
+        assertFalse(path.isZooKeeper());
+
+        path = ConnectionPath.parse("jdbc:hive2://hs2/;transportMode=http;httpPath=cliservice");
+        assertEquals("hs2", path.getHosts().get(0));
+        assertEquals(10001, path.getDefaultPort());
+        assertEquals(ConnectionPath.DEFAULT_ZOOKEEPER_NAMESPACE, path.getZooKeeperNamespace());
+    }
+
+    @Test
+    public void serverOf_001() {
+        assertEquals("hs2-a:10000", ConnectionPath.serverOf("serverUri=hs2-a:10000;version=3.1.3000;sequence=0000000012",
+                "hive.server2.thrift.bind.host=hs2-a;hive.server2.thrift.port=10000;hive.server2.thrift.http.port=10001",
+                Boolean.FALSE));
+        assertEquals("hs2-a:10001", ConnectionPath.serverOf("x",
+                "hive.server2.thrift.bind.host=hs2-a;hive.server2.thrift.port=10000;hive.server2.thrift.http.port=10001",
+                Boolean.TRUE));
+        assertEquals("hs2-b:10000", ConnectionPath.serverOf("serverUri=hs2-b:10000;version=1;sequence=2", null, Boolean.FALSE));
+        assertEquals("hs2-c:10000", ConnectionPath.serverOf("x", "hs2-c:10000", Boolean.FALSE));
+    }
+
+    @Test
+    public void diagnose_001() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            ConnectionPath path = ConnectionPath.parse("jdbc:hive2://localhost:" + server.getLocalPort() + "/default");
+            String report = path.diagnose();
+            assertTrue(report, report.contains("TCP Connect"));
+            assertTrue(path.getDnsTime() >= 0);
+            assertTrue(path.getTcpTime() >= 0);
+            assertEquals(-1, path.getTlsTime());
+            assertEquals(-1, path.getDiscoveryTime());
+        } finally {
+            server.close();
+        }
+        // Nothing listening now.
+        assertTrue(ConnectionPath.checkHost("localhost:" + server.getLocalPort()).contains("Failed"));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FetchSizeSweepTest {
+
+    @Test
+    public void parse_001() {
+        assertEquals(Arrays.asList(1000, 2000, 4000, 8000, 10000), FetchSizeSweep.parse("1000-10000"));
+        assertEquals(Arrays.asList(500, 1000, 20000), FetchSizeSweep.parse("20000, 1000,500,1000"));
+        assertEquals(Arrays.asList(5000), FetchSizeSweep.parse("5000-5000"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void parse_002() {
+        FetchSizeSweep.parse("10000-1000");
+    }
+
+    @Test
+    public void midpoint_001() {
+        assertEquals(2828, FetchSizeSweep.midpoint(2000, 4000));
+    }
+
+    private static FetchSizeSweep.Run run(long records, long iterateTime, String issue) {
+        return new FetchSizeSweep.Run(records, records * 100, 10, iterateTime, new LatencyHistogram(60000), issue);
+    }
+
+    @Test
+    public void median_001() {
+        // 50k, 100k and 25k records/sec.
+        FetchSizeSweep.Result result = new FetchSizeSweep.Result(1000,
+                Arrays.asList(run(100000, 2000, null), run(100000, 1000, null), run(100000, 4000, null)));
+        assertEquals(50000, result.getRecordsPerSec());
+        assertEquals(25000, result.getMinRecordsPerSec());
+        assertEquals(100000, result.getMaxRecordsPerSec());
+        assertEquals(3, result.getRuns());
+        assertNull(result.getIssue());
+    }
+
+    /*
+    The warm-up isn't counted, and a size is recommended on its median, not its best run.
+     */
+    @Test
+    public void recommend_001() {
+        final List<Integer> ran = new ArrayList<Integer>();
+        FetchSizeSweep sweep = new FetchSizeSweep(null, "1000,2000") {
+            @Override
+            protected Run run(int batchSize) {
+                ran.add(batchSize);
+                int n = ran.size();
+                if (batchSize == 1000) {
+                    // A fast warm-up and one lucky run, otherwise slow.
+                    return run(100000, n == 1 || n == 2 ? 500 : 4000, null);
+                }
+                return run(100000, 2000, null);
+            }
+
+            private Run run(long records, long iterateTime, String issue) {
+                return FetchSizeSweepTest.run(records, iterateTime, issue);
+            }
+        };
+        sweep.run();
+        assertEquals(Arrays.asList(1000, 1000, 1000, 1000, 2000, 2000, 2000, 2000), ran);
+        assertEquals(25000, sweep.getResults().get(0).getRecordsPerSec());
+        assertEquals(2000, sweep.getRecommended().getBatchSize());
+    }
+}
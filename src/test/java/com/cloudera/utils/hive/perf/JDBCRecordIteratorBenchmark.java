@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.cloudera.utils.sql.FakeResultSets;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/*
+The cost per record of 'JDBCRecordIterator.iterate' over a fake ResultSet, against a bare loop that
+makes the same ResultSet calls.  The difference is what the perf client adds to what it measures.
+
+Run from the IDE or with the test classpath: java ... com.cloudera.utils.hive.perf.JDBCRecordIteratorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JDBCRecordIteratorBenchmark {
+
+    private static final int ROWS = 10000;
+    private static final String[] COLUMNS = {"id", "ts", "name", "amount", "qty"};
+    private static final int[] TYPES = {Types.BIGINT, Types.TIMESTAMP, Types.VARCHAR, Types.DOUBLE, Types.INTEGER};
+
+    private Object[][] rows;
+    private JDBCRecordIterator jri;
+    private JDBCRecordIterator liteJri;
+
+    @Setup
+    public void setup() {
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[]{(long) i, null, "customer_" + i, i * 1.5D, i % 100};
+        }
+        jri = new JDBCRecordIterator();
+        jri.setBatchSize(1000);
+        liteJri = new JDBCRecordIterator();
+        liteJri.setBatchSize(1000);
+        liteJri.setLite(Boolean.TRUE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long bareLoop() throws SQLException {
+        ResultSet rs = FakeResultSets.resultSet(COLUMNS, TYPES, rows);
+        rs.getMetaData().getColumnCount();
+        long rtn = 0;
+        while (rs.next()) {
+            rtn += rs.getString(3).length();
+        }
+        return rtn;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long iterate() throws SQLException {
+        return jri.iterate(FakeResultSets.resultSet(COLUMNS, TYPES, rows));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long iterateLite() throws SQLException {
+        return liteJri.iterate(FakeResultSets.resultSet(COLUMNS, TYPES, rows));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder().include(JDBCRecordIteratorBenchmark.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+}
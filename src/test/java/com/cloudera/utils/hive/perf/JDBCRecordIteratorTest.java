@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.cloudera.utils.sql.FakeResultSets;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JDBCRecordIteratorTest {
+
+    private static final String[] COLUMNS = {"id", "name", "qty"};
+    private static final int[] TYPES = {Types.BIGINT, Types.VARCHAR, Types.INTEGER};
+
+    @Test
+    public void iterate_001() throws SQLException {
+        Object[][] rows = new Object[5000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i, i % 2 == 0 ? "abcd" : null, i};
+        }
+        JDBCRecordIterator jri = new JDBCRecordIterator();
+        jri.setBatchSize(1000);
+        assertEquals(5000, jri.iterate(FakeResultSets.resultSet(COLUMNS, TYPES, rows)));
+        assertEquals(5000, jri.getCount().get());
+        // 8 + 4 + the name's 4 byte length per record, plus 4 for every other name.
+        assertEquals(5000 * 16 + 2500 * 4, jri.getSize().get());
+        assertEquals(Integer.valueOf(1000), jri.getLastBatchSize());
+        assertEquals("name", jri.getColumnNames()[1]);
+        assertEquals(5000 * 4 + 2500 * 4, jri.getColumnSizes().get(1));
+    }
+
+    @Test
+    public void iterate_002() throws SQLException {
+        JDBCRecordIterator jri = new JDBCRecordIterator();
+        jri.setBatchSize(2);
+        jri.setLite(Boolean.TRUE);
+        Object[][] rows = {{1L, "a", 1}, {2L, "b", 2}, {3L, "c", 3}};
+        assertEquals(3, jri.iterate(FakeResultSets.resultSet(COLUMNS, TYPES, rows)));
+        assertEquals(0, jri.getSize().get());
+        assertEquals(Integer.valueOf(1), jri.getLastBatchSize());
+    }
+
+    @Test
+    public void sizing_001() throws SQLException {
+        String[] columns = {"payload", "tags", "price", "amount"};
+        int[] types = {Types.BINARY, Types.ARRAY, Types.DECIMAL, Types.FLOAT};
+        Object[][] rows = {{new byte[]{1, 2, 3}, "[\"a\",\"é\"]", "12.50", 1.5D}};
+
+        JDBCRecordIterator jri = new JDBCRecordIterator();
+        jri.iterate(FakeResultSets.resultSet(columns, types, rows));
+        // BINARY and the complex types are counted, DECIMAL as its text and FLOAT as a double.
+        assertEquals(4 + 3, jri.getColumnSizes().get(0));
+        assertEquals(4 + 10, jri.getColumnSizes().get(1));
+        assertEquals(4 + 5, jri.getColumnSizes().get(2));
+        assertEquals(8, jri.getColumnSizes().get(3));
+
+        jri = new JDBCRecordIterator();
+        jri.setSizing(Sizing.forName("fixed"));
+        jri.iterate(FakeResultSets.resultSet(columns, types, rows));
+        assertEquals(0 + 0 + 8 + 4, jri.getSize().get());
+    }
+
+    @Test
+    public void pipeline_001() throws SQLException {
+        Object[][] rows = new Object[5000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i, i % 2 == 0 ? "abcé" : null, i};
+        }
+        JDBCRecordIterator jri = new JDBCRecordIterator();
+        jri.iterate(FakeResultSets.resultSet(COLUMNS, TYPES, rows));
+
+        JDBCRecordIterator pipelined = new JDBCRecordIterator();
+        pipelined.setBatchSize(1000);
+        pipelined.setPipeline(3);
+        assertEquals(5000, pipelined.iteratePipelined(FakeResultSets.resultSet(COLUMNS, TYPES, rows)));
+        // The same sizes as on the one thread.
+        assertEquals(jri.getSize().get(), pipelined.getSize().get());
+        assertEquals(jri.getColumnSizes().get(1), pipelined.getColumnSizes().get(1));
+        assertEquals(5000, pipelined.getCount().get());
+        assertEquals(Integer.valueOf(1000), pipelined.getLastBatchSize());
+        assertTrue(pipelined.getFetchTime() >= 0);
+    }
+
+    @Test
+    public void pipeline_002() throws SQLException {
+        // A strategy that can only read from the ResultSet is sized on the fetch thread.
+        SizingStrategy fromResultSet = new SizingStrategy() {
+            @Override
+            public ColumnSizer sizerFor(int jdbcType) {
+                return new ColumnSizer() {
+                    @Override
+                    public long size(java.sql.ResultSet rs, int column) {
+                        return 1;
+                    }
+                };
+            }
+        };
+        assertFalse(JDBCRecordIterator.sizesValues(fromResultSet.sizerFor(Types.VARCHAR)));
+        assertTrue(JDBCRecordIterator.sizesValues(Sizing.WIRE.sizerFor(Types.VARCHAR)));
+        JDBCRecordIterator jri = new JDBCRecordIterator();
+        jri.setPipeline(2);
+        jri.setSizing(fromResultSet);
+        Object[][] rows = new Object[1000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i, "a", i};
+        }
+        assertEquals(1000, jri.iteratePipelined(FakeResultSets.resultSet(COLUMNS, TYPES, rows)));
+        assertEquals(3000, jri.getSize().get());
+        assertEquals(1000, jri.getColumnSizes().get(1));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_001() {
+        // Every value falls in the bucket that covers it.
+        for (long value = 0; value < 1000000; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueAt(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueAt(index - 1));
+        }
+    }
+
+    @Test
+    public void percentiles_001() {
+        LatencyHistogram histogram = new LatencyHistogram(3600000);
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getTotalCount());
+        assertEquals(500500, histogram.getTotal());
+        assertEquals(1000, histogram.getMax());
+        // Within the ~3% precision of the buckets.
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 * 0.04);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 * 0.04);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(-1, new LatencyHistogram(1000).getValueAtPercentile(50));
+    }
+
+    @Test
+    public void since_001() {
+        LatencyHistogram histogram = new LatencyHistogram(3600000);
+        histogram.record(20);
+        histogram.record(5000);
+        LatencyHistogram earlier = histogram.snapshot();
+        histogram.record(30);
+        histogram.record(40);
+        LatencyHistogram window = histogram.snapshot().since(earlier);
+        assertEquals(2, window.getTotalCount());
+        assertEquals(70, window.getTotal());
+        assertEquals(40, window.getMax());
+        // Over the highest trackable value, kept in the last bucket.
+        histogram.record(10000000);
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(5, histogram.getTotalCount());
+    }
+}
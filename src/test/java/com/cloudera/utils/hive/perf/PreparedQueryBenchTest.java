@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.cloudera.utils.sql.FakeResultSets;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PreparedQueryBenchTest {
+
+    @Test
+    public void parse_001() {
+        assertArrayEquals(new Object[]{42L, new BigDecimal("1.50"), "abc", null, "12", "say \"hi\", bye"},
+                ParameterSets.parse("42, 1.50,abc,NULL,\"12\",\"say \"\"hi\"\", bye\""));
+    }
+
+    /*
+    A connection whose statements return 'rows' records, and note each execution's bound values.
+     */
+    private static Connection connection(final int rows, final List<String> executions) {
+        final InvocationHandler statement = new InvocationHandler() {
+            private final List<Object> bound = new ArrayList<Object>();
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().startsWith("set") && !method.getName().equals("setFetchSize")) {
+                    bound.add(args[1]);
+                } else if (method.getName().equals("executeQuery")) {
+                    executions.add(bound.toString());
+                    bound.clear();
+                    if (executions.size() == 3) {
+                        throw new SQLException("Bad parameters");
+                    }
+                    Object[][] records = new Object[rows][];
+                    for (int i = 0; i < rows; i++) {
+                        records[i] = new Object[]{(long) i};
+                    }
+                    return FakeResultSets.resultSet(new String[]{"id"}, new int[]{Types.BIGINT}, records);
+                }
+                return null;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(PreparedQueryBenchTest.class.getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareStatement")) {
+                            return Proxy.newProxyInstance(PreparedQueryBenchTest.class.getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, statement);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void run_001() throws SQLException {
+        List<String> executions = new ArrayList<String>();
+        ParameterSets parameterSets = new ParameterSets();
+        parameterSets.add("# id, name");
+        parameterSets.add("1,a");
+        parameterSets.add("");
+        parameterSets.add("2,b");
+
+        PreparedQueryBench bench = new PreparedQueryBench();
+        bench.setQuery("SELECT id FROM t WHERE id = ? AND name = ?");
+        bench.setParameterSets(parameterSets);
+        bench.setIterations(3);
+        bench.run(connection(10, executions));
+
+        assertEquals(6, executions.size());
+        assertEquals("[1, a]", executions.get(0));
+        assertEquals("[2, b]", executions.get(1));
+        // The third (the first of the second iteration) fails.
+        assertEquals(1, bench.getErrors());
+        assertEquals(5, bench.getExecutions());
+        assertEquals(50, bench.getRows());
+        // The first execution and compile are the one-shot timings, the rest are warm.
+        assertTrue(bench.getOneShot(PreparedQueryBench.Phase.TOTAL) >= 0);
+        assertEquals(4, bench.getLatencies(PreparedQueryBench.Phase.DRAIN).getTotalCount());
+        assertEquals(2, bench.getLatencies(PreparedQueryBench.Phase.COMPILE).getTotalCount());
+        assertEquals("-", PreparedQueryBench.millis(-1));
+        assertEquals("1.500", PreparedQueryBench.millis(1500));
+    }
+}
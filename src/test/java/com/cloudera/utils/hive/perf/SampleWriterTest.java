@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampleWriterTest {
+
+    private static Map<String, Object> sample(String session, long records) {
+        Map<String, Object> rtn = new LinkedHashMap<String, Object>();
+        rtn.put("session", session);
+        rtn.put("records", records);
+        return rtn;
+    }
+
+    @Test
+    public void csv_001() throws Exception {
+        File file = File.createTempFile("perf", ".csv");
+        file.deleteOnExit();
+        SampleWriter writer = new SampleWriter(file.getPath());
+        writer.write(sample("0", 100));
+        writer.write(sample("all", 200));
+        writer.close();
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("session,records", lines.get(0));
+        assertEquals("all,200", lines.get(2));
+        assertEquals("a,\"b,c\",\"say \"\"hi\"\"\",", SampleWriter.csvLine(new Object[]{"a", "b,c", "say \"hi\"", null}));
+    }
+
+    @Test
+    public void json_001() throws Exception {
+        File file = File.createTempFile("perf", ".json");
+        file.deleteOnExit();
+        SampleWriter writer = new SampleWriter(file.getPath());
+        assertEquals(SampleWriter.Format.JSON, writer.getFormat());
+        writer.write(sample("1", 100));
+        writer.writeSummary(sample("all", 100));
+        writer.close();
+        File summary = new File(SampleWriter.getSummaryFileName(file.getPath()));
+        summary.deleteOnExit();
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertEquals(100, mapper.readTree(lines.get(0)).get("records").asLong());
+        assertEquals("all", mapper.readTree(summary).get("session").asText());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WorkloadTest {
+
+    private static final String WORKLOAD = "name: mix\n" +
+            "mode: OPEN\n" +
+            "sessions: 4\n" +
+            "targetQps: 20\n" +
+            "queries:\n" +
+            "  - name: by_day\n" +
+            "    weight: 3\n" +
+            "    statement: \"SELECT * FROM sales WHERE day = ${day}\"\n" +
+            "    parameterSets:\n" +
+            "      - day: 1\n" +
+            "      - day: 2\n" +
+            "  - name: scan\n" +
+            "    statement: \"SELECT * FROM customer\"\n";
+
+    private static Workload load() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        Workload workload = mapper.readerFor(Workload.class).readValue(WORKLOAD);
+        workload.validate();
+        return workload;
+    }
+
+    @Test
+    public void pick_001() throws Exception {
+        Workload workload = load();
+        assertEquals(Workload.Mode.OPEN, workload.getMode());
+        assertEquals(4, workload.getTotalWeight());
+        assertEquals("by_day", workload.pick(0).getName());
+        assertEquals("by_day", workload.pick(2).getName());
+        assertEquals("scan", workload.pick(3).getName());
+    }
+
+    @Test
+    public void parameterSets_001() throws Exception {
+        WorkloadQuery query = load().getQueries().get(0);
+        assertEquals("SELECT * FROM sales WHERE day = 1", query.nextStatement());
+        assertEquals("SELECT * FROM sales WHERE day = 2", query.nextStatement());
+        assertEquals("SELECT * FROM sales WHERE day = 1", query.nextStatement());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void validate_001() throws Exception {
+        Workload workload = load();
+        workload.setTargetQps(0);
+        workload.validate();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void validate_002() throws Exception {
+        Workload workload = load();
+        workload.setMode(Workload.Mode.CLOSED);
+        workload.validate();
+    }
+}
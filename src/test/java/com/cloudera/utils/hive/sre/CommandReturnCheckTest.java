@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandReturnCheckTest {
+
+    private static final String[] COLUMNS = {"name", "tbl_name", "tbl_type", "part_name", "path_location"};
+
+    @Test
+    public void pathPredicates_001() {
+        CommandReturnCheck check = new CommandReturnCheck();
+        List<CheckPredicate> predicates = new ArrayList<CheckPredicate>();
+        CheckPredicate typePredicate = new CheckPredicate();
+        typePredicate.setField("tbl_type");
+        typePredicate.setValues(new String[]{"MANAGED_TABLE"});
+        predicates.add(typePredicate);
+        CheckPredicate pathPredicate = new CheckPredicate();
+        pathPredicate.setField("path_location");
+        pathPredicate.setRegex("^hdfs://");
+        predicates.add(pathPredicate);
+        check.setPathPredicates(predicates);
+        check.initListingColumns(COLUMNS);
+
+        assertTrue(check.acceptPath(new String[]{"db", "tbl", "MANAGED_TABLE", " ", "hdfs://ns1/warehouse/db/tbl"}));
+        assertFalse(check.acceptPath(new String[]{"db", "tbl", "EXTERNAL_TABLE", " ", "hdfs://ns1/data/tbl"}));
+        assertFalse(check.acceptPath(new String[]{"db", "tbl", "MANAGED_TABLE", " ", "s3a://bucket/tbl"}));
+    }
+
+    @Test
+    public void pathPredicates_002() {
+        // Without predicates, every path is checked.
+        CommandReturnCheck check = new CommandReturnCheck();
+        check.initListingColumns(COLUMNS);
+        assertTrue(check.acceptPath(new String[]{"db", "tbl", "VIRTUAL_VIEW", " ", " "}));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void pathPredicates_003() {
+        CommandReturnCheck check = new CommandReturnCheck();
+        List<CheckPredicate> predicates = new ArrayList<CheckPredicate>();
+        CheckPredicate predicate = new CheckPredicate();
+        predicate.setField("owner");
+        predicate.setValues(new String[]{"hive"});
+        predicates.add(predicate);
+        check.setPathPredicates(predicates);
+        check.initListingColumns(COLUMNS);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.config.ConnectionPool;
+import com.cloudera.utils.hive.config.Metastore;
+import com.cloudera.utils.hive.config.SreProcessesConfig;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPoolsTest {
+
+    private GenericObjectPoolConfig<PoolableConnection> poolConfig(int parallelism, int min, int max, int timeout) {
+        SreProcessesConfig config = new SreProcessesConfig();
+        config.setParallelism(parallelism);
+        Metastore metastore = new Metastore();
+        ConnectionPool cp = new ConnectionPool();
+        cp.setMin(min);
+        cp.setMax(max);
+        cp.setTimeout(timeout);
+        metastore.setConnectionPool(cp);
+        return new ConnectionPools(config).getPoolConfig("test", metastore);
+    }
+
+    @Test
+    public void poolConfig_001() {
+        GenericObjectPoolConfig<PoolableConnection> poolConfig = poolConfig(2, 3, 10, 60);
+        assertEquals(10, poolConfig.getMaxTotal());
+        assertEquals(3, poolConfig.getMinIdle());
+        assertEquals(60000l, poolConfig.getMaxWaitMillis());
+    }
+
+    @Test
+    public void poolConfig_002() {
+        // Too small for the process and task threads, so it's raised.
+        GenericObjectPoolConfig<PoolableConnection> poolConfig = poolConfig(8, 3, 5, 120);
+        assertEquals(16, poolConfig.getMaxTotal());
+        assertEquals(16, poolConfig.getMaxIdle());
+    }
+
+    @Test
+    public void replicaIndex_001() {
+        // The same database always goes to the same replica, and the databases are spread over all of them.
+        int[] counts = new int[3];
+        for (int i = 0; i < 300; i++) {
+            int index = ConnectionPools.replicaIndex("db_" + i, 3);
+            assertEquals(index, ConnectionPools.replicaIndex("db_" + i, 3));
+            counts[index]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 50);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.reporting.TaskState;
+import org.junit.Test;
+
+import javax.script.ScriptEngineManager;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FusedCheckTest {
+
+    private CommandReturnCheck check(String name, String pathCommand) {
+        CommandReturnCheck check = new CommandReturnCheck();
+        check.setDisplayName(name);
+        check.setPathCommand(pathCommand);
+        return check;
+    }
+
+    @Test
+    public void fuse_001() {
+        List<CommandReturnCheck> checks = new ArrayList<CommandReturnCheck>();
+        checks.add(check("volume", "count -h %5$s"));
+        checks.add(check("files", "lsp -R -F \".*[0-9]{6}_[0-9]\" %5$s"));
+        checks.add(check("empty", " count   -h %5$s "));
+
+        List<FusedCheck> fused = FusedCheck.fuse(checks);
+        assertEquals(2, fused.size());
+        assertEquals("count -h %5$s", fused.get(0).getPathCommand());
+        assertEquals("volume,empty", fused.get(0).getDisplayName());
+        assertEquals(1, fused.get(1).getChecks().size());
+    }
+
+    @Test
+    public void fuse_002() {
+        assertEquals(0, FusedCheck.fuse(null).size());
+    }
+
+    @Test
+    public void normalize_001() {
+        assertEquals("lsp -R -F \".*  [0-9]\" %5$s", FusedCheck.normalize(" lsp  -R\t-F \".*  [0-9]\"   %5$s "));
+        assertEquals("test -e '%5$s/a  b'", FusedCheck.normalize("test   -e '%5$s/a  b'"));
+        assertFalse(FusedCheck.normalize("ls \"a  b\"").equals(FusedCheck.normalize("ls \"a b\"")));
+    }
+
+    private static final String[] COLUMNS = {"name", "tbl_name", "tbl_type", "part_name", "path_location"};
+
+    private static CommandReturnCheck check(String name, Boolean invert, ByteArrayOutputStream success,
+                                            ByteArrayOutputStream error) {
+        CommandReturnCheck check = new CommandReturnCheck();
+        check.setDisplayName(name);
+        check.setPathCommand("lsp -f path %5$s");
+        check.setInvertCheck(invert);
+        check.setReportOnResults(Boolean.TRUE);
+        check.setOnSuccessRecordCommand(name + " ok %1$s");
+        check.setOnErrorPathCommand(name + " error %5$s");
+        check.setSuccessStream(new PrintStream(success, true));
+        check.setErrorStream(new PrintStream(error, true));
+        return check;
+    }
+
+    /*
+    One pass over the command's records gives each fused check its own success, output and calculations.
+     */
+    @Test
+    public void process_001() {
+        ByteArrayOutputStream plainOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream plainErr = new ByteArrayOutputStream();
+        ByteArrayOutputStream invertedOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream invertedErr = new ByteArrayOutputStream();
+        ByteArrayOutputStream skippedOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream skippedErr = new ByteArrayOutputStream();
+
+        CommandReturnCheck plain = check("plain", Boolean.FALSE, plainOut, plainErr);
+        Map<CheckSearch, CheckCalculation> records = new HashMap<CheckSearch, CheckCalculation>();
+        CheckCalculation calculation = new CheckCalculation();
+        calculation.setTest("true");
+        calculation.setPass("\"calc %6$s\"");
+        records.put(CheckSearch.RECORDS, calculation);
+        Map<String, Map<CheckSearch, CheckCalculation>> calculations = new HashMap<String, Map<CheckSearch, CheckCalculation>>();
+        calculations.put("files", records);
+        plain.setCheckCalculations(calculations);
+
+        CommandReturnCheck inverted = check("inverted", Boolean.TRUE, invertedOut, invertedErr);
+        CommandReturnCheck skipped = check("skipped", Boolean.FALSE, skippedOut, skippedErr);
+        CheckPredicate views = new CheckPredicate();
+        views.setField("tbl_type");
+        views.setValues(new String[]{"VIRTUAL_VIEW"});
+        skipped.setPathPredicates(Arrays.asList(views));
+
+        List<CommandReturnCheck> checks = Arrays.asList(plain, inverted, skipped);
+        for (CommandReturnCheck check : checks) {
+            check.initListingColumns(COLUMNS);
+        }
+        FusedCheck fused = FusedCheck.fuse(checks).get(0);
+        assertEquals(3, fused.getChecks().size());
+
+        String[] args = {"db", "tbl", "MANAGED_TABLE", " ", "/warehouse/db/tbl"};
+        List<CommandReturnCheck> accepted = fused.accept(args);
+        assertEquals(Arrays.asList(plain, inverted), accepted);
+        List<List<Object>> found = new ArrayList<List<Object>>();
+        found.add(Arrays.<Object>asList("/warehouse/db/tbl/000000_0"));
+        found.add(Arrays.<Object>asList("/warehouse/db/tbl/000001_0"));
+        FusedCheck.evaluate(accepted, args, false, found);
+
+        // The command worked: the plain check passes and reports its records, the inverted one flags the path.
+        assertEquals(1, plain.getCounter().getCount(TaskState.SUCCESS));
+        assertEquals(1, inverted.getCounter().getCount(TaskState.SUCCESS));
+        assertEquals(0, skipped.getCounter().getCount(TaskState.SUCCESS));
+        String plainOutput = plainOut.toString();
+        // Record actions are formatted with the record's fields.
+        assertTrue(plainOutput.startsWith("plain ok /warehouse/db/tbl/000000_0\nplain ok /warehouse/db/tbl/000001_0\n"));
+        assertEquals("", plainErr.toString());
+        assertEquals("inverted error /warehouse/db/tbl\n", invertedErr.toString());
+        assertEquals("", invertedOut.toString());
+        assertEquals("", skippedOut.toString() + skippedErr.toString());
+        if (new ScriptEngineManager().getEngineByName("nashorn") != null) {
+            // Only the plain check has calculations, once per record.
+            assertTrue(plainOutput.endsWith("calc /warehouse/db/tbl/000000_0\ncalc /warehouse/db/tbl/000001_0\n"));
+        }
+
+        // The command failed: only the plain check fails.
+        FusedCheck.evaluate(accepted, args, true, new ArrayList<List<Object>>());
+        assertEquals(1, plain.getCounter().getCount(TaskState.ERROR));
+        assertEquals(0, inverted.getCounter().getCount(TaskState.ERROR));
+        assertTrue(plainErr.toString().startsWith("plain error /warehouse/db/tbl\n"));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.sql.QueryDefinition;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetastoreCleanupProcessTest {
+
+    @Test
+    public void lockContention_001() {
+        assertTrue(MetastoreCleanupProcess.isLockContention(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        assertTrue(MetastoreCleanupProcess.isLockContention(new SQLException("Deadlock found", "40001", 1213)));
+        assertTrue(MetastoreCleanupProcess.isLockContention(new SQLException("deadlock detected", "40P01")));
+        assertTrue(MetastoreCleanupProcess.isLockContention(new SQLException("could not obtain lock", "55P03")));
+        assertTrue(MetastoreCleanupProcess.isLockContention(new SQLException("ORA-00054: resource busy", "61000", 54)));
+        assertFalse(MetastoreCleanupProcess.isLockContention(new SQLException("Table doesn't exist", "42S02", 1146)));
+    }
+
+    @Test
+    public void backoff_001() {
+        assertEquals(1000l, MetastoreCleanupProcess.backoffDelay(1000l, 0));
+        assertEquals(4000l, MetastoreCleanupProcess.backoffDelay(1000l, 2));
+        assertEquals(60000l, MetastoreCleanupProcess.backoffDelay(1000l, 10));
+    }
+
+    @Test
+    public void throttle_001() {
+        // 5000 rows at 2000/sec should take 2.5 seconds.
+        assertEquals(1500l, MetastoreCleanupProcess.throttleDelay(5000, 1000, 2000));
+        assertEquals(0l, MetastoreCleanupProcess.throttleDelay(5000, 3000, 2000));
+        assertEquals(0l, MetastoreCleanupProcess.throttleDelay(5000, 0, 0));
+    }
+
+    @Test
+    public void forKeys_001() {
+        QueryDefinition delete = new QueryDefinition();
+        delete.setStatement("DELETE FROM TXNS WHERE TXN_ID IN (${keys}) AND TXN_STATE = 'a'");
+        delete.setTimeout(30);
+        QueryDefinition batch = MetastoreCleanupProcess.forKeys(delete, new long[]{3, 7, 12});
+        assertEquals("DELETE FROM TXNS WHERE TXN_ID IN (3,7,12) AND TXN_STATE = 'a'", batch.getStatement());
+        assertEquals(Integer.valueOf(30), batch.getTimeout());
+        // The original is left for the next batch.
+        assertTrue(delete.getStatement().contains("${keys}"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.config.SreProcessesConfig;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MetastoreReportProcessTest {
+
+    /*
+    The report's queries don't wait on the task pool, which the dbSets fill with their path scans.
+     */
+    @Test(timeout = 10000)
+    public void reportPool_001() throws Exception {
+        SreProcessesConfig config = new SreProcessesConfig();
+        config.setParallelism(2);
+        ProcessContainer container = new ProcessContainer();
+        container.setConfig(config);
+        final CountDownLatch scans = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            container.getTaskThreadPool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        scans.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        MetastoreReportProcess report = new MetastoreReportProcess() {
+            @Override
+            protected void reportQuery(MetastoreQuery metastoreQueryDefinition, PrintStream out, PrintStream err) {
+                out.println(metastoreQueryDefinition.getQuery());
+            }
+        };
+        report.setParent(container);
+        report.setTitle("# Report");
+        List<MetastoreQuery> queries = new ArrayList<MetastoreQuery>();
+        for (String name : new String[]{"dbs_count", "partition_count", "udf_count"}) {
+            MetastoreQuery query = new MetastoreQuery();
+            query.setQuery(name);
+            queries.add(query);
+        }
+        report.setMetastoreQueryDefinitions(queries);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.success = new PrintStream(out, true);
+
+        report.doIt();
+        assertEquals("# Report\ndbs_count\npartition_count\nudf_count\n", out.toString());
+        // The scans are all still queued or running.
+        assertFalse(container.getTaskThreadPool().getQueue().isEmpty());
+
+        scans.countDown();
+        container.getTaskThreadPool().shutdown();
+        container.getTaskThreadPool().awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
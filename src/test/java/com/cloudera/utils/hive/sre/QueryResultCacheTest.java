@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import com.cloudera.utils.hive.config.Metastore;
+import com.cloudera.utils.sql.FakeResultSets;
+import com.cloudera.utils.sql.QueryDefinition;
+import com.cloudera.utils.sql.ResultArray;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.sql.Types;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class QueryResultCacheTest {
+
+    @Test
+    public void register_001() {
+        QueryResultCache cache = new QueryResultCache(null, null, System.getProperty("java.io.tmpdir"));
+        cache.register("select name from DBS");
+        assertFalse(cache.isShared("select name from DBS"));
+        cache.register("select name from DBS");
+        assertTrue(cache.isShared("select name from DBS"));
+        assertFalse(cache.isShared("select tbl_name from TBLS"));
+    }
+
+    @Test
+    public void key_001() {
+        QueryDefinition query = new QueryDefinition();
+        query.setStatement("select * from TBLS where db = ? and type = ?");
+        Properties first = new Properties();
+        first.setProperty("dbs", "sales");
+        first.setProperty("type", "MANAGED_TABLE");
+        Properties second = new Properties();
+        second.setProperty("type", "MANAGED_TABLE");
+        second.setProperty("dbs", "sales");
+        assertEquals(QueryResultCache.getKey(Metastore.DB_TYPE.MYSQL, "tbls", query, first),
+                QueryResultCache.getKey(Metastore.DB_TYPE.MYSQL, "tbls", query, second));
+
+        second.setProperty("dbs", "finance");
+        assertNotEquals(QueryResultCache.getKey(Metastore.DB_TYPE.MYSQL, "tbls", query, first),
+                QueryResultCache.getKey(Metastore.DB_TYPE.MYSQL, "tbls", query, second));
+        assertNotEquals(QueryResultCache.getKey(Metastore.DB_TYPE.MYSQL, "tbls", query, first),
+                QueryResultCache.getKey(Metastore.DB_TYPE.POSTGRES, "tbls", query, first));
+    }
+
+    /*
+    Answers every query with the same two databases, counting the trips to the "metastore".
+     */
+    private static class TestCache extends QueryResultCache {
+        private final long spillCells;
+        private int loads = 0;
+
+        TestCache(String outputDirectory, long spillCells) {
+            super(null, null, outputDirectory);
+            this.spillCells = spillCells;
+        }
+
+        @Override
+        protected ResultArray load(QueryDefinition query, Properties overrides, String routingKey) {
+            loads++;
+            return new ResultArray(FakeResultSets.resultSet(new String[]{"name"}, new int[]{Types.VARCHAR},
+                    new Object[][]{{"sales"}, {"finance"}}));
+        }
+
+        @Override
+        protected long getSpillCells() {
+            return spillCells;
+        }
+    }
+
+    private static QueryDefinition dbs() {
+        QueryDefinition query = new QueryDefinition();
+        query.setStatement("select name from DBS");
+        return query;
+    }
+
+    @Test
+    public void evict_001() throws Exception {
+        TestCache cache = new TestCache(System.getProperty("java.io.tmpdir"), QueryResultCache.SPILL_CELLS);
+        cache.register("select name from DBS");
+        cache.register("select name from DBS");
+        assertEquals(2, cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), new Properties()).getCount());
+        assertEquals(2, cache.getMemoryCells());
+        assertEquals(1, cache.getEntryCount());
+        // The last registered reader frees it.
+        assertEquals(2, cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), new Properties()).getCount());
+        assertEquals(0, cache.getMemoryCells());
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.loads);
+        // A read after that goes back to the metastore.
+        cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), new Properties());
+        assertEquals(2, cache.loads);
+    }
+
+    @Test
+    public void evict_002() throws Exception {
+        File output = Files.createTempDirectory("query_cache").toFile();
+        TestCache cache = new TestCache(output.getPath(), 0);
+        cache.register("select name from DBS");
+        cache.register("select name from DBS");
+        File spill = new File(output, ".query_cache");
+        cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), new Properties());
+        assertEquals(1, spill.list().length);
+        assertEquals(0, cache.getMemoryCells());
+        assertEquals(2, cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), new Properties()).getCount());
+        assertEquals(0, spill.list().length);
+        cache.close();
+        assertFalse(spill.exists());
+        output.delete();
+    }
+
+    /*
+    A process that limits itself to other databases isn't waited on.
+     */
+    @Test
+    public void limit_001() throws Exception {
+        TestCache cache = new TestCache(System.getProperty("java.io.tmpdir"), QueryResultCache.SPILL_CELLS);
+        cache.register("select name from DBS");
+        cache.register("select name from DBS");
+        Properties sales = new Properties();
+        sales.setProperty("dbs", "sales");
+        cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), sales, "sales");
+        assertEquals(1, cache.getEntryCount());
+        // The other process only reads 'finance', so nobody else wants 'sales'.
+        cache.limit("select name from DBS", Collections.singletonList("finance"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getMemoryCells());
+        assertEquals(1, cache.getEvictions());
+        // And 'sales' isn't cached at all after that.
+        cache.executeQuery(Metastore.DB_TYPE.MYSQL, "dbs", dbs(), sales, "sales");
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(2, cache.loads);
+    }
+}
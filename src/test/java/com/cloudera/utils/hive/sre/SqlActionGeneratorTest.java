@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlActionGeneratorTest {
+
+    private static final String[] COLUMNS = {"name", "tbl_name", "tbl_type", "part_name", "path_location"};
+
+    @Test
+    public void compact_001() {
+        SqlActionGenerator generator = new SqlActionGenerator();
+        generator.setAction(SqlActionGenerator.Action.COMPACT_MAJOR);
+        generator.init(COLUMNS);
+        StringBuilder out = new StringBuilder();
+
+        generator.generate(new String[]{"db", "tbl", "MANAGED_TABLE", " ", "/warehouse/db/tbl"}, out);
+        generator.generate(new String[]{"db", "tbl", "MANAGED_TABLE", "st=GA A/update_dt=2019-09-01 12%3A31%3A44.333",
+                "/warehouse/db/tbl/st=GA A/update_dt=2019-09-01 12%3A31%3A44.333"}, out);
+
+        assertEquals("ALTER TABLE `db`.`tbl` COMPACT \"MAJOR\";\n" +
+                "ALTER TABLE `db`.`tbl` PARTITION (st=\"GA A\",update_dt=\"2019-09-01 12:31:44.333\") COMPACT \"MAJOR\";\n",
+                out.toString());
+    }
+}
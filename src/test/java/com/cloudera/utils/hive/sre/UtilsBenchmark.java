@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.hive.sre;
+
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+Compares 'Utils.dirToPartitionSpec' with the split/URLDecoder/join version it replaced, over the
+partition names of a date/hour partitioned table.
+
+Run from the IDE or with the test classpath: java ... com.cloudera.utils.hive.sre.UtilsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilsBenchmark {
+
+    private String[] partitions;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        partitions = new String[24 * 365];
+        int i = 0;
+        for (int day = 0; day < 365; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                partitions[i++] = String.format("region=us east/ingest_dt=2021-%02d-%02d/ingest_ts=2021-%02d-%02d %02d%%3A00%%3A00",
+                        day / 31 + 1, day % 31 + 1, day / 31 + 1, day % 31 + 1, hour);
+            }
+        }
+    }
+
+    private String nextPartition() {
+        if (next == partitions.length)
+            next = 0;
+        return partitions[next++];
+    }
+
+    @Benchmark
+    public String dirToPartitionSpec() throws UnsupportedEncodingException {
+        return Utils.dirToPartitionSpec(nextPartition());
+    }
+
+    @Benchmark
+    public String splitDecodeJoin() throws UnsupportedEncodingException {
+        String[] directories = nextPartition().split("\\/");
+        String[] partitionSpecs = new String[directories.length];
+        int loc = 0;
+        for (String directory : directories) {
+            String[] specParts = directory.split("=");
+            String partDir = URLDecoder.decode(specParts[1], StandardCharsets.UTF_8.toString());
+            partitionSpecs[loc++] = specParts[0] + "=\"" + partDir + "\"";
+        }
+        return StringUtils.join(partitionSpecs, ",");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder().include(UtilsBenchmark.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+}
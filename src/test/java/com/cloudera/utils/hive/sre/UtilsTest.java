@@ -20,6 +20,8 @@ import org.junit.Test;
 
 import java.io.UnsupportedEncodingException;
 
+import static org.junit.Assert.assertEquals;
+
 public class UtilsTest {
 
     @Test
@@ -80,4 +82,21 @@ public class UtilsTest {
             System.out.println(spec);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void dirToPartitionSpec_002() throws UnsupportedEncodingException {
+        assertEquals("st=\"GA A\",update_dt=\"2019-09-01 12:31:44.333\"",
+                Utils.dirToPartitionSpec("st=GA A/update_dt=2019-09-01 12%3A31%3A44.333"));
+        // Shares the cached 'st=GA A' prefix.
+        assertEquals("st=\"GA A\",update_dt=\"2020-09-03\"", Utils.dirToPartitionSpec("st=GA A/update_dt=2020-09-03"));
+        // Quotes and backslashes are escaped for the HiveQL literal, '+' isn't a space in a Hive path.
+        assertEquals("name=\"a\\\"b\\\\c+d\"", Utils.dirToPartitionSpec("name=a%22b%5Cc+d"));
+    }
+
+    @Test
+    public void appendPartitionSpec_001() {
+        StringBuilder sb = new StringBuilder("PARTITION (");
+        Utils.appendPartitionSpec(sb, "year=2020/month=01/day=03").append(")");
+        assertEquals("PARTITION (year=\"2020\",month=\"01\",day=\"03\")", sb.toString());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+public class FakeResultSets {
+
+    /*
+    Just enough of a ResultSet (by column index) to build a ResultArray from 'rows', or to iterate them
+    in the perf tests and benchmarks.
+     */
+    public static ResultSet resultSet(final String[] columns, final int[] types, final Object[][] rows) {
+        final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                FakeResultSets.class.getClassLoader(), new Class[]{ResultSetMetaData.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getColumnCount":
+                                return columns.length;
+                            case "getColumnName":
+                            case "getColumnLabel":
+                                return columns[(Integer) args[0] - 1];
+                            case "getColumnType":
+                                return types[(Integer) args[0] - 1];
+                            case "getColumnTypeName":
+                                return JDBCType.valueOf(types[(Integer) args[0] - 1]).getName();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(FakeResultSets.class.getClassLoader(),
+                new Class[]{ResultSet.class}, new InvocationHandler() {
+                    private int row = -1;
+                    private Object last = null;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getMetaData":
+                                return metaData;
+                            case "next":
+                                return ++row < rows.length;
+                            case "wasNull":
+                                return last == null;
+                            case "close":
+                                return null;
+                        }
+                        last = rows[row][(Integer) args[0] - 1];
+                        switch (method.getName()) {
+                            case "getLong":
+                                return last == null ? 0L : ((Number) last).longValue();
+                            case "getDouble":
+                                return last == null ? 0D : ((Number) last).doubleValue();
+                            case "getString":
+                                return last == null ? null : last.toString();
+                            case "getBytes":
+                                return last == null ? null : (byte[]) last;
+                            case "getObject":
+                                return last;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
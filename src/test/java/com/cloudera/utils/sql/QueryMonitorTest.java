@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.sql;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryMonitorTest {
+
+    @Test
+    public void timeout_001() {
+        QueryMonitor monitor = new QueryMonitor(300, 10000, null);
+        QueryDefinition query = new QueryDefinition();
+        query.setStatement("SELECT 1");
+        assertEquals(300, monitor.getTimeout(query));
+        query.setTimeout(30);
+        assertEquals(30, monitor.getTimeout(query));
+    }
+
+    @Test
+    public void cancel_001() {
+        QueryMonitor monitor = new QueryMonitor(0, 10000, null);
+        monitor.cancel();
+        QueryDefinition query = new QueryDefinition();
+        query.setStatement("SELECT 1");
+        // Fails before the connection is used.
+        try {
+            monitor.executeQuery(null, query, new Properties());
+            fail("Expected the cancelled monitor to refuse the query.");
+        } catch (SQLException se) {
+            assertEquals(QueryMonitor.CANCELLED_STATE, se.getSQLState());
+        }
+    }
+
+    @Test
+    public void outcome_001() {
+        QueryMonitor monitor = new QueryMonitor(0, 10000, null);
+        assertEquals("TIMEOUT", monitor.getOutcome(new SQLTimeoutException("Query timed out")));
+        // POSTGRES: "canceling statement due to statement timeout".
+        assertEquals("TIMEOUT", monitor.getOutcome(new SQLException("canceling statement", QueryMonitor.CANCELLED_STATE)));
+        assertEquals("FAILED", monitor.getOutcome(new SQLException("Table doesn't exist", "42S02")));
+        monitor.cancel();
+        assertEquals("CANCELLED", monitor.getOutcome(new SQLException("canceling statement", QueryMonitor.CANCELLED_STATE)));
+    }
+
+    @Test
+    public void formatSlowQuery_001() {
+        QueryDefinition query = new QueryDefinition();
+        query.setStatement("SELECT name\n  FROM DBS\n WHERE name LIKE ?  ");
+        Properties overrides = new Properties();
+        overrides.setProperty("dbs", "sales%");
+        String line = QueryMonitor.formatSlowQuery(new Date(0), 12345, 10, "OK", query, overrides);
+        String[] fields = line.split("\t");
+        assertEquals(6, fields.length);
+        assertEquals("12345", fields[1]);
+        assertEquals("10", fields[2]);
+        assertEquals("OK", fields[3]);
+        assertTrue(fields[4].contains("dbs=sales%"));
+        assertEquals("SELECT name FROM DBS WHERE name LIKE ?", fields[5]);
+    }
+}
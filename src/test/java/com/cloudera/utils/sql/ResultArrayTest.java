@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.sql;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+import static org.junit.Assert.*;
+
+public class ResultArrayTest {
+
+    private static final String[] COLUMNS = {"name", "tbl_name", "part_count", "total_size"};
+    private static final int[] TYPES = {Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.DOUBLE};
+
+    /*
+    Just enough of a ResultSet (by column index) to build a ResultArray from 'rows'.
+     */
+    public static ResultSet resultSet(final String[] columns, final int[] types, final Object[][] rows) {
+        final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                ResultArrayTest.class.getClassLoader(), new Class[]{ResultSetMetaData.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getColumnCount":
+                                return columns.length;
+                            case "getColumnName":
+                            case "getColumnLabel":
+                                return columns[(Integer) args[0] - 1];
+                            case "getColumnType":
+                                return types[(Integer) args[0] - 1];
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(ResultArrayTest.class.getClassLoader(),
+                new Class[]{ResultSet.class}, new InvocationHandler() {
+                    private int row = -1;
+                    private Object last = null;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getMetaData":
+                                return metaData;
+                            case "next":
+                                return ++row < rows.length;
+                            case "wasNull":
+                                return last == null;
+                            case "close":
+                                return null;
+                        }
+                        last = rows[row][(Integer) args[0] - 1];
+                        switch (method.getName()) {
+                            case "getLong":
+                                return last == null ? 0L : ((Number) last).longValue();
+                            case "getDouble":
+                                return last == null ? 0D : ((Number) last).doubleValue();
+                            case "getString":
+                                return last == null ? null : last.toString();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ResultArray sample() {
+        return new ResultArray(resultSet(COLUMNS, TYPES, new Object[][]{
+                {"sales", "orders", 12L, 1024.5D},
+                {"sales", "customers", null, 10D},
+                {"finance", "ledger", 3L, null}}));
+    }
+
+    @Test
+    public void typed_001() {
+        ResultArray rarray = sample();
+        assertEquals(3, rarray.getCount());
+        assertEquals(Types.BIGINT, rarray.getColumnType("part_count"));
+        assertEquals(12L, rarray.getLong("part_count", 0));
+        assertTrue(rarray.isNull("part_count", 1));
+        assertFalse(rarray.isNull("part_count", 2));
+        assertEquals(1024.5D, rarray.getDouble("total_size", 0), 0D);
+        assertTrue(rarray.isNull("total_size", 2));
+    }
+
+    @Test
+    public void strings_001() {
+        ResultArray rarray = sample();
+        assertArrayEquals(new String[]{"sales", "sales", "finance"}, rarray.getColumn("name"));
+        String[][] columns = rarray.getColumns(new String[]{"tbl_name", "part_count", "total_size"});
+        assertArrayEquals(new String[]{"orders", "customers", "ledger"}, columns[0]);
+        assertArrayEquals(new String[]{"12", null, "3"}, columns[1]);
+        assertArrayEquals(new String[]{"1024.5", "10.0", null}, columns[2]);
+        assertEquals("customers", rarray.getField("TBL_NAME", 1));
+    }
+
+    @Test
+    public void filter_001() {
+        ResultArray source = sample();
+        ResultArray copy = new ResultArray(source);
+        copy.keep("^sal", 0);
+        assertEquals(2, copy.getCount());
+        assertEquals("customers", copy.getField("tbl_name", 1));
+        assertEquals(3, source.getCount());
+        copy.remove("orders", 1);
+        assertEquals(1, copy.getCount());
+        assertTrue(copy.isNull("part_count", 0));
+    }
+
+    @Test
+    public void dictionary_001() {
+        // Mostly distinct values drop the dictionary part way through, without losing any.
+        Object[][] rows = new Object[5000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{i % 10 == 0 ? "db" : "location_" + i, null, (long) i, (double) i};
+        }
+        ResultArray rarray = new ResultArray(resultSet(COLUMNS, TYPES, rows));
+        String[] names = rarray.getColumn("name");
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i][0], names[i]);
+        }
+        assertTrue(rarray.isNull("tbl_name", 4999));
+        assertEquals(4999L, rarray.getLong("part_count", 4999));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Cloudera, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.utils.sql;
+
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SqlDialectTest {
+
+    private static QueryDefinition dbListing() {
+        QueryDefinition query = new QueryDefinition();
+        query.setStatement("SELECT name FROM DBS WHERE name LIKE ?");
+        Map<String, Parameter> parameters = new LinkedHashMap<String, Parameter>();
+        Parameter dbs = new Parameter();
+        dbs.setInitial("%");
+        dbs.setSqlType(12);
+        parameters.put("dbs", dbs);
+        query.setParameters(parameters);
+        return query;
+    }
+
+    @Test
+    public void filter_001() {
+        QueryDefinition filtered = SqlDialect.MYSQL.filter(dbListing(), "name", "^sales_", false);
+        assertEquals("SELECT * FROM (SELECT name FROM DBS WHERE name LIKE ?) Q WHERE Q.name REGEXP ?",
+                filtered.getStatement());
+        Parameter regex = filtered.getParameters().get("includeRegEx");
+        assertEquals("^sales_", regex.getInitial());
+        assertEquals(Integer.valueOf(2), regex.getLocation());
+        assertEquals(2, filtered.getParameters().size());
+    }
+
+    @Test
+    public void filter_002() {
+        assertEquals("Q.\"NAME\" !~ ?", SqlDialect.POSTGRES.regexPredicate("Q.\"NAME\"", true));
+        assertEquals("NOT REGEXP_LIKE(Q.name, ?)", SqlDialect.ORACLE.regexPredicate("Q.name", true));
+        assertEquals("excludeRegEx",
+                SqlDialect.ORACLE.filter(dbListing(), "name", "tmp", true).getParameters().keySet().toArray()[1]);
+    }
+
+    @Test
+    public void limit_001() {
+        assertEquals("SELECT * FROM (SELECT 1 FROM DUAL) Q WHERE ROWNUM <= 1", SqlDialect.ORACLE.limit("SELECT 1 FROM DUAL", 1));
+        assertEquals("SELECT * FROM (SELECT 1) Q LIMIT 10", SqlDialect.POSTGRES.limit("SELECT 1", 10));
+    }
+
+    @Test
+    public void portable_001() {
+        for (String regex : new String[]{"^sales_", "tmp|test", "^db[0-9]+$", "a.*b", "[^_]+_prod$", "^DW-"}) {
+            assertTrue(regex, SqlDialect.isPortableRegex(regex));
+        }
+        // Escapes, groups, flags, '?', '{n}', POSIX classes, empty alternatives, dangling quantifiers.
+        for (String regex : new String[]{"\\d+", "(?i)sales", "ab{2}", "sales?", "(a|b)", "[[:alpha:]]", "a|",
+                "|a", "*a", "a**", "[a-z", "[]", "a b"}) {
+            assertFalse(regex, SqlDialect.isPortableRegex(regex));
+        }
+    }
+
+    @Test
+    public void canFilter_001() {
+        // An exclude can't be pushed down where the collation may ignore case.
+        assertTrue(SqlDialect.MYSQL.canFilter("^tmp", false));
+        assertFalse(SqlDialect.MYSQL.canFilter("^tmp", true));
+        assertFalse(SqlDialect.ORACLE.canFilter("^tmp", true));
+        assertTrue(SqlDialect.POSTGRES.canFilter("^tmp", true));
+        assertFalse(SqlDialect.POSTGRES.canFilter("\\d", false));
+    }
+
+    private static final String[] DATABASES = {"sales", "Sales_2020", "sales_2021", "tmp_load", "TMP_old", "dw_prod",
+            "dw-test", "finance", "db7", "db", "a1b"};
+
+    private static ResultArray databases(List<String> names) {
+        Object[][] rows = new Object[names.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{names.get(i)};
+        }
+        return new ResultArray(FakeResultSets.resultSet(new String[]{"name"}, new int[]{Types.VARCHAR}, rows));
+    }
+
+    private static List<String> filtered(ResultArray rarray, String regex, boolean negate) {
+        if (negate) {
+            rarray.remove(regex, 0);
+        } else {
+            rarray.keep(regex, 0);
+        }
+        return Arrays.asList(rarray.getColumn("name"));
+    }
+
+    /*
+    A pattern run through the metastore (as the worst case RDBMS would match it, then the Java filter) and
+    only through the Java filter ends up with the same databases.
+     */
+    @Test
+    public void bothPaths_001() {
+        String[] patterns = {"^sales", "sales_20[0-9]+$", "tmp|dw", "^db[0-9]*$", "^[a-z]+$", "a.b", "_prod$|-test$",
+                "^TMP", "\\d", "(?i)^tmp", "^db\\d?$"};
+        int pushed = 0;
+        for (SqlDialect dialect : SqlDialect.values()) {
+            for (String regex : patterns) {
+                for (boolean negate : new boolean[]{false, true}) {
+                    List<String> clientSide = filtered(databases(Arrays.asList(DATABASES)), regex, negate);
+                    if (!dialect.canFilter(regex, negate)) {
+                        continue;
+                    }
+                    pushed++;
+                    Pattern metastore = dialect.isCaseSensitiveRegex() ? Pattern.compile(regex) :
+                            Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+                    List<String> fetched = new ArrayList<String>();
+                    for (String database : DATABASES) {
+                        if (metastore.matcher(database).find() != negate) {
+                            fetched.add(database);
+                        }
+                    }
+                    assertEquals(dialect + " " + regex + " " + negate, clientSide,
+                            filtered(databases(fetched), regex, negate));
+                }
+            }
+        }
+        assertTrue(pushed > 0);
+    }
+}